@@ -0,0 +1,40 @@
+package com.spond.weather.benchmark;
+
+import com.spond.weather.cache.BinaryForecastSerializer;
+import com.spond.weather.dto.ForecastDTO;
+import com.spond.weather.dto.LocationForecast;
+import com.spond.weather.util.MetNoStreamingParser;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Values and serializers shared by the benchmarks. The location is the test met.no response.
+ */
+class BenchmarkData {
+
+    static RedisSerializer<Object> serializer(String codec) {
+        return switch (codec) {
+            case "json" -> new GenericJackson2JsonRedisSerializer();
+            case "binary" -> new BinaryForecastSerializer(0);
+            case "binary-deflate" -> new BinaryForecastSerializer(64);
+            default -> throw new IllegalArgumentException("Unknown codec " + codec);
+        };
+    }
+
+    static Object value(String type) throws IOException {
+        return switch (type) {
+            case "event" -> new ForecastDTO(17.233333333333334, 2.95);
+            case "location" -> location();
+            default -> throw new IllegalArgumentException("Unknown value " + type);
+        };
+    }
+
+    static LocationForecast location() throws IOException {
+        try (InputStream body = BenchmarkData.class.getClassLoader().getResourceAsStream("met_response.json")) {
+            return new LocationForecast(MetNoStreamingParser.parse(body), System.currentTimeMillis(), System.currentTimeMillis());
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.spond.weather.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode and decode time of the Redis value formats, for an event forecast and a location
+ * timeseries. The size of each encoded value is printed during setup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CodecBenchmark {
+
+    @Param({"json", "binary", "binary-deflate"})
+    public String codec;
+
+    @Param({"event", "location"})
+    public String value;
+
+    private RedisSerializer<Object> serializer;
+
+    private Object object;
+
+    private byte[] bytes;
+
+    @Setup
+    public void setUp() throws IOException {
+        serializer = BenchmarkData.serializer(codec);
+        object = BenchmarkData.value(value);
+        bytes = serializer.serialize(object);
+        System.out.printf("%n%s %s: %d bytes per entry%n", codec, value, bytes.length);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return serializer.serialize(object);
+    }
+
+    @Benchmark
+    public Object decode() {
+        return serializer.deserialize(bytes);
+    }
+}
@@ -0,0 +1,125 @@
+package com.spond.weather.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spond.weather.dto.ErrorResponseDTO;
+import com.spond.weather.dto.ForecastDTO;
+import com.spond.weather.dto.ForecastSeries;
+import com.spond.weather.dto.ForecastWindow;
+import com.spond.weather.dto.WeatherApiResponse;
+import com.spond.weather.util.ApplicationUtils;
+import com.spond.weather.util.ForecastAggregateIndex;
+import com.spond.weather.util.MetNoStreamingParser;
+import com.spond.weather.validation.RequestValidator;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-request steps of a forecast lookup on the test met.no response: parsing the body,
+ * mapping it to a series, selecting the event's entries, averaging them and validating the
+ * request. Run with {@code -prof gc} for the allocation rate per operation. Logging is set to
+ * WARN in the forks, so the numbers exclude the appenders.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j2.configurationFile=log4j2-benchmark.xml")
+@State(Scope.Benchmark)
+public class ForecastPathBenchmark {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private byte[] body;
+
+    private WeatherApiResponse response;
+
+    private ForecastSeries series;
+
+    // Built with the cached location, outside the request path
+    private ForecastAggregateIndex index;
+
+    // Event covering three hourly entries
+    private String eventStart;
+    private String eventEnd;
+
+    // Between two six-hourly entries, so nothing falls inside the event
+    private long gapTime;
+
+    // First 24 hourly entries
+    private ForecastWindow dayWindow;
+
+    // Valid request, so every check runs
+    private String requestStart;
+    private String requestEnd;
+
+    @Setup
+    public void setUp() throws IOException {
+
+        try (InputStream stream = getClass().getClassLoader().getResourceAsStream("met_response.json")) {
+            body = stream.readAllBytes();
+        }
+
+        response = objectMapper.readValue(body, WeatherApiResponse.class);
+        series = ApplicationUtils.mapResponseToSeries(response);
+        index = ForecastAggregateIndex.of(series);
+
+        long[] epochSeconds = series.getEpochSeconds();
+        eventStart = Instant.ofEpochSecond(epochSeconds[10]).toString();
+        eventEnd = Instant.ofEpochSecond(epochSeconds[12]).toString();
+
+        int last = epochSeconds.length - 1;
+        gapTime = (epochSeconds[last - 1] + epochSeconds[last]) / 2;
+        dayWindow = ForecastWindow.range(0, 24);
+
+        Instant tomorrow = Instant.now().plus(1, ChronoUnit.DAYS).truncatedTo(ChronoUnit.HOURS);
+        requestStart = tomorrow.toString();
+        requestEnd = tomorrow.plus(2, ChronoUnit.HOURS).toString();
+    }
+
+    @Benchmark
+    public WeatherApiResponse deserializeDatabind() throws IOException {
+        return objectMapper.readValue(body, WeatherApiResponse.class);
+    }
+
+    @Benchmark
+    public ForecastSeries deserializeStreaming() throws IOException {
+        return MetNoStreamingParser.parse(new ByteArrayInputStream(body));
+    }
+
+    @Benchmark
+    public ForecastSeries mapResponseToSeries() {
+        return ApplicationUtils.mapResponseToSeries(response);
+    }
+
+    @Benchmark
+    public ForecastWindow filterWeatherData() {
+        return ApplicationUtils.filterWeatherData(series, eventStart, eventEnd);
+    }
+
+    @Benchmark
+    public int findClosestForecast() {
+        return ApplicationUtils.findClosestForecast(series.getEpochSeconds(), gapTime, Long.MAX_VALUE);
+    }
+
+    @Benchmark
+    public ForecastDTO calculateAverageForecast() {
+        return ApplicationUtils.calculateAverageForeCastForEvent(series, dayWindow);
+    }
+
+    @Benchmark
+    public ForecastDTO calculateAverageForecastIndexed() {
+        return index.averageForecast(series, dayWindow);
+    }
+
+    @Benchmark
+    public Optional<ErrorResponseDTO> validateRequest() {
+        return RequestValidator.validateRequest(59.9139, 10.7522, requestStart, requestEnd);
+    }
+}
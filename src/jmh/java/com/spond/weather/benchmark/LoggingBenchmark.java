@@ -0,0 +1,90 @@
+package com.spond.weather.benchmark;
+
+import com.spond.weather.controller.WeatherForecastController;
+import com.spond.weather.service.WeatherForecastService;
+import org.apache.logging.log4j.ThreadContext;
+import org.apache.logging.log4j.core.LoggerContext;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the per-request log line for the request thread, with the default synchronous
+ * configuration and with the async-logging one, where the controller's lines are rate limited and
+ * other loggers' are not. Four threads log at once, as concurrent requests do. Reports latency
+ * percentiles, {@code -prof gc} adds the bytes allocated per line. The console output is discarded
+ * and the log file goes to a temporary directory. The fork runs with the Log4j options of an
+ * async-logging deployment on platform threads.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Dlog4j2.isWebapp=false", "-Dlog4j2.enableThreadlocals=true",
+        "-Dlog4j2.garbagefreeThreadContextMap=true", "-Dlog4j2.asyncQueueFullPolicy=Discard", "-Dlog4j2.discardThreshold=INFO"})
+@Threads(4)
+@State(Scope.Benchmark)
+public class LoggingBenchmark {
+
+    @Param({"log4j2.xml", "log4j2-async.xml"})
+    private String config;
+
+    private LoggerContext context;
+
+    // Rate limited in the async configuration
+    private Logger controllerLogger;
+
+    // Logged in full in both
+    private Logger serviceLogger;
+
+    @Setup
+    public void setUp() throws IOException {
+
+        Path logDirectory = Files.createTempDirectory("logging-benchmark");
+        // Both configurations write to ${sys:user.home}/logs
+        System.setProperty("user.home", logDirectory.toString());
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        context = Configurator.initialize("logging-benchmark", config);
+        controllerLogger = LoggerFactory.getLogger(WeatherForecastController.class);
+        serviceLogger = LoggerFactory.getLogger(WeatherForecastService.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        Configurator.shutdown(context);
+    }
+
+    @State(Scope.Thread)
+    public static class Request {
+
+        private final double latitude = ThreadLocalRandom.current().nextDouble(-90, 90);
+
+        private final double longitude = ThreadLocalRandom.current().nextDouble(-180, 180);
+
+        @Setup
+        public void setUp() {
+            ThreadContext.put("requestId", UUID.randomUUID().toString());
+        }
+    }
+
+    @Benchmark
+    public void requestReceived(Request request) {
+        controllerLogger.info("Request received for latitude: {} and longitude: {}", request.latitude, request.longitude);
+    }
+
+    @Benchmark
+    public void unsampledLine(Request request) {
+        serviceLogger.info("Request received for latitude: {} and longitude: {}", request.latitude, request.longitude);
+    }
+}
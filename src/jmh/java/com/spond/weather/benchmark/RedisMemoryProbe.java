@@ -0,0 +1,109 @@
+package com.spond.weather.benchmark;
+
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.async.RedisAsyncCommands;
+import io.lettuce.core.codec.ByteArrayCodec;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the given number of keys per codec to a Redis and reports the growth of used_memory, with
+ * keys and TTLs like the service's. Use a scratch Redis, the keys are removed afterwards but other
+ * traffic distorts the numbers. Arguments: value type (event or location), key count, host, port.
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark.main=com.spond.weather.benchmark.RedisMemoryProbe \
+ *     -Dbenchmark.args="event 1000000 localhost 6379"
+ * </pre>
+ */
+public class RedisMemoryProbe {
+
+    private static final int PIPELINE = 10_000;
+
+    private static final long TTL_MILLIS = TimeUnit.HOURS.toMillis(2);
+
+    public static void main(String[] args) throws Exception {
+
+        String type = args.length > 0 ? args[0] : "event";
+        int keys = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        String host = args.length > 2 ? args[2] : "localhost";
+        int port = args.length > 3 ? Integer.parseInt(args[3]) : 6379;
+
+        Object value = BenchmarkData.value(type);
+        String prefix = type.equals("event") ? "EventID:" : "Location:";
+
+        RedisClient client = RedisClient.create(RedisURI.create(host, port));
+
+        try (StatefulRedisConnection<byte[], byte[]> connection = client.connect(ByteArrayCodec.INSTANCE)) {
+
+            for (String codec : List.of("json", "binary", "binary-deflate")) {
+
+                RedisSerializer<Object> serializer = BenchmarkData.serializer(codec);
+                byte[] bytes = serializer.serialize(value);
+                List<byte[]> written = new ArrayList<>(keys);
+
+                long before = usedMemory(connection);
+
+                for (int i = 0; i < keys; i++) {
+                    written.add((prefix + UUID.randomUUID()).getBytes(StandardCharsets.UTF_8));
+                }
+                pipelined(connection, written, (commands, key) -> commands.psetex(key, TTL_MILLIS, bytes));
+
+                long after = usedMemory(connection);
+
+                pipelined(connection, written, RedisAsyncCommands::unlink);
+
+                System.out.printf("%s %s: %d bytes per value, %d keys use %.1f MB, %.0f bytes per key%n",
+                        codec, type, bytes.length, keys, (after - before) / 1e6, (double) (after - before) / keys);
+            }
+        } finally {
+            client.shutdown();
+        }
+    }
+
+    private interface Command {
+        RedisFuture<?> apply(RedisAsyncCommands<byte[], byte[]> commands, byte[] key);
+    }
+
+    private static void pipelined(StatefulRedisConnection<byte[], byte[]> connection, List<byte[]> keys, Command command) throws Exception {
+
+        RedisAsyncCommands<byte[], byte[]> commands = connection.async();
+        connection.setAutoFlushCommands(false);
+
+        try {
+            List<RedisFuture<?>> pending = new ArrayList<>(PIPELINE);
+            for (byte[] key : keys) {
+                pending.add(command.apply(commands, key));
+                if (pending.size() == PIPELINE) {
+                    connection.flushCommands();
+                    for (RedisFuture<?> future : pending) {
+                        future.get();
+                    }
+                    pending.clear();
+                }
+            }
+            connection.flushCommands();
+            for (RedisFuture<?> future : pending) {
+                future.get();
+            }
+        } finally {
+            connection.setAutoFlushCommands(true);
+        }
+    }
+
+    private static long usedMemory(StatefulRedisConnection<byte[], byte[]> connection) {
+        for (String line : connection.sync().info("memory").split("\r?\n")) {
+            if (line.startsWith("used_memory:")) {
+                return Long.parseLong(line.substring("used_memory:".length()).trim());
+            }
+        }
+        throw new IllegalStateException("used_memory missing from INFO");
+    }
+}
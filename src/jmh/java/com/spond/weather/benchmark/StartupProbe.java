@@ -0,0 +1,159 @@
+package com.spond.weather.benchmark;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Starts the service a number of times in each mode and reports how long it takes until
+ * /actuator/health answers, and the latency of the first forecast request, a miss at a random
+ * location that calls met.no. Needs Redis on localhost:6379 and the builds of the modes:
+ * <ul>
+ * <li>jar: the executable jar as the Dockerfile runs it, {@code mvn package}</li>
+ * <li>aot: the extracted jar with the AOT-generated context, {@code mvn -Paot package}</li>
+ * <li>cds: aot plus the class data sharing archive, {@code mvn -Paot package}</li>
+ * <li>native: the GraalVM executable, {@code mvn -Pnative native:compile}</li>
+ * </ul>
+ * Arguments: comma separated modes, runs per mode, met.no base URL.
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark.main=com.spond.weather.benchmark.StartupProbe \
+ *     -Dbenchmark.args="jar,aot,cds 5 https://api.met.no"
+ * </pre>
+ */
+public class StartupProbe {
+
+    private static final String JAR = "weather-forecast-service-0.0.1-SNAPSHOT.jar";
+
+    private static final Duration STARTUP_TIMEOUT = Duration.ofMinutes(2);
+
+    private static final HttpClient CLIENT = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+
+    public static void main(String[] args) throws Exception {
+
+        List<String> modes = List.of((args.length > 0 ? args[0] : "jar,aot,cds").split(","));
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        String metBaseUrl = args.length > 2 ? args[2] : "https://api.met.no";
+
+        System.out.printf("%-8s %12s %12s %16s %16s%n", "mode", "startup min", "startup p50", "first request min", "first request p50");
+
+        for (String mode : modes) {
+
+            List<Long> startups = new ArrayList<>();
+            List<Long> firstRequests = new ArrayList<>();
+
+            for (int run = 0; run < runs; run++) {
+                long[] timings = measure(mode, metBaseUrl);
+                startups.add(timings[0]);
+                firstRequests.add(timings[1]);
+            }
+
+            System.out.printf("%-8s %10d ms %10d ms %14d ms %14d ms%n", mode, min(startups), median(startups), min(firstRequests), median(firstRequests));
+        }
+    }
+
+    // Milliseconds until healthy and of the first forecast request
+    private static long[] measure(String mode, String metBaseUrl) throws Exception {
+
+        int port = freePort();
+        List<String> command = command(mode);
+        // Cold start, not one served from the cache snapshot
+        command.addAll(List.of("--server.port=" + port, "--weather.met.base-url=" + metBaseUrl, "--weather.snapshot.enabled=false"));
+
+        Path log = Files.createTempFile("startup-probe-" + mode, ".log");
+        long started = System.nanoTime();
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log.toFile()).start();
+
+        try {
+            awaitHealthy(process, port, log, started);
+            long startup = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+            long requestStarted = System.nanoTime();
+            HttpResponse<String> response = CLIENT.send(HttpRequest.newBuilder(forecastUri(port)).build(), HttpResponse.BodyHandlers.ofString());
+            long firstRequest = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - requestStarted);
+
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException(mode + ": first request answered " + response.statusCode() + " " + response.body());
+            }
+
+            return new long[]{startup, firstRequest};
+        } finally {
+            process.destroy();
+            process.waitFor(30, TimeUnit.SECONDS);
+            Files.deleteIfExists(log);
+        }
+    }
+
+    private static List<String> command(String mode) {
+
+        String java = ProcessHandle.current().info().command().orElse("java");
+        String extracted = Path.of("target", "cds", JAR).toString();
+
+        return new ArrayList<>(switch (mode) {
+            case "jar" -> List.of(java, "-jar", Path.of("target", JAR).toString());
+            case "aot" -> List.of(java, "-Dspring.aot.enabled=true", "-jar", extracted);
+            case "cds" -> List.of(java, "-XX:SharedArchiveFile=" + Path.of("target", "cds", "application.jsa"), "-Xlog:cds=error",
+                    "-Dspring.aot.enabled=true", "-jar", extracted);
+            case "native" -> List.of(Path.of("target", "weather-forecast-service").toString());
+            default -> throw new IllegalArgumentException("Unknown mode " + mode + ", expected jar, aot, cds or native");
+        });
+    }
+
+    private static void awaitHealthy(Process process, int port, Path log, long started) throws Exception {
+
+        HttpRequest health = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/actuator/health")).build();
+
+        while (System.nanoTime() - started < STARTUP_TIMEOUT.toNanos()) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("Exited with " + process.exitValue() + ":\n" + Files.readString(log));
+            }
+            try {
+                if (CLIENT.send(health, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // Not listening yet
+            }
+            Thread.sleep(10);
+        }
+
+        throw new IllegalStateException("Not healthy after " + STARTUP_TIMEOUT + ":\n" + Files.readString(log));
+    }
+
+    // A location nobody asked for yet, so the request goes to met.no
+    private static URI forecastUri(int port) {
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Instant start = Instant.now().plus(1, ChronoUnit.DAYS).truncatedTo(ChronoUnit.HOURS);
+
+        return URI.create(String.format(Locale.ROOT, "http://localhost:%d/api/v1/forecast/%s?latitude=%.4f&longitude=%.4f&startTimeStamp=%s&endTimeStamp=%s",
+                port, UUID.randomUUID(), random.nextDouble(58, 70), random.nextDouble(5, 30), start, start.plus(2, ChronoUnit.HOURS)));
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static long min(List<Long> values) {
+        return values.stream().mapToLong(Long::longValue).min().orElse(0);
+    }
+
+    private static long median(List<Long> values) {
+        return values.stream().mapToLong(Long::longValue).sorted().skip(values.size() / 2).findFirst().orElse(0);
+    }
+}
@@ -0,0 +1,300 @@
+package com.spond.weather.cache;
+
+import com.spond.weather.dto.ForecastDTO;
+import com.spond.weather.dto.ForecastSeries;
+import com.spond.weather.dto.LocationForecast;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compact binary Redis value format for the cached forecast types. Layout: version byte, type
+ * byte, flags byte, payload. A location timeseries is stored as delta encoded varints, with the
+ * measurements as tenths when met.no's single decimal allows it, and is deflated when larger than
+ * the compression threshold, prefixed with its inflated length.
+ * <p>
+ * Other values are written as JSON. Values not starting with a version byte are read as JSON, so
+ * entries written by {@link GenericJackson2JsonRedisSerializer} stay readable after switching, and
+ * values of an unknown later version are read as a cache miss.
+ */
+public class BinaryForecastSerializer implements RedisSerializer<Object> {
+
+    static final byte VERSION = 1;
+
+    private static final byte TYPE_JSON = 0;
+    private static final byte TYPE_STRING = 1;
+    private static final byte TYPE_FORECAST = 2;
+    private static final byte TYPE_LOCATION = 3;
+
+    private static final byte FLAG_DEFLATED = 1;
+
+    private static final byte COLUMN_RAW = 0;
+    private static final byte COLUMN_TENTHS = 1;
+
+    private static final int HEADER_SIZE = 3;
+
+    // Longest varint plus the longest column value, for each of the three columns
+    private static final int MAX_ENTRY_SIZE = 3 * 10;
+
+    private final GenericJackson2JsonRedisSerializer jsonSerializer = new GenericJackson2JsonRedisSerializer();
+
+    // Payloads larger than this are deflated, 0 disables compression
+    private final int compressionThreshold;
+
+    public BinaryForecastSerializer(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+
+        if (value == null) {
+            return new byte[0];
+        }
+
+        return switch (value) {
+            case String text -> withHeader(TYPE_STRING, 0, text.getBytes(StandardCharsets.UTF_8));
+            case ForecastDTO forecast -> encodeForecast(forecast);
+            case LocationForecast location -> encodeLocationValue(location);
+            default -> withHeader(TYPE_JSON, 0, jsonSerializer.serialize(value));
+        };
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+
+        if (bytes[0] != VERSION) {
+            // JSON never starts with a control character, anything else is a later binary version
+            return bytes[0] < 0x20 ? null : jsonSerializer.deserialize(bytes);
+        }
+
+        byte type = bytes[1];
+        ByteBuffer payload = ByteBuffer.wrap(bytes, HEADER_SIZE, bytes.length - HEADER_SIZE);
+
+        try {
+            if ((bytes[2] & FLAG_DEFLATED) != 0) {
+                payload = inflate(payload);
+            }
+
+            return switch (type) {
+                case TYPE_STRING -> new String(payload.array(), payload.position(), payload.remaining(), StandardCharsets.UTF_8);
+                case TYPE_FORECAST -> new ForecastDTO(payload.getDouble(), payload.getDouble());
+                case TYPE_LOCATION -> decodeLocation(payload);
+                case TYPE_JSON -> jsonSerializer.deserialize(Arrays.copyOfRange(payload.array(), payload.position(), payload.limit()));
+                default -> throw new SerializationException("Unknown cache value type " + type);
+            };
+        } catch (BufferUnderflowException | DataFormatException e) {
+            throw new SerializationException("Could not deserialize cache value", e);
+        }
+    }
+
+    private static byte[] encodeForecast(ForecastDTO forecast) {
+        return header(ByteBuffer.allocate(HEADER_SIZE + 16), TYPE_FORECAST, 0)
+                .putDouble(forecast.getAirTemperature())
+                .putDouble(forecast.getWindSpeed())
+                .array();
+    }
+
+    private byte[] encodeLocationValue(LocationForecast location) {
+
+        ForecastSeries series = location.getSeries();
+        int size = series == null ? 0 : series.size();
+
+        ByteBuffer buffer = header(ByteBuffer.allocate(HEADER_SIZE + 16 + 10 + 2 + size * MAX_ENTRY_SIZE), TYPE_LOCATION, 0);
+        encodeLocation(location, buffer);
+
+        int payloadLength = buffer.position() - HEADER_SIZE;
+
+        if (compressionThreshold > 0 && payloadLength > compressionThreshold) {
+            byte[] deflated = deflate(buffer.array(), payloadLength);
+            if (deflated != null) {
+                return deflated;
+            }
+        }
+
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    private static void encodeLocation(LocationForecast location, ByteBuffer out) {
+
+        out.putLong(location.getExpiresAt());
+        out.putLong(location.getLastModified());
+
+        ForecastSeries series = location.getSeries();
+
+        // Size plus one, 0 for a missing series
+        writeVarLong(out, series == null ? 0 : series.size() + 1);
+
+        if (series == null) {
+            return;
+        }
+
+        // Hourly and six-hourly steps, the deltas fit in two bytes
+        long previous = 0;
+        for (long epochSecond : series.getEpochSeconds()) {
+            writeVarLong(out, zigZag(epochSecond - previous));
+            previous = epochSecond;
+        }
+
+        writeColumn(out, series.getAirTemperature());
+        writeColumn(out, series.getWindSpeed());
+    }
+
+    private static LocationForecast decodeLocation(ByteBuffer in) {
+
+        long expiresAt = in.getLong();
+        long lastModified = in.getLong();
+
+        int size = (int) readVarLong(in) - 1;
+
+        if (size < 0) {
+            return new LocationForecast(null, expiresAt, lastModified);
+        }
+
+        long[] epochSeconds = new long[size];
+        long previous = 0;
+        for (int i = 0; i < size; i++) {
+            previous += unZigZag(readVarLong(in));
+            epochSeconds[i] = previous;
+        }
+
+        double[] airTemperature = readColumn(in, size);
+        double[] windSpeed = readColumn(in, size);
+
+        return new LocationForecast(new ForecastSeries(epochSeconds, airTemperature, windSpeed), expiresAt, lastModified);
+    }
+
+    // Tenths as delta encoded varints when that is lossless, otherwise the raw doubles
+    private static void writeColumn(ByteBuffer out, double[] values) {
+
+        if (!isTenths(values)) {
+            out.put(COLUMN_RAW);
+            for (double value : values) {
+                out.putDouble(value);
+            }
+            return;
+        }
+
+        out.put(COLUMN_TENTHS);
+        long previous = 0;
+        for (double value : values) {
+            long tenths = Math.round(value * 10);
+            writeVarLong(out, zigZag(tenths - previous));
+            previous = tenths;
+        }
+    }
+
+    private static double[] readColumn(ByteBuffer in, int size) {
+
+        double[] values = new double[size];
+
+        if (in.get() == COLUMN_RAW) {
+            for (int i = 0; i < size; i++) {
+                values[i] = in.getDouble();
+            }
+            return values;
+        }
+
+        long previous = 0;
+        for (int i = 0; i < size; i++) {
+            previous += unZigZag(readVarLong(in));
+            values[i] = previous / 10.0;
+        }
+        return values;
+    }
+
+    private static boolean isTenths(double[] values) {
+        for (double value : values) {
+            // Rejects NaN and infinities too
+            if (!(Math.abs(value) < 1e12) || Math.round(value * 10) / 10.0 != value) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static ByteBuffer header(ByteBuffer buffer, byte type, int flags) {
+        return buffer.put(VERSION).put(type).put((byte) flags);
+    }
+
+    private static byte[] withHeader(byte type, int flags, byte[] payload) {
+        return header(ByteBuffer.allocate(HEADER_SIZE + payload.length), type, flags).put(payload).array();
+    }
+
+    // Header, inflated length, deflated payload. Null when that is not smaller, already dense series may not shrink
+    private static byte[] deflate(byte[] value, int payloadLength) {
+
+        ByteBuffer out = header(ByteBuffer.allocate(HEADER_SIZE + 5 + payloadLength), TYPE_LOCATION, FLAG_DEFLATED);
+        writeVarLong(out, payloadLength);
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(value, HEADER_SIZE, payloadLength);
+            deflater.finish();
+            int written = deflater.deflate(out.array(), out.position(), out.remaining());
+            int length = out.position() + written;
+            if (!deflater.finished() || length >= HEADER_SIZE + payloadLength) {
+                return null;
+            }
+            return Arrays.copyOf(out.array(), length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static ByteBuffer inflate(ByteBuffer in) throws DataFormatException {
+
+        byte[] inflated = new byte[(int) readVarLong(in)];
+
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(in.array(), in.position(), in.remaining());
+            if (inflater.inflate(inflated) != inflated.length) {
+                throw new DataFormatException("Truncated cache value");
+            }
+            return ByteBuffer.wrap(inflated);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static void writeVarLong(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new SerializationException("Malformed varint in cache value");
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,240 @@
+package com.spond.weather.cache;
+
+import com.spond.weather.config.WeatherProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Write-behind for the Redis tier of {@link ForecastCache}. A write only queues the entry, a
+ * background thread sends queued entries to Redis in pipelined batches, so requests do not wait
+ * for the Redis round trip and a burst of writes costs one round trip per batch. Entries still
+ * queued are served from here, so this node reads its own writes at once. When the queue is full
+ * the write is dropped and only lives in the near cache.
+ */
+@Slf4j
+public class CacheWriteBehind {
+
+    private final Logger logger = LoggerFactory.getLogger(CacheWriteBehind.class);
+
+    // How often an idle worker checks whether it was stopped
+    private static final long POLL_MILLIS = 100;
+
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    private final WeatherProperties.WriteBehind properties;
+
+    private final ForecastCache forecastCache;
+
+    // Latest value per queued key. A key is queued once however often it is written before the
+    // flush, which then writes the latest value.
+    private final Map<String, PendingWrite> pending = new ConcurrentHashMap<>();
+
+    private final BlockingQueue<String> queue;
+
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    private volatile boolean running;
+
+    private Thread worker;
+
+    CacheWriteBehind(RedisTemplate<String, Object> redisTemplate, WeatherProperties.WriteBehind properties, ForecastCache forecastCache) {
+        this.redisTemplate = redisTemplate;
+        this.properties = properties;
+        this.forecastCache = forecastCache;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, properties.getQueueCapacity()));
+
+        if (properties.isEnabled()) {
+            running = true;
+            worker = Thread.ofPlatform().name("cache-write-behind").daemon().start(this::run);
+        }
+    }
+
+    /**
+     * Queues a write. Returns false when the queue was full and the write was dropped.
+     */
+    boolean enqueue(String key, Object value, Duration ttl) {
+
+        PendingWrite write = new PendingWrite(value, System.currentTimeMillis() + ttl.toMillis());
+
+        if (pending.put(key, write) != null) {
+            // Still queued, the flush picks up the new value
+            return true;
+        }
+
+        if (queue.offer(key)) {
+            return true;
+        }
+
+        // Not only our write: one that replaced it meanwhile counted on this offer and would
+        // otherwise stay in pending without its key in the queue
+        pending.remove(key);
+        dropped.increment();
+        logger.debug("Write-behind queue full, dropped the Redis write of {}", key);
+        return false;
+    }
+
+    /**
+     * The queued value of the key, null when nothing is waiting to be written.
+     */
+    Object get(String key) {
+
+        PendingWrite write = pending.get(key);
+
+        return write != null && write.expiresAt() > System.currentTimeMillis() ? write.value() : null;
+    }
+
+    boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Stops the worker, which writes what is still queued before it exits. A worker still busy
+     * after the shutdown timeout is interrupted, cutting short the flush it is stuck in, and given
+     * the timeout once more for the rest. Only the worker writes, so no key is written twice.
+     */
+    void close() {
+
+        if (worker == null) {
+            return;
+        }
+
+        running = false;
+
+        try {
+            long timeout = properties.getShutdownTimeout().toMillis();
+            worker.join(timeout);
+            if (worker.isAlive()) {
+                worker.interrupt();
+                worker.join(timeout);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (worker.isAlive()) {
+            logger.warn("Write-behind worker did not finish on shutdown, {} queued cache entries may not reach Redis", pending.size());
+        }
+    }
+
+    public int getQueued() {
+        return pending.size();
+    }
+
+    public long getWrittenCount() {
+        return written.sum();
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    private void run() {
+
+        List<String> batch = new ArrayList<>(properties.getMaxBatchSize());
+
+        while (running) {
+            try {
+                String first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // Whatever queued up during the previous flush goes out in this one
+                queue.drainTo(batch, properties.getMaxBatchSize() - 1);
+                flush(batch);
+            } catch (InterruptedException e) {
+                // Stopped while waiting, the rest is written below
+                break;
+            } catch (Exception e) {
+                logger.error("Write-behind flush failed", e);
+            } finally {
+                batch.clear();
+            }
+        }
+
+        // An interrupt from close() was meant for the flush it cut short, not for these
+        Thread.interrupted();
+
+        while (queue.drainTo(batch, properties.getMaxBatchSize()) > 0) {
+            flush(batch);
+            batch.clear();
+        }
+    }
+
+    private void flush(List<String> keys) {
+
+        long now = System.currentTimeMillis();
+        Map<String, PendingWrite> writes = new LinkedHashMap<>();
+
+        for (String key : keys) {
+            PendingWrite write = pending.get(key);
+            if (write == null) {
+                continue;
+            }
+            // Expired while queued, nothing left to write
+            if (write.expiresAt() <= now) {
+                pending.remove(key, write);
+                continue;
+            }
+            writes.put(key, write);
+        }
+
+        if (writes.isEmpty()) {
+            return;
+        }
+
+        try {
+            redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public Object execute(RedisOperations operations) {
+                    writes.forEach((key, write) -> {
+                        // The entry expires when it would have without the wait in the queue
+                        operations.opsForValue().set(key, write.value(), Math.max(1, write.expiresAt() - now), TimeUnit.MILLISECONDS);
+                        if (forecastCache.isInvalidationEnabled()) {
+                            operations.convertAndSend(forecastCache.invalidationChannel(), forecastCache.invalidationMessage(key));
+                        }
+                    });
+                    return null;
+                }
+            });
+            written.add(writes.size());
+        } catch (Exception e) {
+            // Lost for Redis, this node still has them in its near cache
+            failed.add(writes.size());
+            logger.warn("Could not write {} queued cache entries to Redis: {}", writes.size(), e.getMessage());
+        }
+
+        writes.forEach((key, write) -> {
+            // Written again during the flush, the newer value needs a flush of its own
+            if (!pending.remove(key, write) && !queue.offer(key)) {
+                pending.remove(key);
+                dropped.increment();
+            }
+        });
+    }
+
+    private record PendingWrite(Object value, long expiresAt) {
+    }
+}
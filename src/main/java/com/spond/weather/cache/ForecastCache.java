@@ -0,0 +1,455 @@
+package com.spond.weather.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.spond.weather.config.WeatherProperties;
+import com.spond.weather.dto.CacheStatsDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Two-tier forecast cache: a bounded in-process near cache in front of Redis. Writes go to both
+ * tiers and are announced on a Redis channel so other nodes drop their near cache copy. With
+ * weather.write-behind.enabled the Redis write is queued and sent from a background thread.
+ */
+@Component
+@Slf4j
+public class ForecastCache implements MessageListener {
+
+    private final Logger logger = LoggerFactory.getLogger(ForecastCache.class);
+
+    private static final String MESSAGE_SEPARATOR = "|";
+
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    private final WeatherProperties.NearCache nearCacheProperties;
+
+    private final Cache<String, Object> nearCache;
+
+    private final CacheWriteBehind writeBehind;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final LongAdder nearCacheHits = new LongAdder();
+    private final LongAdder redisHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public ForecastCache(RedisTemplate<String, Object> redisTemplate, WeatherProperties weatherProperties) {
+        this.redisTemplate = redisTemplate;
+        this.nearCacheProperties = weatherProperties.getNearCache();
+        this.nearCache = Caffeine.newBuilder()
+                .maximumSize(nearCacheProperties.isEnabled() ? nearCacheProperties.getMaximumSize() : 0)
+                .expireAfter(new NearCacheExpiry(nearCacheProperties.getTtl().toNanos()))
+                .recordStats()
+                .build();
+        this.writeBehind = new CacheWriteBehind(redisTemplate, weatherProperties.getWriteBehind(), this);
+    }
+
+    public Object get(String key) {
+
+        Object value = getNear(key);
+
+        if (value != null) {
+            return value;
+        }
+
+        if (!isNearCacheEnabled()) {
+            value = redisTemplate.opsForValue().get(key);
+            recordRedisResult(key, value, null);
+            return value;
+        }
+
+        List<Object> results = readWithExpiry(List.of(key));
+        value = results.get(0);
+
+        recordRedisResult(key, value, remaining(results.get(1)));
+        return value;
+    }
+
+    /**
+     * Near cache only lookup, no Redis round trip. Used to re-check a key after waiting for
+     * another thread of this node that may just have written it.
+     */
+    public Object getLocal(String key) {
+        Object value = nearCache.getIfPresent(key);
+        return value != null ? value : writeBehind.get(key);
+    }
+
+    /**
+     * Looks up several keys at once: near cache first, then a single round trip for the rest. The
+     * result has one entry per key, null for misses.
+     */
+    public List<Object> getAll(List<String> keys) {
+
+        List<Object> values = new ArrayList<>(keys.size());
+        List<String> redisKeys = new ArrayList<>();
+        List<Integer> redisPositions = new ArrayList<>();
+
+        for (int i = 0; i < keys.size(); i++) {
+            Object value = getLocal(keys.get(i));
+            values.add(value);
+            if (value != null) {
+                nearCacheHits.increment();
+            } else {
+                redisKeys.add(keys.get(i));
+                redisPositions.add(i);
+            }
+        }
+
+        if (redisKeys.isEmpty()) {
+            return values;
+        }
+
+        if (!isNearCacheEnabled()) {
+            List<Object> redisValues = redisTemplate.opsForValue().multiGet(redisKeys);
+            for (int i = 0; i < redisKeys.size(); i++) {
+                Object value = redisValues == null ? null : redisValues.get(i);
+                recordRedisResult(redisKeys.get(i), value, null);
+                values.set(redisPositions.get(i), value);
+            }
+            return values;
+        }
+
+        List<Object> results = readWithExpiry(redisKeys);
+
+        for (int i = 0; i < redisKeys.size(); i++) {
+            Object value = results.get(2 * i);
+            recordRedisResult(redisKeys.get(i), value, remaining(results.get(2 * i + 1)));
+            values.set(redisPositions.get(i), value);
+        }
+
+        return values;
+    }
+
+    public void put(String key, Object value, Duration ttl) {
+
+        if (writeBehind.isEnabled()) {
+            putNear(key, value, ttl);
+            writeBehind.enqueue(key, value, ttl);
+            return;
+        }
+
+        redisTemplate.opsForValue().set(key, value, ttl.toMillis(), TimeUnit.MILLISECONDS);
+
+        putNear(key, value, ttl);
+
+        publishInvalidation(key);
+    }
+
+    /**
+     * Writes several entries with the same TTL in one pipelined round trip to Redis.
+     */
+    public void putAll(Map<String, Object> entries, Duration ttl) {
+
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        if (writeBehind.isEnabled()) {
+            // Pipelined by the write-behind worker together with whatever else is queued
+            entries.forEach((key, value) -> put(key, value, ttl));
+            return;
+        }
+
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object execute(RedisOperations operations) {
+                entries.forEach((key, value) -> {
+                    operations.opsForValue().set(key, value, ttl.toMillis(), TimeUnit.MILLISECONDS);
+                    if (isInvalidationEnabled()) {
+                        operations.convertAndSend(invalidationChannel(), invalidationMessage(key));
+                    }
+                });
+                return null;
+            }
+        });
+
+        entries.forEach((key, value) -> putNear(key, value, ttl));
+    }
+
+    /**
+     * The cached value of each key together with when it expires in Redis, read in one pipelined
+     * round trip. Keys that are missing or have no expiry are left out. Used to snapshot the
+     * working set, so the lookups are not counted in the statistics.
+     */
+    public List<Entry> export(List<String> keys) {
+
+        if (keys.isEmpty()) {
+            return List.of();
+        }
+
+        List<Object> results = readWithExpiry(keys);
+
+        long now = System.currentTimeMillis();
+        List<Entry> entries = new ArrayList<>(keys.size());
+
+        for (int i = 0; i < keys.size(); i++) {
+            Object value = results.get(2 * i);
+            // -2 for a missing key, -1 for one without expiry
+            if (value != null && results.get(2 * i + 1) instanceof Long ttl && ttl > 0) {
+                entries.add(new Entry(keys.get(i), value, now + ttl));
+            }
+        }
+
+        return entries;
+    }
+
+    /**
+     * Writes entries back with the time they have left, in one pipelined round trip. A key Redis
+     * already holds is left alone, it is at least as recent as the entry. Entries Redis took are
+     * also put in the near cache, all of them when Redis cannot be reached. Returns how many
+     * entries were restored.
+     */
+    public int restore(List<Entry> entries) {
+
+        long now = System.currentTimeMillis();
+        List<Entry> live = entries.stream().filter(entry -> entry.expiresAt() > now).toList();
+
+        if (live.isEmpty()) {
+            return 0;
+        }
+
+        List<Object> results;
+        try {
+            results = redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public Object execute(RedisOperations operations) {
+                    live.forEach(entry -> operations.opsForValue().setIfAbsent(entry.key(), entry.value(),
+                            entry.expiresAt() - now, TimeUnit.MILLISECONDS));
+                    return null;
+                }
+            });
+        } catch (Exception e) {
+            logger.warn("Could not restore {} cache entries to Redis, keeping them in the near cache only: {}", live.size(), e.getMessage());
+            live.forEach(entry -> putNear(entry.key(), entry.value(), Duration.ofMillis(entry.expiresAt() - now)));
+            return live.size();
+        }
+
+        int restored = 0;
+        for (int i = 0; i < live.size(); i++) {
+            if (Boolean.TRUE.equals(results.get(i))) {
+                Entry entry = live.get(i);
+                putNear(entry.key(), entry.value(), Duration.ofMillis(entry.expiresAt() - now));
+                restored++;
+            }
+        }
+
+        return restored;
+    }
+
+    /**
+     * How much longer this node serves the key from its near cache without asking Redis, zero
+     * when the key is not there.
+     */
+    public Duration nearExpiresIn(String key) {
+        return nearCache.policy().expireVariably()
+                .flatMap(expiration -> expiration.getExpiresAfter(key))
+                .orElse(Duration.ZERO);
+    }
+
+    public void evictLocal(String key) {
+        nearCache.invalidate(key);
+    }
+
+    public CacheWriteBehind getWriteBehind() {
+        return writeBehind;
+    }
+
+    /**
+     * Writes what is still queued for Redis before the application stops. Runs when the context
+     * starts closing, while the Redis connection is still open, and before the cache snapshot is
+     * saved so the snapshot sees these entries.
+     */
+    @EventListener(ContextClosedEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void close() {
+        writeBehind.close();
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+
+        Object payload = redisTemplate.getValueSerializer().deserialize(message.getBody());
+
+        if (!(payload instanceof String text)) {
+            return;
+        }
+
+        int separator = text.indexOf(MESSAGE_SEPARATOR);
+        if (separator < 0 || text.substring(0, separator).equals(nodeId)) {
+            return;
+        }
+
+        evictLocal(text.substring(separator + 1));
+    }
+
+    public CacheStatsDTO stats() {
+
+        long nearHits = nearCacheHits.sum();
+        long l2Hits = redisHits.sum();
+        long missCount = misses.sum();
+        long lookups = nearHits + l2Hits + missCount;
+
+        return CacheStatsDTO.builder()
+                .lookups(lookups)
+                .nearCacheHits(nearHits)
+                .redisHits(l2Hits)
+                .misses(missCount)
+                .nearCacheHitRate(ratio(nearHits, lookups))
+                .redisHitRate(ratio(l2Hits, l2Hits + missCount))
+                .nearCacheSize(nearCache.estimatedSize())
+                .nearCacheEvictions(nearCache.stats().evictionCount())
+                .build();
+    }
+
+    /**
+     * Near cache lookup counted in the statistics, for callers that read Redis themselves. Also
+     * finds entries still queued for Redis.
+     */
+    Object getNear(String key) {
+
+        Object value = getLocal(key);
+
+        if (value != null) {
+            nearCacheHits.increment();
+        }
+        return value;
+    }
+
+    /**
+     * Counts a Redis read that followed a near cache miss and keeps a hit in the near cache, for no
+     * longer than the time it has left in Redis. Null when that is unknown or the key never expires.
+     */
+    void recordRedisResult(String key, Object value, Duration remaining) {
+
+        if (value == null) {
+            misses.increment();
+            return;
+        }
+
+        redisHits.increment();
+        putNear(key, value, remaining != null ? remaining : nearCacheProperties.getTtl());
+    }
+
+    boolean isNearCacheEnabled() {
+        return nearCacheProperties.isEnabled();
+    }
+
+    boolean isWriteBehindEnabled() {
+        return writeBehind.isEnabled();
+    }
+
+    boolean isInvalidationEnabled() {
+        return isNearCacheEnabled();
+    }
+
+    String invalidationChannel() {
+        return nearCacheProperties.getInvalidationChannel();
+    }
+
+    String invalidationMessage(String key) {
+        return nodeId + MESSAGE_SEPARATOR + key;
+    }
+
+    void putNear(String key, Object value, Duration ttl) {
+        // Never keep an entry locally for longer than Redis does
+        nearCache.policy().expireVariably().ifPresentOrElse(
+                expiration -> expiration.put(key, value, min(ttl, nearCacheProperties.getTtl())),
+                () -> nearCache.put(key, value));
+    }
+
+    // Per key its value and its PTTL, read in one pipelined round trip
+    private List<Object> readWithExpiry(List<String> keys) {
+        return redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object execute(RedisOperations operations) {
+                keys.forEach(key -> {
+                    operations.opsForValue().get(key);
+                    operations.getExpire(key, TimeUnit.MILLISECONDS);
+                });
+                return null;
+            }
+        });
+    }
+
+    // -1 for a key without expiry, -2 for one that expired since it was read
+    private static Duration remaining(Object pttl) {
+        if (!(pttl instanceof Long millis) || millis == -1) {
+            return null;
+        }
+        return Duration.ofMillis(Math.max(millis, 0));
+    }
+
+    private void publishInvalidation(String key) {
+
+        if (!isInvalidationEnabled()) {
+            return;
+        }
+
+        try {
+            redisTemplate.convertAndSend(invalidationChannel(), invalidationMessage(key));
+        } catch (Exception e) {
+            // Other nodes still pick up the new value once their near cache entry expires
+            logger.warn("Could not publish invalidation for {}: {}", key, e.getMessage());
+        }
+    }
+
+    private static Duration min(Duration first, Duration second) {
+        return first.compareTo(second) <= 0 ? first : second;
+    }
+
+    private static double ratio(long part, long total) {
+        return total == 0 ? 0.0 : (double) part / total;
+    }
+
+    /**
+     * A cached value and when it expires, epoch millis.
+     */
+    public record Entry(String key, Object value, long expiresAt) {
+    }
+
+    /**
+     * Expires entries a fixed time after they are written, while still allowing writes with a
+     * shorter per-entry TTL through the variable expiration policy.
+     */
+    private record NearCacheExpiry(long ttlNanos) implements Expiry<String, Object> {
+
+        @Override
+        public long expireAfterCreate(String key, Object value, long currentTime) {
+            return ttlNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Object value, long currentTime, long currentDuration) {
+            return ttlNanos;
+        }
+
+        @Override
+        public long expireAfterRead(String key, Object value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
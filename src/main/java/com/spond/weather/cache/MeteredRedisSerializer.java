@@ -0,0 +1,43 @@
+package com.spond.weather.cache;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+/**
+ * Records the size of every value written to Redis, by value type, to size Redis from the
+ * actual entries. Reads are passed through.
+ */
+public class MeteredRedisSerializer implements RedisSerializer<Object> {
+
+    private final RedisSerializer<Object> delegate;
+
+    private final Meter.MeterProvider<DistributionSummary> valueSize;
+
+    public MeteredRedisSerializer(RedisSerializer<Object> delegate, MeterRegistry registry) {
+        this.delegate = delegate;
+        this.valueSize = DistributionSummary.builder("weather.cache.value.size")
+                .description("Serialized size of values written to Redis")
+                .baseUnit("bytes")
+                .withRegistry(registry);
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+
+        byte[] bytes = delegate.serialize(value);
+
+        if (value != null && bytes != null) {
+            // Forecasts, location timeseries and invalidation messages
+            valueSize.withTag("type", value.getClass().getSimpleName()).record(bytes.length);
+        }
+        return bytes;
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        return delegate.deserialize(bytes);
+    }
+}
@@ -0,0 +1,92 @@
+package com.spond.weather.cache;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+
+import java.time.Duration;
+
+/**
+ * Non-blocking access to the forecast cache for the reactive stack. Shares the near cache,
+ * statistics and invalidation messages of {@link ForecastCache}, only the Redis round trips go
+ * through the reactive client.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequiredArgsConstructor
+@Slf4j
+public class ReactiveForecastCache {
+
+    private final Logger logger = LoggerFactory.getLogger(ReactiveForecastCache.class);
+
+    private final ReactiveRedisTemplate<String, Object> reactiveRedisTemplate;
+
+    private final ForecastCache forecastCache;
+
+    public Mono<Object> get(String key) {
+
+        Object value = forecastCache.getNear(key);
+
+        if (value != null) {
+            return Mono.just(value);
+        }
+
+        if (!forecastCache.isNearCacheEnabled()) {
+            return reactiveRedisTemplate.opsForValue().get(key)
+                    .doOnNext(redisValue -> forecastCache.recordRedisResult(key, redisValue, null))
+                    .switchIfEmpty(Mono.fromRunnable(() -> forecastCache.recordRedisResult(key, null, null)));
+        }
+
+        // Both commands go out on the shared connection without waiting for each other
+        return Mono.zip(reactiveRedisTemplate.opsForValue().get(key), reactiveRedisTemplate.getExpire(key))
+                // Zero for a key without expiry
+                .doOnNext(result -> forecastCache.recordRedisResult(key, result.getT1(), result.getT2().isZero() ? null : result.getT2()))
+                .map(Tuple2::getT1)
+                .switchIfEmpty(Mono.fromRunnable(() -> forecastCache.recordRedisResult(key, null, null)));
+    }
+
+    /**
+     * Near cache only lookup, see {@link ForecastCache#getLocal(String)}.
+     */
+    public Object getLocal(String key) {
+        return forecastCache.getLocal(key);
+    }
+
+    /**
+     * See {@link ForecastCache#nearExpiresIn(String)}.
+     */
+    public Duration nearExpiresIn(String key) {
+        return forecastCache.nearExpiresIn(key);
+    }
+
+    public Mono<Void> put(String key, Object value, Duration ttl) {
+
+        if (forecastCache.isWriteBehindEnabled()) {
+            // Only queued, nothing to wait for
+            return Mono.fromRunnable(() -> forecastCache.put(key, value, ttl));
+        }
+
+        return reactiveRedisTemplate.opsForValue().set(key, value, ttl)
+                .doOnSuccess(stored -> forecastCache.putNear(key, value, ttl))
+                .then(publishInvalidation(key));
+    }
+
+    private Mono<Void> publishInvalidation(String key) {
+
+        if (!forecastCache.isInvalidationEnabled()) {
+            return Mono.empty();
+        }
+
+        return reactiveRedisTemplate.convertAndSend(forecastCache.invalidationChannel(), forecastCache.invalidationMessage(key))
+                // Other nodes still pick up the new value once their near cache entry expires
+                .doOnError(e -> logger.warn("Could not publish invalidation for {}: {}", key, e.getMessage()))
+                .onErrorComplete()
+                .then();
+    }
+}
@@ -1,23 +1,151 @@
 package com.spond.weather.config;
 
+import io.netty.channel.ChannelOption;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClientBuilder;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportRuntimeHints;
+import org.springframework.core.env.Environment;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Clock;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 @Configuration
+@EnableConfigurationProperties(WeatherProperties.class)
+@ImportRuntimeHints(WeatherRuntimeHints.class)
 public class AppConfig {
 
     @Value("${weather.user-agent}")
     private String userAgent;
 
+    /**
+     * Connection pool of the met.no client, a bean of its own so its usage can be exported as
+     * metrics. Closed together with the client.
+     */
+    @Bean(destroyMethod = "")
+    public PoolingHttpClientConnectionManager metNoConnectionManager(WeatherProperties weatherProperties) {
+
+        WeatherProperties.Met met = weatherProperties.getMet();
+
+        return PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(met.getMaxConnections())
+                .setMaxConnPerRoute(met.getMaxConnectionsPerRoute())
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(met.getConnectTimeout()))
+                        .setSocketTimeout(Timeout.of(met.getReadTimeout()))
+                        .build())
+                .build();
+    }
+
+    /**
+     * Pooled client for met.no. Connections are kept alive and reused between requests, responses
+     * are requested gzip compressed and decompressed transparently. With the resilience layer on,
+     * the client's own retry of 503 and 429 is off, the circuit breaker must see every attempt.
+     */
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient metNoHttpClient(PoolingHttpClientConnectionManager metNoConnectionManager, WeatherProperties weatherProperties) {
+
+        WeatherProperties.Met met = weatherProperties.getMet();
+
+        HttpClientBuilder builder = HttpClients.custom()
+                .setConnectionManager(metNoConnectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.of(met.getConnectionRequestTimeout()))
+                        .setResponseTimeout(Timeout.of(met.getReadTimeout()))
+                        .build())
+                .evictIdleConnections(TimeValue.of(met.getIdleTimeout()));
+
+        if (weatherProperties.getResilience().isEnabled()) {
+            builder.disableAutomaticRetries();
+        }
+
+        return builder.build();
+    }
+
+    @Bean
+    public RestTemplate restTemplate(ObjectProvider<RestTemplateBuilder> builder, CloseableHttpClient metNoHttpClient) {
+        // Boot only provides the builder on the servlet stack, the reactive stack uses a plain one
+        return builder.getIfAvailable(RestTemplateBuilder::new)
+                .requestFactory(() -> new HttpComponentsClientHttpRequestFactory(metNoHttpClient))
+                .interceptors((request, body, execution) -> {
+                    request.getHeaders().set(HttpHeaders.USER_AGENT, userAgent);
+                    return execution.execute(request, body);
+                }).build();
+    }
+
+    /**
+     * Boot prefers Tomcat when it is on the classpath, the reactive stack should run on Netty's
+     * event loop instead.
+     */
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+    public WebClient metNoWebClient(WebClient.Builder builder, WeatherProperties weatherProperties) {
+
+        WeatherProperties.Met met = weatherProperties.getMet();
+
+        // Reactor Netty pools per remote host, so the route limit applies
+        ConnectionProvider connectionProvider = ConnectionProvider.builder("met-no")
+                .maxConnections(met.getMaxConnectionsPerRoute())
+                .pendingAcquireTimeout(met.getConnectionRequestTimeout())
+                .maxIdleTime(met.getIdleTimeout())
+                .build();
+
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .compress(true)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) met.getConnectTimeout().toMillis())
+                .responseTimeout(met.getReadTimeout());
+
+        return builder.clientConnector(new ReactorClientHttpConnector(httpClient))
+                .defaultHeader(HttpHeaders.USER_AGENT, userAgent)
+                .build();
+    }
+
+    /**
+     * Runs the blocking outbound work of batch requests. With spring.threads.virtual.enabled every
+     * task gets its own virtual thread, just like the Tomcat request threads.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService forecastExecutor(WeatherProperties weatherProperties, Environment environment) {
+        if (Threading.VIRTUAL.isActive(environment)) {
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("forecast-", 0).factory());
+        }
+        return Executors.newFixedThreadPool(weatherProperties.getBatch().getParallelism());
+    }
+
+    /**
+     * Time source of the forecast services for cache freshness, replaced in tests.
+     */
     @Bean
-    public RestTemplate restTemplate(RestTemplateBuilder builder) {
-        return builder.interceptors((request, body, execution) -> {
-            request.getHeaders().set(HttpHeaders.USER_AGENT, userAgent);
-            return execution.execute(request, body);
-        }).build();
+    public Clock clock() {
+        return Clock.systemUTC();
     }
 }
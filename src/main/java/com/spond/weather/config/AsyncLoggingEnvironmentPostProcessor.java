@@ -0,0 +1,62 @@
+package com.spond.weather.config;
+
+import org.apache.commons.logging.Log;
+import org.apache.logging.log4j.util.Constants;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.config.ConfigDataEnvironmentPostProcessor;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.boot.logging.DeferredLogFactory;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.Profiles;
+
+import java.util.Map;
+
+/**
+ * Log4j settings of the async-logging profile. Log4j only reads them from system properties, so
+ * they are set here, once the profiles are known and before the logging system loads
+ * log4j2-async.xml. Values already given on the command line win.
+ * <p>
+ * Per-thread buffers cannot be switched on from here, Log4j reads that flag when the first logger
+ * is created. They are left to the JVM options of a deployment on platform threads: with virtual
+ * threads every request would get buffers of its own.
+ */
+public class AsyncLoggingEnvironmentPostProcessor implements EnvironmentPostProcessor, Ordered {
+
+    static final String PROFILE = "async-logging";
+
+    // When the ring buffer is full, drop INFO and below instead of blocking the request thread
+    static final Map<String, String> LOG4J_PROPERTIES = Map.of(
+            "log4j2.asyncQueueFullPolicy", "Discard",
+            "log4j2.discardThreshold", "INFO");
+
+    private final Log logger;
+
+    public AsyncLoggingEnvironmentPostProcessor(DeferredLogFactory logFactory) {
+        this.logger = logFactory.getLog(AsyncLoggingEnvironmentPostProcessor.class);
+    }
+
+    @Override
+    public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+
+        if (environment.getProperty("spring.threads.virtual.enabled", Boolean.class, false) && Constants.ENABLE_THREADLOCALS) {
+            logger.warn("Log4j thread-locals are enabled together with virtual threads, each virtual thread allocates its own buffers");
+        }
+
+        if (!environment.acceptsProfiles(Profiles.of(PROFILE))) {
+            return;
+        }
+
+        LOG4J_PROPERTIES.forEach((key, value) -> {
+            if (System.getProperty(key) == null) {
+                System.setProperty(key, value);
+            }
+        });
+    }
+
+    // After the config data, which activates the profiles
+    @Override
+    public int getOrder() {
+        return ConfigDataEnvironmentPostProcessor.ORDER + 1;
+    }
+}
@@ -1,21 +1,65 @@
 package com.spond.weather.config;
 
+import com.spond.weather.cache.BinaryForecastSerializer;
+import com.spond.weather.cache.ForecastCache;
+import com.spond.weather.cache.MeteredRedisSerializer;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 @Configuration
 public class CacheConfig {
 
     @Bean
-    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory redisConnectionFactory) {
+    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory redisConnectionFactory, WeatherProperties weatherProperties,
+                                                       MeterRegistry meterRegistry) {
         RedisTemplate<String, Object> template = new RedisTemplate<>();
         template.setConnectionFactory(redisConnectionFactory);
         template.setKeySerializer(new StringRedisSerializer());
-        template.setValueSerializer(new GenericJackson2JsonRedisSerializer());
+        template.setValueSerializer(new MeteredRedisSerializer(valueSerializer(weatherProperties.getCache()), meterRegistry));
         return template;
     }
+
+    /**
+     * Same key and value format as {@link #redisTemplate}, so both stacks read each other's entries.
+     */
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+    public ReactiveRedisTemplate<String, Object> reactiveRedisTemplate(ReactiveRedisConnectionFactory reactiveRedisConnectionFactory,
+                                                                       WeatherProperties weatherProperties,
+                                                                       MeterRegistry meterRegistry) {
+        RedisSerializationContext<String, Object> serializationContext = RedisSerializationContext
+                .<String, Object>newSerializationContext(new StringRedisSerializer())
+                .value(new MeteredRedisSerializer(valueSerializer(weatherProperties.getCache()), meterRegistry))
+                .build();
+        return new ReactiveRedisTemplate<>(reactiveRedisConnectionFactory, serializationContext);
+    }
+
+    static RedisSerializer<Object> valueSerializer(WeatherProperties.Cache cacheProperties) {
+        return switch (cacheProperties.getCodec()) {
+            case JSON -> new GenericJackson2JsonRedisSerializer();
+            case BINARY -> new BinaryForecastSerializer(cacheProperties.getCompressionThreshold());
+        };
+    }
+
+    @Bean
+    public RedisMessageListenerContainer nearCacheInvalidationContainer(RedisConnectionFactory redisConnectionFactory,
+                                                                         ForecastCache forecastCache,
+                                                                         WeatherProperties weatherProperties) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        container.addMessageListener(forecastCache, new ChannelTopic(weatherProperties.getNearCache().getInvalidationChannel()));
+        return container;
+    }
 }
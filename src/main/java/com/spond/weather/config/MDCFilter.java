@@ -1,15 +1,22 @@
 package com.spond.weather.config;
 
+import com.spond.weather.util.RequestTrace;
 import jakarta.servlet.*;
 import org.apache.logging.log4j.ThreadContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
 import java.util.UUID;
 
 @Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class MDCFilter implements Filter {
 
+    private final Logger logger = LoggerFactory.getLogger(MDCFilter.class);
+
     @Override
     public void init(FilterConfig filterConfig) throws ServletException {
     }
@@ -22,11 +29,15 @@ public class MDCFilter implements Filter {
             // Generate a UUID and put it in the MDC
             String requestId = UUID.randomUUID().toString();
             ThreadContext.put("requestId", requestId);
+            RequestTrace trace = RequestTrace.begin();
 
             // Proceed with the next filter in the chain
             chain.doFilter(request, response);
+
+            logger.debug("Request trace: {}", trace);
         } finally {
             // Clear the MDC after the request is processed
+            RequestTrace.end();
             ThreadContext.clearAll();
         }
     }
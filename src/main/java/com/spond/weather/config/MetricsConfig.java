@@ -0,0 +1,110 @@
+package com.spond.weather.config;
+
+import com.spond.weather.cache.CacheWriteBehind;
+import com.spond.weather.cache.ForecastCache;
+import com.spond.weather.ratelimit.ClientRateLimiter;
+import com.spond.weather.resilience.AimdLimit;
+import com.spond.weather.resilience.MetNoGuard;
+import com.spond.weather.service.InFlightRequestRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedBulkheadMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Meters read from existing state on every scrape. The per-request meters are in
+ * {@link com.spond.weather.metrics.ForecastMetrics}.
+ */
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * Lookups per cache tier, the near cache size and the write-behind queue, for sizing the near
+     * cache and Redis.
+     */
+    @Bean
+    public MeterBinder forecastCacheMetrics(ForecastCache forecastCache) {
+        return registry -> {
+            FunctionCounter.builder("weather.cache.tier.lookups", forecastCache, cache -> cache.stats().getNearCacheHits())
+                    .description("Forecast cache lookups by the tier that answered them")
+                    .tag("tier", "near")
+                    .register(registry);
+            FunctionCounter.builder("weather.cache.tier.lookups", forecastCache, cache -> cache.stats().getRedisHits())
+                    .description("Forecast cache lookups by the tier that answered them")
+                    .tag("tier", "redis")
+                    .register(registry);
+            FunctionCounter.builder("weather.cache.tier.lookups", forecastCache, cache -> cache.stats().getMisses())
+                    .description("Forecast cache lookups by the tier that answered them")
+                    .tag("tier", "none")
+                    .register(registry);
+            Gauge.builder("weather.cache.near.size", forecastCache, cache -> cache.stats().getNearCacheSize())
+                    .description("Entries in the in-process near cache")
+                    .register(registry);
+            Gauge.builder("weather.cache.write.behind.queued", forecastCache.getWriteBehind(), CacheWriteBehind::getQueued)
+                    .description("Cache writes waiting for the write-behind worker")
+                    .register(registry);
+            FunctionCounter.builder("weather.cache.write.behind.writes", forecastCache.getWriteBehind(), CacheWriteBehind::getWrittenCount)
+                    .description("Queued cache writes by outcome")
+                    .tag("result", "written")
+                    .register(registry);
+            FunctionCounter.builder("weather.cache.write.behind.writes", forecastCache.getWriteBehind(), CacheWriteBehind::getDroppedCount)
+                    .description("Queued cache writes by outcome")
+                    .tag("result", "dropped")
+                    .register(registry);
+            FunctionCounter.builder("weather.cache.write.behind.writes", forecastCache.getWriteBehind(), CacheWriteBehind::getFailedCount)
+                    .description("Queued cache writes by outcome")
+                    .tag("result", "failed")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder singleFlightMetrics(InFlightRequestRegistry inFlightRequests) {
+        return registry -> Gauge.builder("weather.single.flight.in.flight", inFlightRequests, InFlightRequestRegistry::inFlightCount)
+                .description("Cache misses being loaded, concurrent misses for the same key count once")
+                .register(registry);
+    }
+
+    /**
+     * Leased, available and pending connections of the met.no pool, see weather.met.max-connections.
+     */
+    @Bean
+    public MeterBinder metNoConnectionPoolMetrics(PoolingHttpClientConnectionManager metNoConnectionManager) {
+        return new PoolingHttpClientConnectionManagerMetricsBinder(metNoConnectionManager, "met-no");
+    }
+
+    /**
+     * State and call outcomes of the met.no circuit breaker, bulkhead usage, and the adaptive limit
+     * with the calls it rejected.
+     */
+    @Bean
+    public MeterBinder metNoGuardMetrics(MetNoGuard guard) {
+        return registry -> {
+            TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(guard.getCircuitBreakerRegistry()).bindTo(registry);
+            TaggedBulkheadMetrics.ofBulkheadRegistry(guard.getBulkheadRegistry()).bindTo(registry);
+            Gauge.builder("weather.met.concurrency.limit", guard.getLimit(), AimdLimit::getLimit)
+                    .description("Current adaptive limit on concurrent met.no calls")
+                    .register(registry);
+            FunctionCounter.builder("weather.met.concurrency.rejected", guard, MetNoGuard::getLimitRejections)
+                    .description("met.no calls not made because the adaptive limit was reached")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder rateLimitMetrics(ClientRateLimiter rateLimiter) {
+        return registry -> {
+            FunctionCounter.builder("weather.rate.limit.rejected", rateLimiter, ClientRateLimiter::getRejectedCount)
+                    .description("Requests answered with 429 by the per caller rate limit")
+                    .register(registry);
+            Gauge.builder("weather.rate.limit.clients", rateLimiter, ClientRateLimiter::getTrackedClients)
+                    .description("Callers with a token bucket on this node")
+                    .register(registry);
+        };
+    }
+}
@@ -0,0 +1,94 @@
+package com.spond.weather.config;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spond.weather.dto.ErrorResponseDTO;
+import com.spond.weather.dto.ForecastServiceResponse;
+import com.spond.weather.ratelimit.ClientRateLimiter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import static com.spond.weather.constants.ApplicationConstants.ERROR_CODE_TOO_MANY_REQUESTS;
+import static com.spond.weather.constants.ApplicationConstants.ERROR_DESCRIPTION_RATE_LIMITED;
+
+/**
+ * Rate limits the forecast endpoints per caller, see {@link ClientRateLimiter}. Runs before the
+ * request id is assigned and before any controller, so a throttled request costs a bucket lookup
+ * and a prepared 429. Ordered after the server request observation, 429s still show up in
+ * http.server.requests.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    static final String RATE_LIMITED_PATH = "/api/v1/forecast";
+
+    private final ClientRateLimiter rateLimiter;
+
+    private final byte[] rateLimitedBody;
+
+    public RateLimitFilter(ClientRateLimiter rateLimiter, ObjectMapper objectMapper) {
+        this.rateLimiter = rateLimiter;
+        this.rateLimitedBody = rateLimitedBody(objectMapper);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !rateLimiter.isEnabled() || !request.getRequestURI().startsWith(RATE_LIMITED_PATH);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+
+        String header = rateLimiter.getClientIdHeader();
+        String client = rateLimiter.clientId(header.isEmpty() ? null : request.getHeader(header), request.getRemoteAddr());
+
+        long retryAfterMillis = rateLimiter.acquire(client);
+
+        if (retryAfterMillis == 0) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, retryAfterSeconds(retryAfterMillis));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setContentLength(rateLimitedBody.length);
+        response.getOutputStream().write(rateLimitedBody);
+    }
+
+    // Retry-After takes whole seconds, rounded up so a retry at that time finds a token
+    static String retryAfterSeconds(long retryAfterMillis) {
+        return String.valueOf(Math.ceilDiv(retryAfterMillis, 1000));
+    }
+
+    // Serialized once, every 429 has the same body
+    static byte[] rateLimitedBody(ObjectMapper objectMapper) {
+        try {
+            return objectMapper.writeValueAsBytes(ForecastServiceResponse.builder()
+                    .success(false)
+                    .error(ErrorResponseDTO.builder()
+                            .errorCode(ERROR_CODE_TOO_MANY_REQUESTS)
+                            .errorDescription(ERROR_DESCRIPTION_RATE_LIMITED)
+                            .build())
+                    .build());
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.spond.weather.config;
+
+import io.micrometer.context.ContextRegistry;
+import org.apache.logging.log4j.ThreadContext;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+import java.util.UUID;
+
+/**
+ * Reactive counterpart of {@link MDCFilter}. A request is not bound to one thread, so the request
+ * id travels in the Reactor context and is restored into the ThreadContext on whichever thread
+ * runs the next operator (spring.reactor.context-propagation=auto).
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveMDCFilter implements WebFilter {
+
+    private static final String REQUEST_ID = "requestId";
+
+    public ReactiveMDCFilter() {
+        ContextRegistry.getInstance().registerThreadLocalAccessor(REQUEST_ID,
+                () -> ThreadContext.get(REQUEST_ID),
+                requestId -> ThreadContext.put(REQUEST_ID, requestId),
+                () -> ThreadContext.remove(REQUEST_ID));
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        return chain.filter(exchange)
+                .contextWrite(Context.of(REQUEST_ID, UUID.randomUUID().toString()));
+    }
+}
@@ -0,0 +1,68 @@
+package com.spond.weather.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spond.weather.ratelimit.ClientRateLimiter;
+import com.spond.weather.ratelimit.ReactiveClientRateLimiter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+
+/**
+ * Reactive counterpart of {@link RateLimitFilter}.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class ReactiveRateLimitFilter implements WebFilter {
+
+    private final ReactiveClientRateLimiter rateLimiter;
+
+    private final byte[] rateLimitedBody;
+
+    public ReactiveRateLimitFilter(ReactiveClientRateLimiter rateLimiter, ObjectMapper objectMapper) {
+        this.rateLimiter = rateLimiter;
+        this.rateLimitedBody = RateLimitFilter.rateLimitedBody(objectMapper);
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+
+        ServerHttpRequest request = exchange.getRequest();
+        ClientRateLimiter limits = rateLimiter.getRateLimiter();
+
+        if (!limits.isEnabled() || !request.getPath().value().startsWith(RateLimitFilter.RATE_LIMITED_PATH)) {
+            return chain.filter(exchange);
+        }
+
+        String header = limits.getClientIdHeader();
+        InetSocketAddress remoteAddress = request.getRemoteAddress();
+        String client = limits.clientId(header.isEmpty() ? null : request.getHeaders().getFirst(header),
+                remoteAddress != null ? remoteAddress.getHostString() : "unknown");
+
+        return rateLimiter.acquire(client).flatMap(retryAfterMillis -> {
+
+            if (retryAfterMillis == 0) {
+                return chain.filter(exchange);
+            }
+
+            ServerHttpResponse response = exchange.getResponse();
+            response.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+            response.getHeaders().set(HttpHeaders.RETRY_AFTER, RateLimitFilter.retryAfterSeconds(retryAfterMillis));
+            response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+            response.getHeaders().setContentLength(rateLimitedBody.length);
+            return response.writeWith(Mono.just(response.bufferFactory().wrap(rateLimitedBody)));
+        });
+    }
+}
@@ -0,0 +1,226 @@
+package com.spond.weather.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "weather")
+public class WeatherProperties {
+
+    private final Cache cache = new Cache();
+
+    private final SingleFlight singleFlight = new SingleFlight();
+
+    private final NearCache nearCache = new NearCache();
+
+    private final Met met = new Met();
+
+    private final Batch batch = new Batch();
+
+    private final Refresh refresh = new Refresh();
+
+    private final Grid grid = new Grid();
+
+    private final Resilience resilience = new Resilience();
+
+    private final RateLimit rateLimit = new RateLimit();
+
+    private final WriteBehind writeBehind = new WriteBehind();
+
+    private final Snapshot snapshot = new Snapshot();
+
+    @Data
+    public static class Cache {
+        // TTL of the per-event averaged forecast
+        private Duration eventTtl = Duration.ofHours(2);
+        // TTL of the per-location timeseries when met.no sends neither Expires nor Last-Modified
+        private Duration locationDefaultTtl = Duration.ofHours(2);
+        // Lower bound so an already expired upstream response is not re-fetched on every request
+        private Duration locationMinTtl = Duration.ofMinutes(1);
+        // How long an expired timeseries is kept so it can be revalidated with If-Modified-Since
+        private Duration locationRevalidationWindow = Duration.ofHours(6);
+        // Serve expired timeseries instead of waiting for, or failing with, met.no
+        private boolean staleServingEnabled = false;
+        // Expired for at most this long: served at once and refreshed in the background
+        private Duration staleWhileRevalidate = Duration.ofMinutes(10);
+        // Expired for at most this long: served when met.no fails or times out
+        private Duration staleIfError = Duration.ofHours(1);
+        // Format of the values in Redis, all nodes sharing a Redis must be able to read it
+        private CacheCodec codec = CacheCodec.JSON;
+        // Binary location values larger than this many bytes are deflated, 0 disables compression
+        private int compressionThreshold = 256;
+    }
+
+    @Data
+    public static class SingleFlight {
+        // Coalesce misses across nodes through a short-lived Redis lock
+        private boolean distributedLockEnabled = false;
+        private Duration lockTtl = Duration.ofSeconds(10);
+        private Duration lockWaitTimeout = Duration.ofSeconds(5);
+        private Duration lockPollInterval = Duration.ofMillis(50);
+    }
+
+    @Data
+    public static class NearCache {
+        private boolean enabled = true;
+        private long maximumSize = 10_000;
+        // Upper bound on how long a node may serve an entry without going back to Redis
+        private Duration ttl = Duration.ofMinutes(1);
+        // Redis pub/sub channel used to drop entries from the other nodes' near caches
+        private String invalidationChannel = "forecast-cache-invalidation";
+    }
+
+    @Data
+    public static class Met {
+        private String baseUrl = "https://api.met.no";
+        private ParserMode parserMode = ParserMode.STREAMING;
+        // Connection pool, every request goes to the same host so the route limit is the effective one
+        private int maxConnections = 100;
+        private int maxConnectionsPerRoute = 50;
+        private Duration connectTimeout = Duration.ofSeconds(2);
+        private Duration readTimeout = Duration.ofSeconds(10);
+        // How long a request may wait for a free pooled connection
+        private Duration connectionRequestTimeout = Duration.ofSeconds(2);
+        // Idle pooled connections are closed after this long
+        private Duration idleTimeout = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class Batch {
+        private int maxSize = 200;
+        // Threads resolving cache misses of a batch, one task per distinct location.
+        // Ignored with virtual threads, which start one thread per task.
+        private int parallelism = 16;
+    }
+
+    @Data
+    public static class Refresh {
+        // Refresh frequently read events and their locations in the background before they expire
+        private boolean enabled = true;
+        // Pause between two refresh passes
+        private Duration interval = Duration.ofSeconds(30);
+        // Entries expiring within this time are refreshed
+        private Duration ahead = Duration.ofMinutes(5);
+        // Reads needed for an event to count as hot, the counts are halved after every pass
+        private int minHits = 3;
+        private int maxTrackedKeys = 10_000;
+        private int maxConcurrent = 4;
+        // Upper bound on met.no calls started per second by the refresher
+        private double maxPerSecond = 5;
+    }
+
+    @Data
+    public static class Grid {
+        // How coordinates are mapped to the cell whose forecast is fetched and cached
+        private GridMode mode = GridMode.FIXED;
+        // Cell size of the fixed grid, 0.02 degrees is about 2.2 km north-south, close to met.no's 2.5 km model grid
+        private double resolutionDegrees = 0.02;
+        // Characters of the geohash cell, 6 is about 1.2 x 0.6 km
+        private int geohashPrecision = 6;
+        // Cells whose request and fetch counts are kept for the cache stats
+        private int maxTrackedCells = 10_000;
+        // Most cells one cache stats call reports, each is sorted and serialized on the request
+        private int maxReportedCells = 100;
+    }
+
+    @Data
+    public static class Resilience {
+        // Circuit breaker, bulkhead and adaptive concurrency limit around every met.no call
+        private boolean enabled = true;
+        // The breaker opens when this percentage of the recent calls failed, 5xx, 429 or no response
+        private float failureRateThreshold = 50;
+        // Or when this percentage of them took longer than slowCallDuration
+        private float slowCallRateThreshold = 80;
+        private Duration slowCallDuration = Duration.ofSeconds(3);
+        // Recent calls the rates are computed over, and how many are needed before it can open
+        private int slidingWindowSize = 20;
+        private int minimumCalls = 10;
+        // How long an open breaker rejects calls before letting halfOpenCalls trial calls through
+        private Duration openDuration = Duration.ofSeconds(30);
+        private int halfOpenCalls = 3;
+        // Hard cap on concurrent met.no calls, calls over it fail at once instead of queueing
+        private int maxConcurrentCalls = 50;
+        // Adaptive limit below the cap: cut by backoffRatio after a call slower than latencyThreshold
+        // or failing, raised by one after a successful call while at least half of it is in use
+        private int initialLimit = 20;
+        private int minLimit = 2;
+        private int maxLimit = 50;
+        private Duration latencyThreshold = Duration.ofSeconds(2);
+        private double backoffRatio = 0.9;
+    }
+
+    @Data
+    public static class RateLimit {
+        // Token bucket per caller on the forecast endpoints, throttled requests get a 429. Off until a
+        // client id header is set: behind a load balancer every caller has the balancer's address
+        private boolean enabled = false;
+        // Burst a caller may send at once, and the sustained requests per second after it
+        private int capacity = 20;
+        private double refillPerSecond = 10;
+        // Header naming the caller, only set it behind a gateway that sets it. Empty or missing: the remote address
+        private String clientIdHeader = "";
+        // Share the buckets between nodes through Redis, the local buckets are used when Redis fails
+        private boolean distributedEnabled = false;
+        // Callers whose local bucket is kept, least recently seen ones are dropped first
+        private long maxTrackedClients = 100_000;
+        // Capacity and refill per caller, by client id or remote address, overriding the defaults
+        private Map<String, Quota> quotas = new HashMap<>();
+    }
+
+    @Data
+    public static class WriteBehind {
+        // Queue cache writes and send them to Redis in pipelined batches from a background thread
+        private boolean enabled = false;
+        // Writes waiting for Redis, further writes are dropped and only kept in the near cache
+        private int queueCapacity = 10_000;
+        // Most writes sent in one pipeline
+        private int maxBatchSize = 200;
+        // How long shutdown waits for the worker to write the rest of the queue, once more after interrupting a stuck flush
+        private Duration shutdownTimeout = Duration.ofSeconds(5);
+    }
+
+    @Data
+    public static class Snapshot {
+        // Periodically save the hot cache entries to a local file and load them on startup
+        private boolean enabled = false;
+        // File of the snapshot, required when enabled, best on a volume that outlives the node
+        private String path;
+        // Pause between two snapshots, a last one is written on shutdown
+        private Duration interval = Duration.ofMinutes(1);
+        // Most entries saved, locations and events of the hottest events first
+        private int maxEntries = 20_000;
+    }
+
+    @Data
+    public static class Quota {
+        private int capacity;
+        private double refillPerSecond;
+    }
+
+    public enum CacheCodec {
+        // Jackson with type information, readable with redis-cli
+        JSON,
+        // Compact binary format of BinaryForecastSerializer, still reads JSON entries
+        BINARY
+    }
+
+    public enum GridMode {
+        // Coordinates rounded to 4 decimals, about 11 m
+        NONE,
+        // Fixed-resolution latitude/longitude grid
+        FIXED,
+        // Geohash cell of the configured precision
+        GEOHASH
+    }
+
+    public enum ParserMode {
+        // Token level parser that only reads time, air_temperature and wind_speed
+        STREAMING,
+        // Full Jackson data binding into WeatherApiResponse
+        DATABIND
+    }
+}
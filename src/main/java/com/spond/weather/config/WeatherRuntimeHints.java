@@ -0,0 +1,82 @@
+package com.spond.weather.config;
+
+import com.spond.weather.dto.BatchForecastResponse;
+import com.spond.weather.dto.CacheStatsDTO;
+import com.spond.weather.dto.CellStatsDTO;
+import com.spond.weather.dto.ErrorResponseDTO;
+import com.spond.weather.dto.ForecastDTO;
+import com.spond.weather.dto.ForecastRequestDTO;
+import com.spond.weather.dto.ForecastSeries;
+import com.spond.weather.dto.ForecastServiceResponse;
+import com.spond.weather.dto.LocationForecast;
+import com.spond.weather.dto.WeatherApiResponse;
+import org.apache.logging.log4j.core.config.plugins.processor.PluginCache;
+import org.apache.logging.log4j.core.config.plugins.processor.PluginProcessor;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * What a native image cannot find on its own. The DTOs are bound by Jackson through their Lombok
+ * generated accessors: the API bodies, the databind met.no response, and the cached values, which
+ * the JSON Redis codec reads back by the class name stored with them. Log4j2 creates its appenders,
+ * layouts, filters and pattern converters by reflection from its plugin index.
+ */
+public class WeatherRuntimeHints implements RuntimeHintsRegistrar {
+
+    private final BindingReflectionHintsRegistrar bindingRegistrar = new BindingReflectionHintsRegistrar();
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+
+        bindingRegistrar.registerReflectionHints(hints.reflection(),
+                ForecastDTO.class, LocationForecast.class, ForecastSeries.class, WeatherApiResponse.class,
+                ForecastRequestDTO.class, ForecastServiceResponse.class, BatchForecastResponse.class, ErrorResponseDTO.class,
+                CacheStatsDTO.class, CellStatsDTO.class);
+
+        hints.resources()
+                .registerPattern("log4j2*.xml")
+                .registerPattern(PluginProcessor.PLUGIN_CACHE_FILE);
+
+        registerLog4jPlugins(hints, classLoader);
+    }
+
+    private static void registerLog4jPlugins(RuntimeHints hints, ClassLoader classLoader) {
+
+        PluginCache plugins = new PluginCache();
+        try {
+            plugins.loadCacheFiles(classLoader.getResources(PluginProcessor.PLUGIN_CACHE_FILE));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        plugins.getAllCategories().values().forEach(category -> category.values().forEach(plugin -> {
+            try {
+                registerPlugin(hints, Class.forName(plugin.getClassName(), false, classLoader));
+            } catch (ClassNotFoundException | LinkageError e) {
+                // Plugin of an optional dependency that is not on the classpath, e.g. the Kafka appender
+            }
+        }));
+    }
+
+    // The plugin, its builder and the builder's superclasses, whose fields are set from the configuration
+    private static void registerPlugin(RuntimeHints hints, Class<?> plugin) {
+
+        registerMembers(hints, plugin);
+
+        for (Class<?> nested : plugin.getDeclaredClasses()) {
+            for (Class<?> type = nested; type != null && type != Object.class; type = type.getSuperclass()) {
+                registerMembers(hints, type);
+            }
+        }
+    }
+
+    private static void registerMembers(RuntimeHints hints, Class<?> type) {
+        hints.reflection().registerType(type, MemberCategory.INVOKE_DECLARED_CONSTRUCTORS,
+                MemberCategory.INVOKE_DECLARED_METHODS, MemberCategory.DECLARED_FIELDS);
+    }
+}
@@ -4,6 +4,7 @@ public class ApplicationConstants {
 
     public static final String ERROR_CODE_VALIDATION_ERROR = "Request validation failed";
     public static final String ERROR_CODE_INTERNAL_SERVER_ERROR = "Internal Server Error";
+    public static final String ERROR_CODE_TOO_MANY_REQUESTS = "Too Many Requests";
     public static final String ERROR_DESCRIPTION_START_DATE_BEFORE_END_DATE = "Start date should be before end date";
     public static final String ERROR_DESCRIPTION_INVALID_DATE = "Invalid start_date or end_date";
     public static final String ERROR_DESCRIPTION_INVALID_DATE_FORMAT  = "Invalid date format";
@@ -12,4 +13,8 @@ public class ApplicationConstants {
     public static final String ERROR_DESCRIPTION_INVALID_LATITUDE = "Invalid latitude";
     public static final String ERROR_DESCRIPTION_INVALID_LONGITUDE = "Invalid longitude";
     public static final String ERROR_DESCRIPTION_INVALID_LOCATION_FORMAT = "Invalid format for location co-ordinates";
+    public static final String ERROR_DESCRIPTION_MISSING_EVENT_ID = "Missing eventId";
+    public static final String ERROR_DESCRIPTION_BATCH_TOO_LARGE = "Too many events in one batch, the maximum is ";
+    public static final String ERROR_DESCRIPTION_RATE_LIMITED = "Request rate limit exceeded, retry after the time in Retry-After";
+    public static final String ERROR_DESCRIPTION_FORECAST_FAILED = "Error occurred while processing the request";
 }
@@ -0,0 +1,43 @@
+package com.spond.weather.controller;
+
+import com.spond.weather.cache.ForecastCache;
+import com.spond.weather.config.WeatherProperties;
+import com.spond.weather.dto.CacheStatsDTO;
+import com.spond.weather.service.ForecastAccessTracker;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+/**
+ * Cache hit counts and the busiest grid cells, at /actuator/cachestats. Served with the other
+ * management endpoints rather than the public API, and the cells reported are capped by
+ * weather.grid.max-reported-cells.
+ */
+@Component
+@Endpoint(id = "cachestats")
+@RequiredArgsConstructor
+public class CacheStatsEndpoint {
+
+    static final int DEFAULT_CELLS = 20;
+
+    private final ForecastCache forecastCache;
+
+    private final ForecastAccessTracker accessTracker;
+
+    private final WeatherProperties weatherProperties;
+
+    @ReadOperation
+    public CacheStatsDTO cacheStats(@Nullable Integer cells) {
+
+        int limit = Math.clamp(cells == null ? DEFAULT_CELLS : cells, 0, weatherProperties.getGrid().getMaxReportedCells());
+
+        CacheStatsDTO stats = forecastCache.stats();
+        stats.setGridMode(weatherProperties.getGrid().getMode().name());
+        stats.setCellHitRate(accessTracker.overallCellHitRate());
+        stats.setCells(accessTracker.cellStats(limit));
+
+        return stats;
+    }
+}
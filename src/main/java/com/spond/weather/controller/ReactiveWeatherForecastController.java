@@ -0,0 +1,148 @@
+package com.spond.weather.controller;
+
+import com.spond.weather.config.WeatherProperties;
+import com.spond.weather.dto.BatchForecastResponse;
+import com.spond.weather.dto.ErrorResponseDTO;
+import com.spond.weather.dto.ForecastRequestDTO;
+import com.spond.weather.dto.ForecastServiceResponse;
+import com.spond.weather.metrics.ForecastMetrics;
+import com.spond.weather.service.ReactiveWeatherForecastService;
+import com.spond.weather.validation.RequestValidator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static com.spond.weather.constants.ApplicationConstants.*;
+
+/**
+ * Reactive variant of {@link WeatherForecastController}, active when the application runs on
+ * WebFlux. Same endpoints, status codes and response bodies.
+ */
+@RestController
+@RequestMapping("/api/v1/")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequiredArgsConstructor
+@Slf4j
+public class ReactiveWeatherForecastController {
+
+    private final Logger logger = LoggerFactory.getLogger(ReactiveWeatherForecastController.class);
+
+    private final ReactiveWeatherForecastService weatherForecastService;
+
+    private final WeatherProperties weatherProperties;
+
+    private final ForecastMetrics metrics;
+
+    @GetMapping("/forecast/{eventId}")
+    public Mono<ResponseEntity<ForecastServiceResponse>> getWeather(
+            @PathVariable("eventId") UUID eventId,
+            @RequestParam("latitude") double latitude,
+            @RequestParam("longitude") double longitude,
+            @RequestParam("startTimeStamp") String startTimeStamp,
+            @RequestParam("endTimeStamp") String endTimeStamp) {
+        logger.info("Request received for latitude: {} and longitude: {}", latitude, longitude);
+
+        var isInvalidRequest = metrics.time(ForecastMetrics.Stage.VALIDATION,
+                () -> RequestValidator.validateRequest(latitude, longitude, startTimeStamp, endTimeStamp));
+
+        if (isInvalidRequest.isPresent()) {
+            return Mono.just(ResponseEntity.badRequest()
+                    .body(ForecastServiceResponse.builder()
+                            .success(false)
+                            .error(isInvalidRequest.get())
+                            .build()));
+        }
+
+        return weatherForecastService.resolveWeatherForecast(eventId, latitude, longitude, startTimeStamp, endTimeStamp)
+                .map(forecast -> WeatherForecastController.cacheableOk(forecast)
+                        .body(ForecastServiceResponse.builder()
+                                .success(true)
+                                .forecastData(forecast.forecast())
+                                .staleSeconds(forecast.isStale() ? forecast.staleSeconds() : null)
+                                .build()))
+                .switchIfEmpty(Mono.fromSupplier(() -> ResponseEntity.badRequest()
+                        .body(ForecastServiceResponse.builder()
+                                .success(false)
+                                .error(ErrorResponseDTO.builder()
+                                        .errorCode("NO_FORECAST_DATA")
+                                        .errorDescription("No forecast data available for the given location and time range")
+                                        .build())
+                                .build())))
+                .onErrorResume(e -> {
+                    logger.error("Error occurred while processing the request: {}", e.getMessage());
+                    return Mono.just(ResponseEntity.internalServerError()
+                            .body(ForecastServiceResponse.builder()
+                                    .success(false)
+                                    .error(ErrorResponseDTO.builder()
+                                            .errorCode(ERROR_CODE_INTERNAL_SERVER_ERROR)
+                                            .errorDescription("Error occurred while processing the request" + e.getMessage())
+                                            .build())
+                                    .build()));
+                });
+    }
+
+    @PostMapping("/forecast/batch")
+    public Mono<ResponseEntity<?>> getWeatherBatch(@RequestBody List<ForecastRequestDTO> requests) {
+        logger.info("Batch request received for {} events", requests.size());
+
+        int maxSize = weatherProperties.getBatch().getMaxSize();
+
+        if (requests.size() > maxSize) {
+            return Mono.just(ResponseEntity.badRequest()
+                    .body(ForecastServiceResponse.builder()
+                            .success(false)
+                            .error(ErrorResponseDTO.builder()
+                                    .errorCode(ERROR_CODE_VALIDATION_ERROR)
+                                    .errorDescription(ERROR_DESCRIPTION_BATCH_TOO_LARGE + maxSize)
+                                    .build())
+                            .build()));
+        }
+
+        // Invalid entries are answered individually, only the valid ones reach the service
+        ForecastServiceResponse[] results = new ForecastServiceResponse[requests.size()];
+        List<ForecastRequestDTO> validRequests = new ArrayList<>();
+        List<Integer> validPositions = new ArrayList<>();
+
+        for (int i = 0; i < requests.size(); i++) {
+            ForecastRequestDTO request = requests.get(i);
+            Optional<ErrorResponseDTO> isInvalidRequest = metrics.time(ForecastMetrics.Stage.VALIDATION,
+                    () -> WeatherForecastController.validateBatchEntry(request));
+
+            if (isInvalidRequest.isPresent()) {
+                results[i] = ForecastServiceResponse.builder()
+                        .eventId(request.getEventId())
+                        .success(false)
+                        .error(isInvalidRequest.get())
+                        .build();
+            } else {
+                validRequests.add(request);
+                validPositions.add(i);
+            }
+        }
+
+        Mono<List<ForecastServiceResponse>> forecasts = validRequests.isEmpty()
+                ? Mono.just(List.of())
+                : weatherForecastService.getWeatherForecasts(validRequests);
+
+        return forecasts.map(resolved -> {
+            for (int i = 0; i < resolved.size(); i++) {
+                results[validPositions.get(i)] = resolved.get(i);
+            }
+            return ResponseEntity.ok()
+                    .body(BatchForecastResponse.builder()
+                            .results(Arrays.asList(results))
+                            .build());
+        });
+    }
+}
@@ -1,22 +1,37 @@
 package com.spond.weather.controller;
 
+import com.spond.weather.config.WeatherProperties;
+import com.spond.weather.dto.BatchForecastResponse;
 import com.spond.weather.dto.ErrorResponseDTO;
+import com.spond.weather.dto.ForecastDTO;
+import com.spond.weather.dto.ForecastRequestDTO;
 import com.spond.weather.dto.ForecastServiceResponse;
+import com.spond.weather.dto.ResolvedForecast;
+import com.spond.weather.metrics.ForecastMetrics;
 import com.spond.weather.service.WeatherForecastService;
 import com.spond.weather.validation.RequestValidator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.CacheControl;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
-import static com.spond.weather.constants.ApplicationConstants.ERROR_CODE_INTERNAL_SERVER_ERROR;
+import static com.spond.weather.constants.ApplicationConstants.*;
 
 @RestController
 @RequestMapping("/api/v1/")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequiredArgsConstructor
 @Slf4j
 public class WeatherForecastController {
@@ -25,6 +40,10 @@ public class WeatherForecastController {
 
     private final WeatherForecastService weatherForecastService;
 
+    private final WeatherProperties weatherProperties;
+
+    private final ForecastMetrics metrics;
+
     @GetMapping("/forecast/{eventId}")
     public ResponseEntity<?> getWeather(
             @PathVariable("eventId") UUID eventId,
@@ -35,7 +54,8 @@ public class WeatherForecastController {
         logger.info("Request received for latitude: {} and longitude: {}", latitude, longitude);
 
         try {
-            var isInvalidRequest = RequestValidator.validateRequest(latitude, longitude, startTimeStamp, endTimeStamp);
+            var isInvalidRequest = metrics.time(ForecastMetrics.Stage.VALIDATION,
+                    () -> RequestValidator.validateRequest(latitude, longitude, startTimeStamp, endTimeStamp));
 
             if (isInvalidRequest.isPresent()) {
                 return ResponseEntity.badRequest()
@@ -45,7 +65,7 @@ public class WeatherForecastController {
                                 .build());
             }
 
-            var forecastData = weatherForecastService.getWeatherForecast(eventId, latitude, longitude, startTimeStamp, endTimeStamp);
+            var forecastData = weatherForecastService.resolveWeatherForecast(eventId, latitude, longitude, startTimeStamp, endTimeStamp);
 
             if (forecastData.isEmpty()) {
                 return ResponseEntity.badRequest()
@@ -59,10 +79,13 @@ public class WeatherForecastController {
             }
 
 
-            return ResponseEntity.ok()
+            // Build the response from the forecast resolved above, a second lookup would cost another
+            // cache round trip or even another upstream call
+            return cacheableOk(forecastData.get())
                     .body(ForecastServiceResponse.builder()
                             .success(true)
-                            .forecastData(weatherForecastService.getWeatherForecast(eventId, latitude, longitude, startTimeStamp, endTimeStamp).get())
+                            .forecastData(forecastData.get().forecast())
+                            .staleSeconds(forecastData.get().isStale() ? forecastData.get().staleSeconds() : null)
                             .build());
         } catch (Exception e) {
             logger.error("Error occurred while processing the request: {}", e.getMessage());
@@ -77,4 +100,109 @@ public class WeatherForecastController {
         }
     }
 
+    @PostMapping("/forecast/batch")
+    public ResponseEntity<?> getWeatherBatch(@RequestBody List<ForecastRequestDTO> requests) {
+        logger.info("Batch request received for {} events", requests.size());
+
+        int maxSize = weatherProperties.getBatch().getMaxSize();
+
+        if (requests.size() > maxSize) {
+            return ResponseEntity.badRequest()
+                    .body(ForecastServiceResponse.builder()
+                            .success(false)
+                            .error(ErrorResponseDTO.builder()
+                                    .errorCode(ERROR_CODE_VALIDATION_ERROR)
+                                    .errorDescription(ERROR_DESCRIPTION_BATCH_TOO_LARGE + maxSize)
+                                    .build())
+                            .build());
+        }
+
+        // Invalid entries are answered individually, only the valid ones reach the service
+        ForecastServiceResponse[] results = new ForecastServiceResponse[requests.size()];
+        List<ForecastRequestDTO> validRequests = new ArrayList<>();
+        List<Integer> validPositions = new ArrayList<>();
+
+        for (int i = 0; i < requests.size(); i++) {
+            ForecastRequestDTO request = requests.get(i);
+            Optional<ErrorResponseDTO> isInvalidRequest = metrics.time(ForecastMetrics.Stage.VALIDATION, () -> validateBatchEntry(request));
+
+            if (isInvalidRequest.isPresent()) {
+                results[i] = ForecastServiceResponse.builder()
+                        .eventId(request.getEventId())
+                        .success(false)
+                        .error(isInvalidRequest.get())
+                        .build();
+            } else {
+                validRequests.add(request);
+                validPositions.add(i);
+            }
+        }
+
+        if (!validRequests.isEmpty()) {
+            List<ForecastServiceResponse> forecasts = weatherForecastService.getWeatherForecasts(validRequests);
+            for (int i = 0; i < forecasts.size(); i++) {
+                results[validPositions.get(i)] = forecasts.get(i);
+            }
+        }
+
+        return ResponseEntity.ok()
+                .body(BatchForecastResponse.builder()
+                        .results(Arrays.asList(results))
+                        .build());
+    }
+
+    static Optional<ErrorResponseDTO> validateBatchEntry(ForecastRequestDTO request) {
+
+        if (request.getEventId() == null) {
+            return Optional.of(ErrorResponseDTO.builder()
+                    .errorCode(ERROR_CODE_VALIDATION_ERROR)
+                    .errorDescription(ERROR_DESCRIPTION_MISSING_EVENT_ID)
+                    .build());
+        }
+
+        if (request.getLatitude() == null || request.getLongitude() == null) {
+            return Optional.of(ErrorResponseDTO.builder()
+                    .errorCode(ERROR_CODE_VALIDATION_ERROR)
+                    .errorDescription(ERROR_DESCRIPTION_INVALID_LOCATION_FORMAT)
+                    .build());
+        }
+
+        return RequestValidator.validateRequest(request.getLatitude(), request.getLongitude(),
+                request.getStartTimeStamp(), request.getEndTimeStamp());
+    }
+
+
+    /**
+     * 200 with HTTP caching headers for a single forecast. A fresh forecast gets a strong ETag and
+     * may be cached by clients for as long as the service caches it, a GET with a matching
+     * If-None-Match is then answered with 304 and no body. A forecast from stale data is not
+     * cacheable at all.
+     */
+    static ResponseEntity.BodyBuilder cacheableOk(ResolvedForecast forecast) {
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+
+        if (forecast.isStale()) {
+            return response.cacheControl(CacheControl.noStore());
+        }
+
+        response.eTag(etag(forecast.forecast()));
+
+        long maxAge = TimeUnit.MILLISECONDS.toSeconds(forecast.expiresAt() - System.currentTimeMillis());
+
+        // Unknown or about to expire, clients revalidate with the ETag on every use
+        if (maxAge <= 0) {
+            return response.cacheControl(CacheControl.noCache());
+        }
+
+        return response.cacheControl(CacheControl.maxAge(maxAge, TimeUnit.SECONDS).cachePublic())
+                .headers(headers -> headers.setExpires(forecast.expiresAt()));
+    }
+
+    // The cached forecast is the version, the same values always give the same tag
+    static String etag(ForecastDTO forecast) {
+        HexFormat hex = HexFormat.of();
+        return "\"" + hex.toHexDigits(Double.doubleToLongBits(forecast.getAirTemperature()))
+                + hex.toHexDigits(Double.doubleToLongBits(forecast.getWindSpeed())) + "\"";
+    }
 }
@@ -0,0 +1,19 @@
+package com.spond.weather.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Builder
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchForecastResponse {
+
+    // One entry per requested event, in request order
+    private List<ForecastServiceResponse> results;
+
+}
@@ -0,0 +1,29 @@
+package com.spond.weather.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Builder
+@Data
+public class CacheStatsDTO {
+
+    private long lookups;
+    private long nearCacheHits;
+    private long redisHits;
+    private long misses;
+    // Share of all lookups answered from the in-process cache
+    private double nearCacheHitRate;
+    // Share of near cache misses answered from Redis
+    private double redisHitRate;
+    private long nearCacheSize;
+    private long nearCacheEvictions;
+    // Grid cells the coordinates are snapped to, see weather.grid.mode
+    private String gridMode;
+    // Share of all requests answered without a met.no call for their cell
+    private double cellHitRate;
+    // Busiest cells first
+    private List<CellStatsDTO> cells;
+
+}
@@ -0,0 +1,17 @@
+package com.spond.weather.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Builder
+@Data
+public class CellStatsDTO {
+
+    // Cache key of the grid cell, with the coordinates of its centre
+    private String cell;
+    private long requests;
+    private long upstreamFetches;
+    // Share of the requests answered without a met.no call
+    private double hitRate;
+
+}
@@ -0,0 +1,18 @@
+package com.spond.weather.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ForecastRequestDTO {
+    private UUID eventId;
+    private Double latitude;
+    private Double longitude;
+    private String startTimeStamp;
+    private String endTimeStamp;
+}
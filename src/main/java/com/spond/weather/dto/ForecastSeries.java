@@ -0,0 +1,23 @@
+package com.spond.weather.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Columnar met.no timeseries holding only the values the service reads. Index i of each array
+ * describes the same forecast entry and entries are sorted by time. This is also the cached form
+ * of a location forecast, a few KB of primitives per location.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ForecastSeries {
+    private long[] epochSeconds;
+    private double[] airTemperature;
+    private double[] windSpeed;
+
+    public int size() {
+        return epochSeconds.length;
+    }
+}
@@ -6,12 +6,18 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.UUID;
+
 @Builder
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class ForecastServiceResponse {
 
+    // Only set for the entries of a batch response
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private UUID eventId;
+
     private boolean success;
 
     @JsonInclude(JsonInclude.Include.NON_NULL)
@@ -20,4 +26,8 @@ public class ForecastServiceResponse {
     @JsonInclude(JsonInclude.Include.NON_NULL)
     private ForecastDTO forecastData;
 
+    // Seconds the forecast data is past its upstream expiry, only set when stale data was served
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long staleSeconds;
+
 }
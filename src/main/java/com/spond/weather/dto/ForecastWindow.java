@@ -0,0 +1,28 @@
+package com.spond.weather.dto;
+
+/**
+ * Entries of a {@link ForecastSeries} selected for an event, without copying them. Either the
+ * contiguous range [from, to) or, when no entry falls inside the event, the entries closest to the
+ * event start and end (-1 when there is none).
+ */
+public record ForecastWindow(int from, int to, int closestStart, int closestEnd) {
+
+    public static ForecastWindow range(int from, int to) {
+        return new ForecastWindow(from, to, -1, -1);
+    }
+
+    public static ForecastWindow closest(int closestStart, int closestEnd) {
+        return new ForecastWindow(0, 0, closestStart, closestEnd);
+    }
+
+    public boolean isRange() {
+        return to > from;
+    }
+
+    public int size() {
+        if (isRange()) {
+            return to - from;
+        }
+        return (closestStart >= 0 ? 1 : 0) + (closestEnd >= 0 ? 1 : 0);
+    }
+}
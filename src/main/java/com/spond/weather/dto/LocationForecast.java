@@ -0,0 +1,54 @@
+package com.spond.weather.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.spond.weather.util.ForecastAggregateIndex;
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * Parsed met.no timeseries for a rounded location, shared by all events at that location. The
+ * aggregate index of the series is built with it, when the series is fetched or read back from
+ * Redis or the snapshot, and is not part of the cached form.
+ */
+@Data
+@NoArgsConstructor
+public class LocationForecast {
+    private ForecastSeries series;
+    // Epoch millis after which the upstream data should be considered stale
+    private long expiresAt;
+    // Epoch millis from the upstream Last-Modified header, -1 if absent
+    private long lastModified;
+    // Built with the series
+    @JsonIgnore
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private ForecastAggregateIndex aggregateIndex;
+
+    public LocationForecast(ForecastSeries series, long expiresAt, long lastModified) {
+        setSeries(series);
+        this.expiresAt = expiresAt;
+        this.lastModified = lastModified;
+    }
+
+    public void setSeries(ForecastSeries series) {
+        this.series = series;
+        this.aggregateIndex = series == null ? null : ForecastAggregateIndex.of(series);
+    }
+
+    /**
+     * The same series, and index, with the expiry of a revalidation that found it unchanged.
+     */
+    public LocationForecast revalidated(long expiresAt, long lastModified) {
+        LocationForecast revalidated = new LocationForecast();
+        revalidated.series = series;
+        revalidated.aggregateIndex = aggregateIndex;
+        revalidated.expiresAt = expiresAt;
+        revalidated.lastModified = lastModified;
+        return revalidated;
+    }
+}
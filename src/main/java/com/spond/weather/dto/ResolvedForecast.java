@@ -0,0 +1,25 @@
+package com.spond.weather.dto;
+
+/**
+ * A forecast as served to the caller, with how many seconds the met.no data behind it had been
+ * expired (0 when it was fresh), and until when the service caches it in epoch millis (0 when
+ * unknown or not cached).
+ */
+public record ResolvedForecast(ForecastDTO forecast, long staleSeconds, long expiresAt) {
+
+    public ResolvedForecast(ForecastDTO forecast, long staleSeconds) {
+        this(forecast, staleSeconds, 0);
+    }
+
+    public static ResolvedForecast fresh(ForecastDTO forecast) {
+        return new ResolvedForecast(forecast, 0, 0);
+    }
+
+    public static ResolvedForecast fresh(ForecastDTO forecast, long expiresAt) {
+        return new ResolvedForecast(forecast, 0, expiresAt);
+    }
+
+    public boolean isStale() {
+        return staleSeconds > 0;
+    }
+}
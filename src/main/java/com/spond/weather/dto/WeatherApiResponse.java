@@ -39,7 +39,8 @@ public class WeatherApiResponse {
     @lombok.Data
     @JsonIgnoreProperties(ignoreUnknown = true)
     public static class TemperatureDetails {
-        private double air_temperature;
-        private double wind_speed;
+        // Null when met.no left the value out
+        private Double air_temperature;
+        private Double wind_speed;
     }
 }
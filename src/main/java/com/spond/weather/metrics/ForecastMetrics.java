@@ -0,0 +1,142 @@
+package com.spond.weather.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Meters of the forecast pipeline: a timer per processing stage, cache outcomes per cache, met.no
+ * calls by status, met.no payload sizes and the met.no calls in flight. Histogram buckets are set
+ * with the management.metrics.distribution properties, see application.properties.
+ */
+@Component
+public class ForecastMetrics {
+
+    public enum Stage {
+        VALIDATION,
+        CACHE_LOOKUP,
+        PARSE,
+        FILTER,
+        AGGREGATE
+    }
+
+    public enum CacheResult {
+        HIT,
+        MISS,
+        // Expired entry served, see weather.cache.stale-serving-enabled
+        STALE
+    }
+
+    // Status tag of a met.no call that got no HTTP response
+    public static final String IO_ERROR = "IO_ERROR";
+
+    private final Map<Stage, Timer> stageTimers = new EnumMap<>(Stage.class);
+
+    private final Map<CacheResult, Counter> eventCacheResults = new EnumMap<>(CacheResult.class);
+
+    private final Map<CacheResult, Counter> locationCacheResults = new EnumMap<>(CacheResult.class);
+
+    private final Meter.MeterProvider<Timer> upstreamTimers;
+
+    private final DistributionSummary payloadSize;
+
+    private final AtomicInteger upstreamInFlight = new AtomicInteger();
+
+    public ForecastMetrics(MeterRegistry registry) {
+
+        for (Stage stage : Stage.values()) {
+            stageTimers.put(stage, Timer.builder("weather.forecast.stage")
+                    .description("Time spent in one step of resolving a forecast")
+                    .tag("stage", tagValue(stage))
+                    .register(registry));
+        }
+
+        for (CacheResult result : CacheResult.values()) {
+            eventCacheResults.put(result, cacheCounter(registry, "event", result));
+            locationCacheResults.put(result, cacheCounter(registry, "location", result));
+        }
+
+        upstreamTimers = Timer.builder("weather.met.requests")
+                .description("met.no calls, including reading and parsing the body")
+                .withRegistry(registry);
+
+        payloadSize = DistributionSummary.builder("weather.met.payload.size")
+                .description("Uncompressed size of met.no response bodies")
+                .baseUnit("bytes")
+                .register(registry);
+
+        Gauge.builder("weather.met.in.flight", upstreamInFlight, AtomicInteger::get)
+                .description("met.no calls waiting for a response")
+                .register(registry);
+    }
+
+    public <T> T time(Stage stage, Supplier<T> step) {
+        return stageTimers.get(stage).record(step);
+    }
+
+    /**
+     * Times the subscription of a reactive step, from subscribe to its terminal signal.
+     */
+    public <T> Mono<T> time(Stage stage, Mono<T> step) {
+        return Mono.defer(() -> {
+            long startedAt = System.nanoTime();
+            return step.doFinally(signal -> record(stage, startedAt));
+        });
+    }
+
+    // Records the time since startedAt, a System.nanoTime() value
+    public void record(Stage stage, long startedAt) {
+        stageTimers.get(stage).record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+    }
+
+    public void eventCacheResult(CacheResult result) {
+        eventCacheResults.get(result).increment();
+    }
+
+    public void locationCacheResult(CacheResult result) {
+        locationCacheResults.get(result).increment();
+    }
+
+    public void payloadSize(long bytes) {
+        payloadSize.record(bytes);
+    }
+
+    /**
+     * Counts a met.no call as in flight. Returns the start time to pass to {@link #upstreamFinished}.
+     */
+    public long upstreamStarted() {
+        upstreamInFlight.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    // Status is the HTTP status code, 0 without a response, which is tagged IO_ERROR
+    public void upstreamFinished(long startedAt, int status) {
+
+        upstreamInFlight.decrementAndGet();
+        upstreamTimers.withTag("status", status > 0 ? String.valueOf(status) : IO_ERROR).record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+    }
+
+    private static Counter cacheCounter(MeterRegistry registry, String cache, CacheResult result) {
+        return Counter.builder("weather.cache.requests")
+                .description("Forecast cache lookups by outcome")
+                .tag("cache", cache)
+                .tag("result", tagValue(result))
+                .register(registry);
+    }
+
+    private static String tagValue(Enum<?> value) {
+        return value.name().toLowerCase(Locale.ROOT);
+    }
+}
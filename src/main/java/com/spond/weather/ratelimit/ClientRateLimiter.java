@@ -0,0 +1,202 @@
+package com.spond.weather.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.spond.weather.config.WeatherProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket rate limit per caller. By default every node keeps its own buckets in memory. With
+ * weather.rate-limit.distributed-enabled the bucket lives in Redis and is shared by all nodes,
+ * and a caller Redis refused is refused locally until its next token is due, so a caller looping
+ * on the API costs one Redis round trip per token rather than one per request.
+ */
+@Component
+@Slf4j
+public class ClientRateLimiter {
+
+    private final Logger logger = LoggerFactory.getLogger(ClientRateLimiter.class);
+
+    static final String KEY_PREFIX = "RateLimit:";
+
+    // Tokens kept as integer thousandths. ARGV[2], tokens per second, is thousandths per millisecond.
+    // Redis TIME keeps the refill on one clock for all nodes. Returns the milliseconds until a token, 0 when taken.
+    static final RedisScript<Long> TOKEN_BUCKET_SCRIPT = new DefaultRedisScript<>("""
+            local capacity = tonumber(ARGV[1]) * 1000
+            local refill = tonumber(ARGV[2])
+            local time = redis.call('TIME')
+            local now = time[1] * 1000 + math.floor(time[2] / 1000)
+            local bucket = redis.call('HMGET', KEYS[1], 'tokens', 'at')
+            local tokens = tonumber(bucket[1]) or capacity
+            local at = tonumber(bucket[2]) or now
+            tokens = math.min(capacity, tokens + math.max(0, now - at) * refill)
+            local wait = 0
+            if tokens >= 1000 then
+                tokens = tokens - 1000
+            else
+                wait = math.ceil((1000 - tokens) / refill)
+            end
+            redis.call('HSET', KEYS[1], 'tokens', math.floor(tokens), 'at', now)
+            redis.call('PEXPIRE', KEYS[1], math.ceil(capacity / refill) + 1000)
+            return wait
+            """, Long.class);
+
+    static final RedisSerializer<String> ARGS_SERIALIZER = StringRedisSerializer.UTF_8;
+
+    static final RedisSerializer<Long> RESULT_SERIALIZER = new GenericToStringSerializer<>(Long.class);
+
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    private final WeatherProperties.RateLimit properties;
+
+    // Quota of callers without an entry in weather.rate-limit.quotas
+    private final WeatherProperties.Quota defaultQuota = new WeatherProperties.Quota();
+
+    private final Cache<String, TokenBucket> buckets;
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    public ClientRateLimiter(RedisTemplate<String, Object> redisTemplate, WeatherProperties weatherProperties) {
+
+        this.redisTemplate = redisTemplate;
+        this.properties = weatherProperties.getRateLimit();
+        this.defaultQuota.setCapacity(properties.getCapacity());
+        this.defaultQuota.setRefillPerSecond(properties.getRefillPerSecond());
+
+        // Kept at least until an idle caller's bucket would be full again, dropping it earlier would forgive debt
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxTrackedClients())
+                .expireAfterAccess(timeToFill(properties).plusMinutes(1))
+                .build();
+
+        if (properties.isEnabled() && properties.getClientIdHeader().isEmpty()) {
+            logger.warn("Rate limit keyed by remote address, callers behind a proxy or load balancer share one bucket");
+        }
+    }
+
+    /**
+     * Takes a token from the caller's bucket. Returns 0 when the request may proceed, otherwise
+     * the milliseconds until the caller may retry.
+     */
+    public long acquire(String client) {
+
+        if (!properties.isEnabled()) {
+            return 0;
+        }
+
+        long now = System.nanoTime();
+        TokenBucket bucket = bucket(client, now);
+
+        if (!properties.isDistributedEnabled()) {
+            return acquireLocally(bucket, now);
+        }
+
+        long blocked = bucket.blockedFor(now);
+        if (blocked > 0) {
+            return reject(blocked);
+        }
+
+        try {
+            Long wait = redisTemplate.execute(TOKEN_BUCKET_SCRIPT, ARGS_SERIALIZER, RESULT_SERIALIZER,
+                    List.of(KEY_PREFIX + client), (Object[]) scriptArgs(client));
+            return onRedisResult(bucket, now, wait);
+        } catch (Exception e) {
+            // Each node limits on its own until Redis is back
+            logger.warn("Could not check the rate limit of {} in Redis: {}", client, e.getMessage());
+            return acquireLocally(bucket, now);
+        }
+    }
+
+    /**
+     * The caller a request is counted against: the client id header when configured and present,
+     * otherwise the remote address.
+     */
+    public String clientId(String clientIdHeaderValue, String remoteAddress) {
+        return clientIdHeaderValue != null && !clientIdHeaderValue.isBlank() ? clientIdHeaderValue : remoteAddress;
+    }
+
+    public String getClientIdHeader() {
+        return properties.getClientIdHeader();
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    public long getTrackedClients() {
+        return buckets.estimatedSize();
+    }
+
+    boolean isDistributed() {
+        return properties.isEnabled() && properties.isDistributedEnabled();
+    }
+
+    TokenBucket bucket(String client, long now) {
+        return buckets.get(client, key -> {
+            WeatherProperties.Quota quota = quota(key);
+            return new TokenBucket(quota.getCapacity(), quota.getRefillPerSecond(), now);
+        });
+    }
+
+    String[] scriptArgs(String client) {
+        WeatherProperties.Quota quota = quota(client);
+        return new String[]{String.valueOf(quota.getCapacity()), String.valueOf(quota.getRefillPerSecond())};
+    }
+
+    long acquireLocally(TokenBucket bucket, long now) {
+        long wait = bucket.tryConsume(now);
+        return wait == 0 ? 0 : reject(wait);
+    }
+
+    // Wait is Redis' answer in milliseconds
+    long onRedisResult(TokenBucket bucket, long now, Long wait) {
+
+        if (wait == null || wait <= 0) {
+            return 0;
+        }
+
+        long waitNanos = TimeUnit.MILLISECONDS.toNanos(wait);
+        bucket.blockUntil(now + waitNanos);
+        return reject(waitNanos);
+    }
+
+    long reject(long waitNanos) {
+        rejected.incrementAndGet();
+        // At least 1, 0 means admitted
+        return Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos));
+    }
+
+    private WeatherProperties.Quota quota(String client) {
+        return properties.getQuotas().getOrDefault(client, defaultQuota);
+    }
+
+    // Longest time any bucket takes from empty to full
+    private static Duration timeToFill(WeatherProperties.RateLimit properties) {
+
+        double seconds = properties.getCapacity() / properties.getRefillPerSecond();
+
+        for (WeatherProperties.Quota quota : properties.getQuotas().values()) {
+            seconds = Math.max(seconds, quota.getCapacity() / quota.getRefillPerSecond());
+        }
+
+        return Duration.ofMillis((long) Math.ceil(seconds * 1000));
+    }
+}
@@ -0,0 +1,66 @@
+package com.spond.weather.ratelimit;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.serializer.RedisElementReader;
+import org.springframework.data.redis.serializer.RedisElementWriter;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Non-blocking access to the rate limit for the reactive stack. Shares the local buckets of
+ * {@link ClientRateLimiter}, only the Redis round trip of the distributed mode goes through the
+ * reactive client.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequiredArgsConstructor
+@Slf4j
+public class ReactiveClientRateLimiter {
+
+    private final Logger logger = LoggerFactory.getLogger(ReactiveClientRateLimiter.class);
+
+    private final ReactiveRedisTemplate<String, Object> reactiveRedisTemplate;
+
+    private final ClientRateLimiter rateLimiter;
+
+    /**
+     * See {@link ClientRateLimiter#acquire(String)}.
+     */
+    public Mono<Long> acquire(String client) {
+
+        if (!rateLimiter.isDistributed()) {
+            return Mono.just(rateLimiter.acquire(client));
+        }
+
+        long now = System.nanoTime();
+        TokenBucket bucket = rateLimiter.bucket(client, now);
+
+        long blocked = bucket.blockedFor(now);
+        if (blocked > 0) {
+            return Mono.just(rateLimiter.reject(blocked));
+        }
+
+        return reactiveRedisTemplate.execute(ClientRateLimiter.TOKEN_BUCKET_SCRIPT, List.of(ClientRateLimiter.KEY_PREFIX + client),
+                        Arrays.asList(rateLimiter.scriptArgs(client)),
+                        RedisElementWriter.from(ClientRateLimiter.ARGS_SERIALIZER),
+                        RedisElementReader.from(ClientRateLimiter.RESULT_SERIALIZER))
+                .next()
+                .map(wait -> rateLimiter.onRedisResult(bucket, now, wait))
+                .onErrorResume(e -> {
+                    logger.warn("Could not check the rate limit of {} in Redis: {}", client, e.getMessage());
+                    return Mono.fromSupplier(() -> rateLimiter.acquireLocally(bucket, now));
+                });
+    }
+
+    public ClientRateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+}
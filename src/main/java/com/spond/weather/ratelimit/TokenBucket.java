@@ -0,0 +1,51 @@
+package com.spond.weather.ratelimit;
+
+/**
+ * Token bucket of one caller. Holds up to capacity tokens, refilled continuously at the given
+ * rate, and every request takes one. Refilled lazily on access, so an idle bucket costs nothing.
+ */
+class TokenBucket {
+
+    private final int capacity;
+
+    private final double tokensPerNano;
+
+    private double tokens;
+
+    private long refilledAt;
+
+    // Set in distributed mode when Redis refused a request, until then the caller is refused locally
+    private long blockedUntil;
+
+    TokenBucket(int capacity, double refillPerSecond, long now) {
+        this.capacity = capacity;
+        this.tokensPerNano = refillPerSecond / 1e9;
+        this.tokens = capacity;
+        this.refilledAt = now;
+    }
+
+    /**
+     * Takes a token. Returns 0 when there was one, otherwise the nanoseconds until there is.
+     */
+    synchronized long tryConsume(long now) {
+
+        tokens = Math.min(capacity, tokens + (now - refilledAt) * tokensPerNano);
+        refilledAt = now;
+
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+
+        return (long) Math.ceil((1 - tokens) / tokensPerNano);
+    }
+
+    // Nanoseconds the caller is still refused for after a refusal from Redis, 0 when not blocked
+    synchronized long blockedFor(long now) {
+        return Math.max(0, blockedUntil - now);
+    }
+
+    synchronized void blockUntil(long until) {
+        blockedUntil = until;
+    }
+}
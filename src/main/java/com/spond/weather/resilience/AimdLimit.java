@@ -0,0 +1,74 @@
+package com.spond.weather.resilience;
+
+/**
+ * Concurrency limit adjusted from the outcome of every call, additive increase and multiplicative
+ * decrease like TCP congestion control. A call slower than the latency threshold or failing cuts
+ * the limit by the backoff ratio, a fast successful call raises it by one, but only while at least
+ * half of it is in use so an idle service does not grow it without bound.
+ */
+public class AimdLimit {
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final long latencyThresholdNanos;
+
+    private final double backoffRatio;
+
+    private double limit;
+
+    private int inFlight;
+
+    public AimdLimit(int initialLimit, int minLimit, int maxLimit, long latencyThresholdNanos, double backoffRatio) {
+
+        if (minLimit < 1 || maxLimit < minLimit || backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("Invalid adaptive limit " + minLimit + ".." + maxLimit + ", backoff " + backoffRatio);
+        }
+
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThresholdNanos = latencyThresholdNanos;
+        this.backoffRatio = backoffRatio;
+        this.limit = Math.clamp(initialLimit, minLimit, maxLimit);
+    }
+
+    // False when the limit is reached, the call must not be made
+    public synchronized boolean tryAcquire() {
+
+        if (inFlight >= (int) limit) {
+            return false;
+        }
+
+        inFlight++;
+        return true;
+    }
+
+    /**
+     * Releases a call acquired with {@link #tryAcquire} and adjusts the limit. Dropped means the
+     * call failed for a reason that signals overload, an error status or no response.
+     */
+    public synchronized void release(long latencyNanos, boolean dropped) {
+
+        int used = inFlight--;
+
+        if (dropped || latencyNanos > latencyThresholdNanos) {
+            limit = Math.max(minLimit, limit * backoffRatio);
+        } else if (used * 2 >= limit) {
+            limit = Math.min(maxLimit, limit + 1);
+        }
+    }
+
+    // Releases a call whose outcome says nothing about met.no, like a cancelled one
+    public synchronized void release() {
+        inFlight--;
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+}
@@ -0,0 +1,190 @@
+package com.spond.weather.resilience;
+
+import com.spond.weather.config.WeatherProperties;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Admission control for met.no calls: a circuit breaker, then a bulkhead capping concurrent calls,
+ * then an {@link AimdLimit} adapting to met.no's latency. Nothing waits for a permit, a call that
+ * is not admitted fails at once with {@link MetNoUnavailableException}, so neither request threads
+ * nor the reactive event loop block on a degraded met.no. Used by both met.no clients.
+ */
+@Component
+@Slf4j
+public class MetNoGuard {
+
+    private final Logger logger = LoggerFactory.getLogger(MetNoGuard.class);
+
+    public static final String NAME = "met-no";
+
+    private static final Permit UNGUARDED = new Permit(null, 0);
+
+    private final boolean enabled;
+
+    private final CircuitBreakerRegistry circuitBreakerRegistry;
+
+    private final BulkheadRegistry bulkheadRegistry;
+
+    private final CircuitBreaker circuitBreaker;
+
+    private final Bulkhead bulkhead;
+
+    private final AimdLimit limit;
+
+    // Calls rejected by the adaptive limit, the breaker and the bulkhead count their own
+    private final AtomicLong limitRejections = new AtomicLong();
+
+    public MetNoGuard(WeatherProperties weatherProperties) {
+
+        WeatherProperties.Resilience properties = weatherProperties.getResilience();
+
+        enabled = properties.isEnabled();
+
+        circuitBreakerRegistry = CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+                .slidingWindowType(CircuitBreakerConfig.SlidingWindowType.COUNT_BASED)
+                .slidingWindowSize(properties.getSlidingWindowSize())
+                .minimumNumberOfCalls(properties.getMinimumCalls())
+                .failureRateThreshold(properties.getFailureRateThreshold())
+                .slowCallRateThreshold(properties.getSlowCallRateThreshold())
+                .slowCallDurationThreshold(properties.getSlowCallDuration())
+                .waitDurationInOpenState(properties.getOpenDuration())
+                .permittedNumberOfCallsInHalfOpenState(properties.getHalfOpenCalls())
+                .build());
+
+        bulkheadRegistry = BulkheadRegistry.of(BulkheadConfig.custom()
+                .maxConcurrentCalls(properties.getMaxConcurrentCalls())
+                .maxWaitDuration(Duration.ZERO)
+                .build());
+
+        circuitBreaker = circuitBreakerRegistry.circuitBreaker(NAME);
+        bulkhead = bulkheadRegistry.bulkhead(NAME);
+
+        limit = new AimdLimit(properties.getInitialLimit(), properties.getMinLimit(), properties.getMaxLimit(),
+                properties.getLatencyThreshold().toNanos(), properties.getBackoffRatio());
+
+        circuitBreaker.getEventPublisher().onStateTransition(event ->
+                logger.warn("met.no circuit breaker {}", event.getStateTransition()));
+    }
+
+    /**
+     * Admits a met.no call. The returned permit must be released exactly once when the call ends.
+     *
+     * @throws MetNoUnavailableException when the breaker is open or the call is over a limit
+     */
+    public Permit acquire() {
+
+        if (!enabled) {
+            return UNGUARDED;
+        }
+
+        if (!circuitBreaker.tryAcquirePermission()) {
+            throw new MetNoUnavailableException("met.no circuit breaker is " + circuitBreaker.getState());
+        }
+
+        if (!bulkhead.tryAcquirePermission()) {
+            circuitBreaker.releasePermission();
+            throw new MetNoUnavailableException("met.no bulkhead is full, "
+                    + bulkhead.getBulkheadConfig().getMaxConcurrentCalls() + " calls in flight");
+        }
+
+        if (!limit.tryAcquire()) {
+            bulkhead.onComplete();
+            circuitBreaker.releasePermission();
+            limitRejections.incrementAndGet();
+            throw new MetNoUnavailableException("met.no concurrency limit of " + limit.getLimit() + " reached");
+        }
+
+        return new Permit(this, System.nanoTime());
+    }
+
+    // Failures that say met.no is unhealthy: no response, a 5xx or 429. Other 4xx are our requests' fault.
+    static boolean isUpstreamFailure(int status, Throwable error) {
+        return error != null && (status == 0 || status >= 500 || status == 429);
+    }
+
+    public CircuitBreaker.State getState() {
+        return circuitBreaker.getState();
+    }
+
+    public CircuitBreakerRegistry getCircuitBreakerRegistry() {
+        return circuitBreakerRegistry;
+    }
+
+    public BulkheadRegistry getBulkheadRegistry() {
+        return bulkheadRegistry;
+    }
+
+    public AimdLimit getLimit() {
+        return limit;
+    }
+
+    public long getLimitRejections() {
+        return limitRejections.get();
+    }
+
+    /**
+     * An admitted met.no call. Release it with the outcome, or cancel it when it ended without one.
+     */
+    public static class Permit {
+
+        private final MetNoGuard guard;
+
+        private final long startedAt;
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(MetNoGuard guard, long startedAt) {
+            this.guard = guard;
+            this.startedAt = startedAt;
+        }
+
+        /**
+         * Releases the permit with the HTTP status of the response, 0 when there was none, and the
+         * error the call ended with, null when it succeeded.
+         */
+        public void release(int status, Throwable error) {
+
+            if (guard == null || !released.compareAndSet(false, true)) {
+                return;
+            }
+
+            long latency = System.nanoTime() - startedAt;
+            boolean failed = isUpstreamFailure(status, error);
+
+            guard.bulkhead.onComplete();
+            guard.limit.release(latency, failed);
+
+            if (failed) {
+                guard.circuitBreaker.onError(latency, TimeUnit.NANOSECONDS, error);
+            } else {
+                guard.circuitBreaker.onSuccess(latency, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        // Cancelled by the caller, the call tells nothing about met.no
+        public void cancel() {
+
+            if (guard == null || !released.compareAndSet(false, true)) {
+                return;
+            }
+
+            guard.bulkhead.onComplete();
+            guard.limit.release();
+            guard.circuitBreaker.releasePermission();
+        }
+    }
+}
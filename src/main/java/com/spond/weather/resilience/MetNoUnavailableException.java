@@ -0,0 +1,12 @@
+package com.spond.weather.resilience;
+
+/**
+ * A met.no call that was not made, because the circuit breaker is open or too many calls are in
+ * flight. Callers treat it like a failed call, so a stale forecast is served when there is one.
+ */
+public class MetNoUnavailableException extends RuntimeException {
+
+    public MetNoUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,188 @@
+package com.spond.weather.service;
+
+import com.spond.weather.config.WeatherProperties;
+import com.spond.weather.dto.CellStatsDTO;
+import com.spond.weather.dto.ForecastRequestDTO;
+import lombok.Getter;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts reads per event so the background refresher knows which entries are worth keeping warm,
+ * and the cache snapshot which ones to save. Counts are halved on every {@link #decay()}, so only recently popular events stay hot. Also
+ * counts requests and met.no fetches per grid cell for the cache stats.
+ */
+@Component
+public class ForecastAccessTracker {
+
+    private final ConcurrentHashMap<String, EventAccess> events = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<String, CellAccess> cells = new ConcurrentHashMap<>();
+
+    private final WeatherProperties.Refresh refreshProperties;
+
+    private final WeatherProperties.Snapshot snapshotProperties;
+
+    private final WeatherProperties.Grid gridProperties;
+
+    public ForecastAccessTracker(WeatherProperties weatherProperties) {
+        this.refreshProperties = weatherProperties.getRefresh();
+        this.snapshotProperties = weatherProperties.getSnapshot();
+        this.gridProperties = weatherProperties.getGrid();
+    }
+
+    public void recordAccess(String cacheKey, UUID eventId, double latitude, double longitude, String startTimeStamp, String endTimeStamp) {
+
+        // Nobody reads the counts
+        if (!refreshProperties.isEnabled() && !snapshotProperties.isEnabled()) {
+            return;
+        }
+
+        EventAccess access = events.get(cacheKey);
+
+        if (access == null) {
+            // Bounded, events seen while the table is full are simply not tracked
+            if (events.size() >= refreshProperties.getMaxTrackedKeys()) {
+                return;
+            }
+            access = events.computeIfAbsent(cacheKey, key -> new EventAccess(key,
+                    new ForecastRequestDTO(eventId, latitude, longitude, startTimeStamp, endTimeStamp)));
+        }
+
+        access.hits.incrementAndGet();
+    }
+
+    /**
+     * Remembers when the cached forecast of a tracked event expires. Events written by another
+     * node are unknown here and are recomputed once by the refresher.
+     */
+    public void recordWrite(String cacheKey, long expiresAt) {
+
+        EventAccess access = events.get(cacheKey);
+
+        if (access != null) {
+            access.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * When the cached forecast of the event expires, epoch millis, 0 when this node does not know.
+     */
+    public long expiresAt(String cacheKey) {
+        EventAccess access = events.get(cacheKey);
+        return access != null ? access.expiresAt : 0;
+    }
+
+    /**
+     * Events read at least minHits times since the counts were last halved, hottest first.
+     */
+    public List<EventAccess> hotEvents(int minHits) {
+        return events.values().stream()
+                .filter(access -> access.getHits() >= minHits)
+                .sorted(Comparator.comparingLong(EventAccess::getHits).reversed())
+                .toList();
+    }
+
+    public void decay() {
+        events.values().removeIf(access -> access.hits.updateAndGet(hits -> hits / 2) == 0);
+    }
+
+    public int trackedCount() {
+        return events.size();
+    }
+
+    public void recordCellRequest(String locationKey) {
+        CellAccess cell = cellAccess(locationKey);
+        if (cell != null) {
+            cell.requests.increment();
+        }
+    }
+
+    public void recordCellFetch(String locationKey) {
+        CellAccess cell = cellAccess(locationKey);
+        if (cell != null) {
+            cell.fetches.increment();
+        }
+    }
+
+    /**
+     * The cells with the most requests. The hit rate of a cell is the share of its requests
+     * answered without a met.no call, background refreshes count as calls.
+     */
+    public List<CellStatsDTO> cellStats(int limit) {
+        return cells.entrySet().stream()
+                .map(entry -> toCellStats(entry.getKey(), entry.getValue()))
+                .sorted(Comparator.comparingLong(CellStatsDTO::getRequests).reversed())
+                .limit(limit)
+                .toList();
+    }
+
+    // Share of all tracked requests answered without a met.no call
+    public double overallCellHitRate() {
+        long requests = cells.values().stream().mapToLong(cell -> cell.requests.sum()).sum();
+        long fetches = cells.values().stream().mapToLong(cell -> cell.fetches.sum()).sum();
+        return hitRate(requests, fetches);
+    }
+
+    private CellAccess cellAccess(String locationKey) {
+
+        CellAccess cell = cells.get(locationKey);
+
+        // Bounded like the event table, cells first seen while it is full are not counted
+        if (cell == null && cells.size() < gridProperties.getMaxTrackedCells()) {
+            cell = cells.computeIfAbsent(locationKey, key -> new CellAccess());
+        }
+
+        return cell;
+    }
+
+    private static CellStatsDTO toCellStats(String locationKey, CellAccess cell) {
+        long requests = cell.requests.sum();
+        long fetches = cell.fetches.sum();
+        return CellStatsDTO.builder()
+                .cell(locationKey)
+                .requests(requests)
+                .upstreamFetches(fetches)
+                .hitRate(hitRate(requests, fetches))
+                .build();
+    }
+
+    private static double hitRate(long requests, long fetches) {
+        return requests == 0 ? 0 : Math.max(0, (double) (requests - fetches) / requests);
+    }
+
+    @Getter
+    public static class EventAccess {
+
+        private final String cacheKey;
+
+        private final ForecastRequestDTO request;
+
+        private final AtomicLong hits = new AtomicLong();
+
+        // Epoch millis, 0 while unknown
+        private volatile long expiresAt;
+
+        EventAccess(String cacheKey, ForecastRequestDTO request) {
+            this.cacheKey = cacheKey;
+            this.request = request;
+        }
+
+        public long getHits() {
+            return hits.get();
+        }
+    }
+
+    private static class CellAccess {
+
+        private final LongAdder requests = new LongAdder();
+
+        private final LongAdder fetches = new LongAdder();
+    }
+}
@@ -0,0 +1,289 @@
+package com.spond.weather.service;
+
+import com.spond.weather.cache.BinaryForecastSerializer;
+import com.spond.weather.cache.ForecastCache;
+import com.spond.weather.config.WeatherProperties;
+import com.spond.weather.dto.ForecastRequestDTO;
+import com.spond.weather.util.SpatialGrid;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.spond.weather.service.WeatherForecastService.EVENT_CACHE_PREFIX;
+import static com.spond.weather.service.WeatherForecastService.locationKey;
+
+/**
+ * Saves the hot part of the forecast cache to a local file, so a restarted node, or one whose
+ * Redis was flushed, serves from cache at once instead of sending every request to met.no. The
+ * snapshot holds the events this node tracks, hottest first, and the location timeseries behind
+ * them, each with its expiry. It is loaded back before the application reports ready, skipping
+ * entries that expired in the meantime.
+ * <p>
+ * File layout: magic, version byte, write time, entry count, then per entry its expiry, key and
+ * value in the format of {@link BinaryForecastSerializer}. The file is written next to the
+ * previous one and moved over it, so a crash while writing leaves the previous snapshot intact.
+ */
+@Component
+@Slf4j
+public class ForecastCacheSnapshot implements ApplicationRunner {
+
+    private final Logger logger = LoggerFactory.getLogger(ForecastCacheSnapshot.class);
+
+    private static final int MAGIC = 0x57464353;
+
+    private static final byte VERSION = 1;
+
+    private static final int HEADER_SIZE = 4 + 1 + 8 + 4;
+
+    private final ForecastCache forecastCache;
+
+    private final ForecastAccessTracker accessTracker;
+
+    private final WeatherProperties weatherProperties;
+
+    // Compact values whatever codec Redis uses, the file is only read by this service
+    private final BinaryForecastSerializer serializer;
+
+    // Keys loaded at startup, saved again until they expire so a restart before any traffic keeps them
+    private volatile List<String> restoredKeys = List.of();
+
+    private ScheduledExecutorService scheduler;
+
+    public ForecastCacheSnapshot(ForecastCache forecastCache, ForecastAccessTracker accessTracker, WeatherProperties weatherProperties) {
+        this.forecastCache = forecastCache;
+        this.accessTracker = accessTracker;
+        this.weatherProperties = weatherProperties;
+        this.serializer = new BinaryForecastSerializer(weatherProperties.getCache().getCompressionThreshold());
+    }
+
+    /**
+     * Runs before the application is marked ready: loads the snapshot, then starts saving new ones.
+     */
+    @Override
+    public void run(ApplicationArguments args) {
+
+        WeatherProperties.Snapshot snapshot = weatherProperties.getSnapshot();
+
+        if (!snapshot.isEnabled()) {
+            return;
+        }
+
+        if (snapshot.getPath() == null || snapshot.getPath().isBlank()) {
+            throw new IllegalStateException("weather.snapshot.path must be set when weather.snapshot.enabled is true");
+        }
+
+        load();
+
+        long interval = snapshot.getInterval().toMillis();
+        scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("forecast-snapshot").daemon().factory());
+        scheduler.scheduleWithFixedDelay(this::saveOnSchedule, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Saves a last snapshot, so a restart picks up where this node stopped. Runs when the context
+     * starts closing, while the Redis connection is still open.
+     */
+    @EventListener(ContextClosedEvent.class)
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            saveQuietly();
+        }
+    }
+
+    /**
+     * Writes the current snapshot. Returns the number of entries saved. With nothing to save the
+     * previous snapshot is kept, a node that is stopped before serving anything must not wipe it.
+     */
+    public int save() throws IOException {
+
+        List<ForecastCache.Entry> entries = forecastCache.export(snapshotKeys());
+        Path path = Path.of(weatherProperties.getSnapshot().getPath()).toAbsolutePath();
+
+        if (entries.isEmpty() && Files.exists(path)) {
+            return 0;
+        }
+
+        List<byte[]> keys = new ArrayList<>(entries.size());
+        List<byte[]> values = new ArrayList<>(entries.size());
+        int size = HEADER_SIZE;
+
+        for (ForecastCache.Entry entry : entries) {
+            byte[] key = entry.key().getBytes(StandardCharsets.UTF_8);
+            byte[] value = serializer.serialize(entry.value());
+            keys.add(key);
+            values.add(value);
+            size += 8 + 2 + key.length + 4 + value.length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size)
+                .putInt(MAGIC)
+                .put(VERSION)
+                .putLong(System.currentTimeMillis())
+                .putInt(entries.size());
+
+        for (int i = 0; i < entries.size(); i++) {
+            buffer.putLong(entries.get(i).expiresAt())
+                    .putShort((short) keys.get(i).length).put(keys.get(i))
+                    .putInt(values.get(i).length).put(values.get(i));
+        }
+
+        buffer.flip();
+
+        Files.createDirectories(path.getParent());
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        return entries.size();
+    }
+
+    /**
+     * Restores the entries of the snapshot that have not expired. Returns the number restored, 0
+     * when there is no snapshot or it cannot be read.
+     */
+    public int load() {
+
+        Path path = Path.of(weatherProperties.getSnapshot().getPath()).toAbsolutePath();
+
+        if (!Files.isRegularFile(path)) {
+            return 0;
+        }
+
+        long started = System.nanoTime();
+
+        List<ForecastCache.Entry> entries;
+        try {
+            entries = read(path);
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException | SerializationException e) {
+            // Started cold, the next snapshot replaces the file
+            logger.warn("Could not read cache snapshot {}: {}", path, e.toString());
+            return 0;
+        }
+
+        int restored = forecastCache.restore(entries);
+        restoredKeys = entries.stream().map(ForecastCache.Entry::key).toList();
+
+        logger.info("Restored {} of {} cache entries from {} in {} ms", restored, entries.size(), path,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        return restored;
+    }
+
+    private List<ForecastCache.Entry> read(Path path) throws IOException {
+
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (buffer.getInt() != MAGIC || buffer.get() != VERSION) {
+            throw new IllegalArgumentException("not a cache snapshot of this version");
+        }
+
+        buffer.getLong();
+        int count = buffer.getInt();
+        long now = System.currentTimeMillis();
+        List<ForecastCache.Entry> entries = new ArrayList<>(Math.min(count, weatherProperties.getSnapshot().getMaxEntries()));
+
+        for (int i = 0; i < count; i++) {
+
+            long expiresAt = buffer.getLong();
+            byte[] key = new byte[Short.toUnsignedInt(buffer.getShort())];
+            buffer.get(key);
+            int valueLength = buffer.getInt();
+
+            // Expired since it was saved, not worth decoding
+            if (expiresAt <= now) {
+                buffer.position(buffer.position() + valueLength);
+                continue;
+            }
+
+            byte[] value = new byte[valueLength];
+            buffer.get(value);
+
+            Object decoded = serializer.deserialize(value);
+            if (decoded != null) {
+                entries.add(new ForecastCache.Entry(new String(key, StandardCharsets.UTF_8), decoded, expiresAt));
+            }
+        }
+
+        return entries;
+    }
+
+    // Each tracked event after the location it is computed from, hottest events first, then what was restored
+    private List<String> snapshotKeys() {
+
+        int maxEntries = weatherProperties.getSnapshot().getMaxEntries();
+        Set<String> keys = new LinkedHashSet<>();
+
+        for (ForecastAccessTracker.EventAccess access : accessTracker.hotEvents(1)) {
+            if (keys.size() >= maxEntries - 1) {
+                break;
+            }
+            ForecastRequestDTO request = access.getRequest();
+            keys.add(locationKey(SpatialGrid.snap(request.getLatitude(), request.getLongitude(), weatherProperties.getGrid())));
+            keys.add(EVENT_CACHE_PREFIX + request.getEventId());
+        }
+
+        for (String key : restoredKeys) {
+            if (keys.size() >= maxEntries) {
+                break;
+            }
+            keys.add(key);
+        }
+
+        return new ArrayList<>(keys);
+    }
+
+    private void saveOnSchedule() {
+
+        saveQuietly();
+
+        // Otherwise halved by the refresher, without it the table would fill up with events read once
+        if (!weatherProperties.getRefresh().isEnabled()) {
+            accessTracker.decay();
+        }
+    }
+
+    private void saveQuietly() {
+        try {
+            int saved = save();
+            logger.debug("Saved {} cache entries to the snapshot", saved);
+        } catch (Exception e) {
+            // The previous snapshot stays in place, the next one is tried on schedule
+            logger.warn("Could not save cache snapshot: {}", e.getMessage());
+        }
+    }
+}
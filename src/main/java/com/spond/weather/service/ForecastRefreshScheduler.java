@@ -0,0 +1,155 @@
+package com.spond.weather.service;
+
+import com.spond.weather.cache.ForecastCache;
+import com.spond.weather.config.WeatherProperties;
+import com.spond.weather.dto.ForecastRequestDTO;
+import com.spond.weather.dto.LocationForecast;
+import com.spond.weather.util.SpatialGrid;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.spond.weather.service.WeatherForecastService.isFresh;
+import static com.spond.weather.service.WeatherForecastService.locationKey;
+
+/**
+ * Keeps hot events warm. Every pass refreshes the locations of hot events that expire soon,
+ * through a conditional request to met.no, and recomputes hot events before their cached forecast
+ * expires, so frequently read keys never expire under a reader.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ForecastRefreshScheduler {
+
+    private final Logger logger = LoggerFactory.getLogger(ForecastRefreshScheduler.class);
+
+    private final WeatherForecastService weatherForecastService;
+
+    private final ForecastCache forecastCache;
+
+    private final ForecastAccessTracker accessTracker;
+
+    private final WeatherProperties weatherProperties;
+
+    private final ExecutorService forecastExecutor;
+
+    private ScheduledExecutorService scheduler;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+
+        WeatherProperties.Refresh refresh = weatherProperties.getRefresh();
+
+        if (!refresh.isEnabled()) {
+            return;
+        }
+
+        long interval = refresh.getInterval().toMillis();
+        scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("forecast-refresh").daemon().factory());
+        scheduler.scheduleWithFixedDelay(this::runPass, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * One refresh pass. Locations due for a met.no call are started at most maxPerSecond per
+     * second, and at most maxConcurrent refreshes run at the same time. Returns the number of
+     * locations that had something to refresh.
+     */
+    public int refreshHotKeys() {
+
+        WeatherProperties.Refresh refresh = weatherProperties.getRefresh();
+        long refreshBefore = System.currentTimeMillis() + refresh.getAhead().toMillis();
+
+        // Hottest first, so they are refreshed first when the rate limit stretches the pass
+        Map<String, List<ForecastAccessTracker.EventAccess>> hotByLocation = new LinkedHashMap<>();
+        for (ForecastAccessTracker.EventAccess access : accessTracker.hotEvents(refresh.getMinHits())) {
+            ForecastRequestDTO request = access.getRequest();
+            hotByLocation.computeIfAbsent(locationKey(SpatialGrid.snap(request.getLatitude(), request.getLongitude(), weatherProperties.getGrid())),
+                    key -> new ArrayList<>()).add(access);
+        }
+
+        List<String> locationKeys = new ArrayList<>(hotByLocation.keySet());
+        List<Object> locations = locationKeys.isEmpty() ? List.of() : forecastCache.getAll(locationKeys);
+
+        Semaphore running = new Semaphore(refresh.getMaxConcurrent());
+        long pacingNanos = (long) (TimeUnit.SECONDS.toNanos(1) / refresh.getMaxPerSecond());
+        long nextUpstreamCall = System.nanoTime();
+        List<CompletableFuture<Void>> tasks = new ArrayList<>();
+
+        for (int i = 0; i < locationKeys.size(); i++) {
+
+            LocationForecast location = locations.get(i) instanceof LocationForecast cached ? cached : null;
+            List<ForecastAccessTracker.EventAccess> hotEvents = hotByLocation.get(locationKeys.get(i));
+
+            boolean locationDue = !isFresh(location, refreshBefore);
+
+            // New location data changes every event at it, otherwise only events about to expire
+            List<ForecastRequestDTO> dueEvents = hotEvents.stream()
+                    .filter(access -> locationDue || access.getExpiresAt() <= refreshBefore)
+                    .map(ForecastAccessTracker.EventAccess::getRequest)
+                    .toList();
+
+            if (dueEvents.isEmpty()) {
+                continue;
+            }
+
+            if (locationDue) {
+                LockSupport.parkNanos(nextUpstreamCall - System.nanoTime());
+                nextUpstreamCall = Math.max(nextUpstreamCall, System.nanoTime()) + pacingNanos;
+            }
+
+            running.acquireUninterruptibly();
+
+            ForecastRequestDTO first = dueEvents.get(0);
+            tasks.add(CompletableFuture.runAsync(() -> {
+                try {
+                    weatherForecastService.refreshLocation(first.getLatitude(), first.getLongitude(), dueEvents, refreshBefore);
+                } catch (Exception e) {
+                    // Retried on the next pass, readers still have the current entry until it expires
+                    logger.warn("Could not refresh forecast for {}: {}", first.getLatitude() + "," + first.getLongitude(), e.getMessage());
+                } finally {
+                    running.release();
+                }
+            }, forecastExecutor));
+        }
+
+        CompletableFuture.allOf(tasks.toArray(CompletableFuture[]::new)).join();
+
+        accessTracker.decay();
+
+        return tasks.size();
+    }
+
+    private void runPass() {
+        try {
+            int refreshed = refreshHotKeys();
+            if (refreshed > 0) {
+                logger.info("Refreshed {} hot locations, tracking {} events", refreshed, accessTracker.trackedCount());
+            }
+        } catch (Exception e) {
+            // Keep the schedule alive, a failed pass is retried on the next one
+            logger.error("Forecast refresh pass failed", e);
+        }
+    }
+}
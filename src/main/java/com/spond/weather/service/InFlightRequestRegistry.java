@@ -0,0 +1,183 @@
+package com.spond.weather.service;
+
+import com.spond.weather.config.WeatherProperties;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent cache misses for the same key into a single load. Callers arriving while a
+ * load is running wait on the leader's future instead of starting their own upstream call.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class InFlightRequestRegistry {
+
+    private final Logger logger = LoggerFactory.getLogger(InFlightRequestRegistry.class);
+
+    private static final String LOCK_PREFIX = "Lock:";
+
+    private static final RedisScript<Long> RELEASE_LOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<String, Mono<Object>> inFlightReactive = new ConcurrentHashMap<>();
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    private final WeatherProperties weatherProperties;
+
+    /**
+     * Runs the loader unless another thread in this JVM is already loading the same key, in which
+     * case the result of that load is returned.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, Supplier<T> loader) {
+
+        CompletableFuture<Object> leader = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, leader);
+
+        if (existing != null) {
+            return (T) await(existing);
+        }
+
+        try {
+            T value = loader.get();
+            leader.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            // Errors too, or the callers waiting on the leader would never return
+            leader.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, leader);
+        }
+    }
+
+    /**
+     * Like {@link #execute(String, Supplier)}, but when the distributed lock is enabled only one node
+     * runs the loader. The other nodes poll the cache until the winner has written the value.
+     */
+    public <T> T executeAcrossNodes(String key, Supplier<T> cacheLookup, Supplier<T> loader) {
+
+        return execute(key, () -> {
+            WeatherProperties.SingleFlight singleFlight = weatherProperties.getSingleFlight();
+
+            if (!singleFlight.isDistributedLockEnabled()) {
+                return loader.get();
+            }
+
+            String lockKey = LOCK_PREFIX + key;
+
+            if (tryLock(lockKey, singleFlight.getLockTtl().toMillis())) {
+                try {
+                    return loader.get();
+                } finally {
+                    releaseLock(lockKey);
+                }
+            }
+
+            T value = waitForOtherNode(lockKey, cacheLookup, singleFlight);
+
+            return value != null ? value : loader.get();
+        });
+    }
+
+    /**
+     * Non-blocking variant of {@link #execute(String, Supplier)}: subscribers arriving while a load
+     * for the key is running share its result instead of subscribing to the loader again.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Mono<T> executeReactive(String key, Supplier<Mono<T>> loader) {
+
+        return Mono.defer(() -> {
+            Mono<Object>[] leader = new Mono[1];
+            leader[0] = Mono.<Object>defer(loader::get)
+                    // Before subscribers see the result, so a caller arriving afterwards starts a new load
+                    .doOnTerminate(() -> inFlightReactive.remove(key, leader[0]))
+                    .cache();
+            return (Mono<T>) inFlightReactive.computeIfAbsent(key, k -> leader[0]);
+        });
+    }
+
+    public int inFlightCount() {
+        return inFlight.size() + inFlightReactive.size();
+    }
+
+    private boolean tryLock(String lockKey, long ttlMillis) {
+        try {
+            return Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(lockKey, nodeId, ttlMillis, TimeUnit.MILLISECONDS));
+        } catch (Exception e) {
+            // Coalescing across nodes is best effort, fall back to loading locally
+            logger.warn("Could not acquire lock {}: {}", lockKey, e.getMessage());
+            return true;
+        }
+    }
+
+    private void releaseLock(String lockKey) {
+        try {
+            redisTemplate.execute(RELEASE_LOCK_SCRIPT, List.of(lockKey), nodeId);
+        } catch (Exception e) {
+            // The lock expires on its own
+            logger.warn("Could not release lock {}: {}", lockKey, e.getMessage());
+        }
+    }
+
+    private <T> T waitForOtherNode(String lockKey, Supplier<T> cacheLookup, WeatherProperties.SingleFlight singleFlight) {
+
+        long deadline = System.currentTimeMillis() + singleFlight.getLockWaitTimeout().toMillis();
+
+        while (System.currentTimeMillis() < deadline) {
+            T value = cacheLookup.get();
+            if (value != null) {
+                return value;
+            }
+            if (!Boolean.TRUE.equals(redisTemplate.hasKey(lockKey))) {
+                // The other node finished or gave up, one last look before loading ourselves
+                return cacheLookup.get();
+            }
+            try {
+                Thread.sleep(singleFlight.getLockPollInterval().toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        logger.warn("Timed out waiting for {} held by another node", lockKey);
+        return null;
+    }
+
+    private static Object await(CompletableFuture<Object> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+}
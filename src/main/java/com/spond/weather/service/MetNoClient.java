@@ -0,0 +1,167 @@
+package com.spond.weather.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spond.weather.config.WeatherProperties;
+import com.spond.weather.dto.ForecastSeries;
+import com.spond.weather.dto.WeatherApiResponse;
+import com.spond.weather.metrics.ForecastMetrics;
+import com.spond.weather.resilience.MetNoGuard;
+import com.spond.weather.util.MetNoStreamingParser;
+import com.spond.weather.util.RequestTrace;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.RestClientResponseException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static com.spond.weather.util.ApplicationUtils.mapResponseToSeries;
+
+/**
+ * Calls the met.no locationforecast API and parses the body straight from the response stream.
+ */
+@Component
+@RequiredArgsConstructor
+public class MetNoClient {
+
+    private final static String WEATHER_API_PATH = "/weatherapi/locationforecast/2.0/compact?lat=%s&lon=%s";
+
+    private final RestTemplate restTemplate;
+
+    private final ObjectMapper objectMapper;
+
+    private final WeatherProperties weatherProperties;
+
+    private final ForecastMetrics metrics;
+
+    private final MetNoGuard guard;
+
+    public MetNoResponse fetch(double latitude, double longitude) {
+        return fetch(latitude, longitude, -1);
+    }
+
+    /**
+     * Conditional fetch. With the Last-Modified time of an earlier response met.no answers 304
+     * when the forecast is unchanged, which is returned without reading or parsing a body.
+     *
+     * @throws com.spond.weather.resilience.MetNoUnavailableException when the guard rejects the call
+     */
+    public MetNoResponse fetch(double latitude, double longitude, long lastModified) {
+
+        MetNoGuard.Permit permit = guard.acquire();
+
+        RequestTrace.recordUpstreamCall();
+
+        RequestCallback ifModifiedSince = lastModified > 0
+                ? request -> request.getHeaders().setIfModifiedSince(lastModified)
+                : null;
+
+        long startedAt = metrics.upstreamStarted();
+        int[] status = {0};
+        RuntimeException error = null;
+
+        try {
+            return restTemplate.execute(url(latitude, longitude), HttpMethod.GET, ifModifiedSince, response -> {
+                status[0] = response.getStatusCode().value();
+                return extract(response);
+            });
+        } catch (RestClientResponseException e) {
+            // Error statuses are raised by the error handler before the extractor runs
+            status[0] = e.getStatusCode().value();
+            error = e;
+            throw e;
+        } catch (RuntimeException e) {
+            error = e;
+            throw e;
+        } finally {
+            metrics.upstreamFinished(startedAt, status[0]);
+            permit.release(status[0], error);
+        }
+    }
+
+    // Shared with the reactive client, both call the same met.no
+    MetNoGuard guard() {
+        return guard;
+    }
+
+    String url(double latitude, double longitude) {
+        return weatherProperties.getMet().getBaseUrl() + String.format(WEATHER_API_PATH, latitude, longitude);
+    }
+
+    /**
+     * Parses a locationforecast body with the configured parser mode.
+     */
+    ForecastSeries parse(InputStream body) throws IOException {
+
+        long startedAt = System.nanoTime();
+        CountingInputStream countingBody = new CountingInputStream(body);
+
+        ForecastSeries series = switch (weatherProperties.getMet().getParserMode()) {
+            case STREAMING -> MetNoStreamingParser.parse(countingBody);
+            case DATABIND -> mapResponseToSeries(objectMapper.readValue(countingBody, WeatherApiResponse.class));
+        };
+
+        metrics.record(ForecastMetrics.Stage.PARSE, startedAt);
+        metrics.payloadSize(countingBody.count);
+
+        return series;
+    }
+
+    private MetNoResponse extract(ClientHttpResponse response) throws IOException {
+
+        if (response.getStatusCode().isSameCodeAs(HttpStatus.NOT_MODIFIED)) {
+            return MetNoResponse.notModified(response.getHeaders());
+        }
+
+        try (InputStream body = response.getBody()) {
+            return new MetNoResponse(parse(body), response.getHeaders());
+        }
+    }
+
+    // Bytes read from the body, after the transparent gzip decompression
+    private static class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+    }
+
+    public record MetNoResponse(ForecastSeries series, HttpHeaders headers) {
+
+        static MetNoResponse notModified(HttpHeaders headers) {
+            return new MetNoResponse(null, headers);
+        }
+
+        // 304 to a conditional request, the series cached earlier is still current
+        public boolean isNotModified() {
+            return series == null;
+        }
+    }
+}
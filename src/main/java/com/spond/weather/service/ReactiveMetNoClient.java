@@ -0,0 +1,85 @@
+package com.spond.weather.service;
+
+import com.spond.weather.metrics.ForecastMetrics;
+import com.spond.weather.resilience.MetNoGuard;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.BodyExtractors;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Non-blocking met.no client for the reactive stack. The body is collected without holding a
+ * thread while met.no responds, then parsed by the same parser as {@link MetNoClient}.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequiredArgsConstructor
+public class ReactiveMetNoClient {
+
+    private final WebClient metNoWebClient;
+
+    private final MetNoClient metNoClient;
+
+    private final ForecastMetrics metrics;
+
+    /**
+     * See {@link MetNoClient#fetch(double, double, long)}.
+     */
+    public Mono<MetNoClient.MetNoResponse> fetch(double latitude, double longitude, long lastModified) {
+
+        return Mono.defer(() -> {
+
+            // Throws when rejected, which defer turns into an error signal
+            MetNoGuard.Permit permit = metNoClient.guard().acquire();
+
+            long startedAt = metrics.upstreamStarted();
+            int[] status = {0};
+
+            return metNoWebClient.get()
+                    .uri(metNoClient.url(latitude, longitude))
+                    .headers(headers -> {
+                        if (lastModified > 0) {
+                            headers.setIfModifiedSince(lastModified);
+                        }
+                    })
+                    .exchangeToMono(response -> {
+                        status[0] = response.statusCode().value();
+                        return extract(response);
+                    })
+                    .doOnSuccess(response -> permit.release(status[0], null))
+                    .doOnError(e -> permit.release(status[0], e))
+                    .doOnCancel(permit::cancel)
+                    .doFinally(signal -> metrics.upstreamFinished(startedAt, status[0]));
+        });
+    }
+
+    private Mono<MetNoClient.MetNoResponse> extract(ClientResponse response) {
+
+        if (response.statusCode().isSameCodeAs(HttpStatus.NOT_MODIFIED)) {
+            return response.releaseBody()
+                    .thenReturn(MetNoClient.MetNoResponse.notModified(response.headers().asHttpHeaders()));
+        }
+
+        if (response.statusCode().isError()) {
+            return response.createError();
+        }
+
+        return DataBufferUtils.join(response.body(BodyExtractors.toDataBuffers()))
+                .map(buffer -> {
+                    try (InputStream body = buffer.asInputStream(true)) {
+                        return new MetNoClient.MetNoResponse(metNoClient.parse(body), response.headers().asHttpHeaders());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+}
@@ -0,0 +1,188 @@
+package com.spond.weather.service;
+
+import com.spond.weather.cache.ReactiveForecastCache;
+import com.spond.weather.config.WeatherProperties;
+import com.spond.weather.dto.ForecastDTO;
+import com.spond.weather.dto.ForecastRequestDTO;
+import com.spond.weather.dto.ForecastServiceResponse;
+import com.spond.weather.dto.LocationForecast;
+import com.spond.weather.dto.ResolvedForecast;
+import com.spond.weather.metrics.ForecastMetrics;
+import com.spond.weather.util.SpatialGrid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static com.spond.weather.service.WeatherForecastService.*;
+
+/**
+ * Reactive counterpart of {@link WeatherForecastService}. Same cache keys, TTLs and forecast
+ * calculation, but no step holds a thread while waiting for Redis or met.no.
+ */
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequiredArgsConstructor
+@Slf4j
+public class ReactiveWeatherForecastService {
+
+    private final Logger logger = LoggerFactory.getLogger(ReactiveWeatherForecastService.class);
+
+    private final ReactiveMetNoClient metNoClient;
+
+    private final ReactiveForecastCache forecastCache;
+
+    private final WeatherProperties weatherProperties;
+
+    private final InFlightRequestRegistry inFlightRequests;
+
+    private final ForecastAccessTracker accessTracker;
+
+    private final ForecastMetrics metrics;
+
+    private final Clock clock;
+
+    // Stands in for a cache miss, Reactor has no null elements
+    private static final LocationForecast MISSING_LOCATION = new LocationForecast();
+
+    public Mono<ResolvedForecast> resolveWeatherForecast(UUID eventId, double latitude, double longitude, String startTimeStamp, String endTimeStamp) {
+
+        String cacheKey = EVENT_CACHE_PREFIX + eventId;
+
+        SpatialGrid.Cell cell = SpatialGrid.snap(latitude, longitude, weatherProperties.getGrid());
+
+        accessTracker.recordAccess(cacheKey, eventId, latitude, longitude, startTimeStamp, endTimeStamp);
+        accessTracker.recordCellRequest(locationKey(cell));
+
+        return metrics.time(ForecastMetrics.Stage.CACHE_LOOKUP, forecastCache.get(cacheKey))
+                .cast(ForecastDTO.class)
+                .doOnNext(cachedForecast -> metrics.eventCacheResult(ForecastMetrics.CacheResult.HIT))
+                .map(cachedForecast -> ResolvedForecast.fresh(cachedForecast,
+                        cachedUntil(accessTracker, forecastCache.nearExpiresIn(cacheKey), cacheKey)))
+                // Concurrent misses for the same event share a single computation
+                .switchIfEmpty(Mono.defer(() -> {
+                    metrics.eventCacheResult(ForecastMetrics.CacheResult.MISS);
+                    return inFlightRequests.executeReactive(cacheKey, () -> loadEventForecast(cacheKey, cell, startTimeStamp, endTimeStamp));
+                }))
+                .doOnError(e -> logger.error("Exception occurred while getting weather forecast data", e));
+    }
+
+    /**
+     * Resolves each event independently. Events at the same location still share one met.no call
+     * through the location cache and the in-flight registry.
+     */
+    public Mono<List<ForecastServiceResponse>> getWeatherForecasts(List<ForecastRequestDTO> requests) {
+
+        return Flux.fromIterable(requests)
+                .flatMapSequential(request -> resolveWeatherForecast(request.getEventId(), request.getLatitude(), request.getLongitude(),
+                                request.getStartTimeStamp(), request.getEndTimeStamp())
+                        .map(forecast -> successResponse(request.getEventId(), forecast))
+                        .onErrorResume(e -> Mono.just(errorResponse(request.getEventId(), e))))
+                .collectList();
+    }
+
+    private Mono<ResolvedForecast> loadEventForecast(String cacheKey, SpatialGrid.Cell cell, String startTimeStamp, String endTimeStamp) {
+
+        // The previous load on this node may have written the entry after our cache miss
+        ForecastDTO cachedForecast = (ForecastDTO) forecastCache.getLocal(cacheKey);
+
+        if (cachedForecast != null) {
+            return Mono.just(ResolvedForecast.fresh(cachedForecast,
+                    cachedUntil(accessTracker, forecastCache.nearExpiresIn(cacheKey), cacheKey)));
+        }
+
+        return getLocationForecast(cell)
+                .map(location -> new ResolvedForecast(prepareFinalForecast(location.forecast(), startTimeStamp, endTimeStamp, metrics),
+                        location.staleSeconds()))
+                .flatMap(finalForeCast -> finalForeCast.isStale()
+                        // A forecast from stale data is not cached, the next request uses the refreshed timeseries
+                        ? Mono.just(finalForeCast)
+                        : forecastCache.put(cacheKey, finalForeCast.forecast(), weatherProperties.getCache().getEventTtl())
+                                .then(Mono.fromSupplier(() -> {
+                                    long expiresAt = clock.millis() + weatherProperties.getCache().getEventTtl().toMillis();
+                                    accessTracker.recordWrite(cacheKey, expiresAt);
+                                    return ResolvedForecast.fresh(finalForeCast.forecast(), expiresAt);
+                                })));
+    }
+
+    private Mono<ResolvedLocation> getLocationForecast(SpatialGrid.Cell cell) {
+
+        String locationKey = locationKey(cell);
+
+        return metrics.time(ForecastMetrics.Stage.CACHE_LOOKUP, forecastCache.get(locationKey))
+                .cast(LocationForecast.class)
+                .defaultIfEmpty(MISSING_LOCATION)
+                .flatMap(cachedLocation -> {
+
+                    long now = clock.millis();
+
+                    if (isFresh(cachedLocation, now)) {
+                        metrics.locationCacheResult(ForecastMetrics.CacheResult.HIT);
+                        return Mono.just(new ResolvedLocation(cachedLocation, 0));
+                    }
+
+                    LocationForecast expired = cachedLocation == MISSING_LOCATION ? null : cachedLocation;
+                    WeatherProperties.Cache cacheProperties = weatherProperties.getCache();
+
+                    // One upstream call per location, even when different events miss at the same time
+                    Mono<LocationForecast> fetch = inFlightRequests.executeReactive(locationKey,
+                            () -> fetchLocationForecast(locationKey, cell, expired));
+
+                    if (cacheProperties.isStaleServingEnabled() && isWithinStaleWindow(expired, now, cacheProperties.getStaleWhileRevalidate())) {
+                        // Readers arriving meanwhile join the same in-flight refresh
+                        fetch.subscribe(null, e -> logger.warn("Background refresh of location {} failed: {}", locationKey, e.getMessage()));
+                        metrics.locationCacheResult(ForecastMetrics.CacheResult.STALE);
+                        return Mono.just(new ResolvedLocation(expired, staleSeconds(expired, now)));
+                    }
+
+                    return fetch.doOnNext(fetched -> metrics.locationCacheResult(ForecastMetrics.CacheResult.MISS))
+                            .map(fetched -> new ResolvedLocation(fetched, 0))
+                            .onErrorResume(e -> cacheProperties.isStaleServingEnabled()
+                                            && isWithinStaleWindow(expired, now, cacheProperties.getStaleIfError()),
+                                    e -> {
+                                        long staleSeconds = staleSeconds(expired, now);
+                                        logger.warn("Serving forecast for location {} expired {} seconds ago, met.no failed: {}", locationKey,
+                                                staleSeconds, e.getMessage());
+                                        metrics.locationCacheResult(ForecastMetrics.CacheResult.STALE);
+                                        return Mono.just(new ResolvedLocation(expired, staleSeconds));
+                                    })
+                            .doOnError(e -> metrics.locationCacheResult(ForecastMetrics.CacheResult.MISS));
+                });
+    }
+
+    private Mono<LocationForecast> fetchLocationForecast(String locationKey, SpatialGrid.Cell cell, LocationForecast expired) {
+
+        LocationForecast cachedLocation = (LocationForecast) forecastCache.getLocal(locationKey);
+
+        if (isFresh(cachedLocation, clock.millis())) {
+            return Mono.just(cachedLocation);
+        }
+
+        LocationForecast previous = cachedLocation != null ? cachedLocation : expired;
+
+        accessTracker.recordCellFetch(locationKey);
+
+        return metNoClient.fetch(cell.latitude(), cell.longitude(), previous != null ? previous.getLastModified() : -1)
+                .flatMap(response -> {
+                    long now = clock.millis();
+                    Duration ttl = resolveLocationTtl(response.headers(), now, weatherProperties.getCache());
+
+                    LocationForecast locationForecast = toLocationForecast(response, previous, now + ttl.toMillis());
+
+                    // Kept past its expiry so the next fetch can be a conditional one, or it can be served stale
+                    return forecastCache.put(locationKey, locationForecast, ttl.plus(locationRetention(weatherProperties.getCache())))
+                            .doOnSuccess(stored -> logger.info("Cached forecast for location {} for {} seconds{}", locationKey, ttl.toSeconds(),
+                                    response.isNotModified() ? ", not modified" : ""))
+                            .thenReturn(locationForecast);
+                });
+    }
+}
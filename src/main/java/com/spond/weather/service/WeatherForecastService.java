@@ -1,23 +1,36 @@
 package com.spond.weather.service;
 
+import com.spond.weather.cache.ForecastCache;
+import com.spond.weather.config.WeatherProperties;
+import com.spond.weather.dto.ErrorResponseDTO;
 import com.spond.weather.dto.ForecastDTO;
-import com.spond.weather.dto.WeatherApiResponse;
+import com.spond.weather.dto.ForecastRequestDTO;
+import com.spond.weather.dto.ForecastSeries;
+import com.spond.weather.dto.ForecastWindow;
+import com.spond.weather.dto.ForecastServiceResponse;
+import com.spond.weather.dto.LocationForecast;
+import com.spond.weather.dto.ResolvedForecast;
+import com.spond.weather.metrics.ForecastMetrics;
+import com.spond.weather.util.RequestContext;
+import com.spond.weather.util.RequestTrace;
+import com.spond.weather.util.SpatialGrid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.cache.CacheManager;
-import org.springframework.cache.annotation.Cacheable;
-import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
-import java.util.List;
-import java.util.Optional;
-import java.util.UUID;
-import java.util.concurrent.TimeUnit;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 
+import static com.spond.weather.constants.ApplicationConstants.ERROR_CODE_INTERNAL_SERVER_ERROR;
+import static com.spond.weather.constants.ApplicationConstants.ERROR_DESCRIPTION_FORECAST_FAILED;
 import static com.spond.weather.util.ApplicationUtils.*;
 
 @Service
@@ -27,53 +40,431 @@ public class WeatherForecastService {
 
     private final Logger logger = LoggerFactory.getLogger(WeatherForecastService.class);
 
-    private final RestTemplate restTemplate;
+    private final MetNoClient metNoClient;
 
-    private final RedisTemplate<String, Object> redisTemplate;
+    private final ForecastCache forecastCache;
 
-    private final static String WEATHER_API_URL = "https://api.met.no/weatherapi/locationforecast/2.0/compact?lat=%s&lon=%s";
+    private final WeatherProperties weatherProperties;
+
+    private final InFlightRequestRegistry inFlightRequests;
+
+    private final ExecutorService forecastExecutor;
+
+    private final ForecastAccessTracker accessTracker;
+
+    private final ForecastMetrics metrics;
+
+    private final Clock clock;
+
+    final static String EVENT_CACHE_PREFIX = "EventID:";
+
+    final static String LOCATION_CACHE_PREFIX = "Location:";
+
+    // Locations with a background refresh running on this node
+    private final Set<String> refreshingLocations = ConcurrentHashMap.newKeySet();
 
     public Optional<ForecastDTO> getWeatherForecast(UUID eventId, double latitude, double longitude, String startTimeStamp, String endTimeStamp) {
+        return resolveWeatherForecast(eventId, latitude, longitude, startTimeStamp, endTimeStamp).map(ResolvedForecast::forecast);
+    }
 
-        String cacheKey = "EventID:" + eventId;
+    /**
+     * Same as {@link #getWeatherForecast}, but also tells whether the forecast was computed from an
+     * expired timeseries, which only happens with stale serving enabled.
+     */
+    public Optional<ResolvedForecast> resolveWeatherForecast(UUID eventId, double latitude, double longitude, String startTimeStamp, String endTimeStamp) {
 
-        ForecastDTO cachedForecast = (ForecastDTO) redisTemplate.opsForValue().get(cacheKey);
+        String cacheKey = EVENT_CACHE_PREFIX + eventId;
+
+        SpatialGrid.Cell cell = SpatialGrid.snap(latitude, longitude, weatherProperties.getGrid());
+
+        accessTracker.recordAccess(cacheKey, eventId, latitude, longitude, startTimeStamp, endTimeStamp);
+        accessTracker.recordCellRequest(locationKey(cell));
+
+        RequestTrace.recordEventCacheLookup();
+        ForecastDTO cachedForecast = (ForecastDTO) metrics.time(ForecastMetrics.Stage.CACHE_LOOKUP, () -> forecastCache.get(cacheKey));
 
         if (cachedForecast != null) {
-            return Optional.of(cachedForecast);
+            metrics.eventCacheResult(ForecastMetrics.CacheResult.HIT);
+            return Optional.of(ResolvedForecast.fresh(cachedForecast, cachedUntil(accessTracker, forecastCache.nearExpiresIn(cacheKey), cacheKey)));
         }
 
+        metrics.eventCacheResult(ForecastMetrics.CacheResult.MISS);
+
         try {
 
-            String url = String.format(WEATHER_API_URL, latitude, longitude);
+            // Concurrent misses for the same event wait for a single computation
+            ResolvedForecast finalForeCast = inFlightRequests.execute(cacheKey,
+                    () -> loadEventForecast(cacheKey, cell, startTimeStamp, endTimeStamp));
+
+            return Optional.of(finalForeCast);
+
+        } catch (Exception e) {
+            logger.error("Exception occurred while getting weather forecast data", e);
+            throw new RuntimeException(e.getMessage());
+        }
+    }
+
+    private ResolvedForecast loadEventForecast(String cacheKey, SpatialGrid.Cell cell, String startTimeStamp, String endTimeStamp) {
 
-            //Round off the latitude and longitude to 4 decimal places
-            latitude = Math.round(latitude * 10000.0) / 10000.0;
-            longitude = Math.round(longitude * 10000.0) / 10000.0;
+        // The previous leader on this node may have written the entry between our cache miss
+        // and taking the lead, its write is visible in the near cache
+        ForecastDTO cachedForecast = (ForecastDTO) forecastCache.getLocal(cacheKey);
 
-            ResponseEntity<WeatherApiResponse> response = restTemplate.getForEntity(url, WeatherApiResponse.class);
+        if (cachedForecast != null) {
+            return ResolvedForecast.fresh(cachedForecast, cachedUntil(accessTracker, forecastCache.nearExpiresIn(cacheKey), cacheKey));
+        }
 
-            WeatherApiResponse weatherApiResponse = response.getBody();
+        ResolvedLocation location = getLocationForecast(cell);
 
-            ForecastDTO finalForeCast = prepareFinalForecast(weatherApiResponse, startTimeStamp, endTimeStamp);
+        ForecastDTO forecast = prepareFinalForecast(location.forecast(), startTimeStamp, endTimeStamp, metrics);
 
-            redisTemplate.opsForValue().set(cacheKey, finalForeCast, 2, TimeUnit.HOURS);
+        // A forecast from stale data is not cached, the next request uses the refreshed timeseries
+        if (location.staleSeconds() > 0) {
+            return new ResolvedForecast(forecast, location.staleSeconds());
+        }
 
-            return Optional.of(finalForeCast);
+        return ResolvedForecast.fresh(forecast, putEventForecast(cacheKey, forecast));
+    }
+
+    /**
+     * Resolves forecasts for many events at once. Cached events are read with a single MGET, the
+     * remaining ones are grouped by grid cell so each cell is fetched once, and cells are
+     * processed in parallel. Failures are reported per event, one failing location does not fail
+     * the other events. Requests must already be validated.
+     */
+    public List<ForecastServiceResponse> getWeatherForecasts(List<ForecastRequestDTO> requests) {
+
+        List<String> cacheKeys = requests.stream().map(request -> EVENT_CACHE_PREFIX + request.getEventId()).toList();
+        List<SpatialGrid.Cell> cells = requests.stream()
+                .map(request -> SpatialGrid.snap(request.getLatitude(), request.getLongitude(), weatherProperties.getGrid()))
+                .toList();
+
+        for (int i = 0; i < requests.size(); i++) {
+            ForecastRequestDTO request = requests.get(i);
+            accessTracker.recordAccess(cacheKeys.get(i), request.getEventId(), request.getLatitude(), request.getLongitude(),
+                    request.getStartTimeStamp(), request.getEndTimeStamp());
+            accessTracker.recordCellRequest(locationKey(cells.get(i)));
+        }
+
+        List<Object> cachedForecasts = metrics.time(ForecastMetrics.Stage.CACHE_LOOKUP, () -> forecastCache.getAll(cacheKeys));
 
+        ForecastServiceResponse[] results = new ForecastServiceResponse[requests.size()];
+        Map<String, List<Integer>> missesByLocation = new LinkedHashMap<>();
+
+        for (int i = 0; i < requests.size(); i++) {
+            if (cachedForecasts.get(i) instanceof ForecastDTO cachedForecast) {
+                metrics.eventCacheResult(ForecastMetrics.CacheResult.HIT);
+                results[i] = successResponse(requests.get(i).getEventId(), ResolvedForecast.fresh(cachedForecast));
+            } else {
+                metrics.eventCacheResult(ForecastMetrics.CacheResult.MISS);
+                missesByLocation.computeIfAbsent(locationKey(cells.get(i)), key -> new ArrayList<>()).add(i);
+            }
+        }
+
+        Map<String, Object> computedForecasts = new ConcurrentHashMap<>();
+
+        List<CompletableFuture<Void>> tasks = missesByLocation.values().stream()
+                .map(positions -> CompletableFuture.runAsync(
+                        RequestContext.propagate(() -> resolveLocationBatch(requests, cells.get(positions.get(0)), positions, results, computedForecasts)),
+                        forecastExecutor))
+                .toList();
+
+        CompletableFuture.allOf(tasks.toArray(CompletableFuture[]::new)).join();
+
+        putEventForecasts(computedForecasts);
+
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Background refresh of a location and events at it, see {@link ForecastRefreshScheduler}. The
+     * location is only fetched again when it expires before refreshBefore, it may already have been
+     * refreshed by a reader or another node. The events are then recomputed from it.
+     */
+    public void refreshLocation(double latitude, double longitude, List<ForecastRequestDTO> events, long refreshBefore) {
+
+        SpatialGrid.Cell cell = SpatialGrid.snap(latitude, longitude, weatherProperties.getGrid());
+        String locationKey = locationKey(cell);
+
+        LocationForecast cachedLocation = (LocationForecast) forecastCache.get(locationKey);
+
+        LocationForecast locationForecast = isFresh(cachedLocation, refreshBefore)
+                ? cachedLocation
+                : inFlightRequests.executeAcrossNodes(locationKey,
+                        () -> freshOrNull((LocationForecast) forecastCache.get(locationKey), refreshBefore),
+                        () -> fetchLocationForecast(locationKey, cell, cachedLocation, refreshBefore));
+
+        Map<String, Object> forecasts = new HashMap<>();
+
+        for (ForecastRequestDTO event : events) {
+            forecasts.put(EVENT_CACHE_PREFIX + event.getEventId(),
+                    prepareFinalForecast(locationForecast, event.getStartTimeStamp(), event.getEndTimeStamp(), metrics));
+        }
+
+        putEventForecasts(forecasts);
+    }
+
+    // Returns when the entry expires, epoch millis
+    private long putEventForecast(String cacheKey, ForecastDTO forecast) {
+
+        Duration eventTtl = weatherProperties.getCache().getEventTtl();
+
+        forecastCache.put(cacheKey, forecast, eventTtl);
+
+        long expiresAt = clock.millis() + eventTtl.toMillis();
+        accessTracker.recordWrite(cacheKey, expiresAt);
+        return expiresAt;
+    }
+
+    private void putEventForecasts(Map<String, Object> forecasts) {
+
+        Duration eventTtl = weatherProperties.getCache().getEventTtl();
+
+        forecastCache.putAll(forecasts, eventTtl);
+
+        long expiresAt = clock.millis() + eventTtl.toMillis();
+        forecasts.keySet().forEach(cacheKey -> accessTracker.recordWrite(cacheKey, expiresAt));
+    }
+
+    private void resolveLocationBatch(List<ForecastRequestDTO> requests, SpatialGrid.Cell cell, List<Integer> positions,
+                                      ForecastServiceResponse[] results, Map<String, Object> computedForecasts) {
+
+        ForecastRequestDTO first = requests.get(positions.get(0));
+
+        try {
+            ResolvedLocation location = getLocationForecast(cell);
+
+            for (int position : positions) {
+                ForecastRequestDTO request = requests.get(position);
+                ForecastDTO forecast = prepareFinalForecast(location.forecast(), request.getStartTimeStamp(), request.getEndTimeStamp(), metrics);
+                if (location.staleSeconds() == 0) {
+                    computedForecasts.put(EVENT_CACHE_PREFIX + request.getEventId(), forecast);
+                }
+                results[position] = successResponse(request.getEventId(), new ResolvedForecast(forecast, location.staleSeconds()));
+            }
         } catch (Exception e) {
-            logger.error("Exception occurred while getting weather forecast data", e);
-            throw new RuntimeException(e.getMessage());
+            logger.error("Exception occurred while getting weather forecast data for location {}", first.getLatitude() + "," + first.getLongitude(), e);
+            for (int position : positions) {
+                if (results[position] == null) {
+                    results[position] = errorResponse(requests.get(position).getEventId(), e);
+                }
+            }
         }
     }
 
-    private ForecastDTO prepareFinalForecast(WeatherApiResponse weatherApiResponse, String startTimeStamp, String endTimeStamp) {
+    /**
+     * Fresh timeseries of a location. With stale serving enabled an expired one is returned within
+     * staleWhileRevalidate while a background task refreshes it, and within staleIfError when
+     * met.no fails. Its staleness is decided here, at the same instant as whether to serve it.
+     */
+    private ResolvedLocation getLocationForecast(SpatialGrid.Cell cell) {
+
+        String locationKey = locationKey(cell);
 
-        WeatherApiResponse filteredData = filterWeatherData(weatherApiResponse, startTimeStamp, endTimeStamp);
+        RequestTrace.recordLocationCacheLookup();
+        LocationForecast cachedLocation = (LocationForecast) metrics.time(ForecastMetrics.Stage.CACHE_LOOKUP, () -> forecastCache.get(locationKey));
 
-        List<ForecastDTO> forecastDTOList = mapResponseToDTO(filteredData);
+        long now = clock.millis();
 
-        return calculateAverageForeCastForEvent(forecastDTOList);
+        if (isFresh(cachedLocation, now)) {
+            metrics.locationCacheResult(ForecastMetrics.CacheResult.HIT);
+            return new ResolvedLocation(cachedLocation, 0);
+        }
+
+        WeatherProperties.Cache cacheProperties = weatherProperties.getCache();
+
+        if (cacheProperties.isStaleServingEnabled() && isWithinStaleWindow(cachedLocation, now, cacheProperties.getStaleWhileRevalidate())) {
+            metrics.locationCacheResult(ForecastMetrics.CacheResult.STALE);
+            refreshInBackground(locationKey, cell, cachedLocation);
+            return new ResolvedLocation(cachedLocation, staleSeconds(cachedLocation, now));
+        }
+
+        try {
+            LocationForecast locationForecast = fetchOnce(locationKey, cell, cachedLocation);
+            metrics.locationCacheResult(ForecastMetrics.CacheResult.MISS);
+            return new ResolvedLocation(locationForecast, 0);
+        } catch (RuntimeException e) {
+            if (!cacheProperties.isStaleServingEnabled() || !isWithinStaleWindow(cachedLocation, now, cacheProperties.getStaleIfError())) {
+                metrics.locationCacheResult(ForecastMetrics.CacheResult.MISS);
+                throw e;
+            }
+            long staleSeconds = staleSeconds(cachedLocation, now);
+            logger.warn("Serving forecast for location {} expired {} seconds ago, met.no failed: {}", locationKey,
+                    staleSeconds, e.getMessage());
+            metrics.locationCacheResult(ForecastMetrics.CacheResult.STALE);
+            return new ResolvedLocation(cachedLocation, staleSeconds);
+        }
+    }
+
+    // One upstream call per location, even when different events miss at the same time
+    private LocationForecast fetchOnce(String locationKey, SpatialGrid.Cell cell, LocationForecast expired) {
+        return inFlightRequests.executeAcrossNodes(locationKey,
+                () -> freshOrNull((LocationForecast) forecastCache.get(locationKey), clock.millis()),
+                () -> fetchLocationForecast(locationKey, cell, expired, clock.millis()));
+    }
+
+    private void refreshInBackground(String locationKey, SpatialGrid.Cell cell, LocationForecast expired) {
+
+        // Readers keep getting the stale entry meanwhile, they must not queue up more refreshes
+        if (!refreshingLocations.add(locationKey)) {
+            return;
+        }
+
+        try {
+            forecastExecutor.execute(RequestContext.propagate(() -> {
+                try {
+                    fetchOnce(locationKey, cell, expired);
+                } catch (Exception e) {
+                    logger.warn("Background refresh of location {} failed: {}", locationKey, e.getMessage());
+                } finally {
+                    refreshingLocations.remove(locationKey);
+                }
+            }));
+        } catch (RejectedExecutionException e) {
+            refreshingLocations.remove(locationKey);
+        }
+    }
+
+    /**
+     * Downloads the timeseries of a grid cell, for the coordinates of its centre. An expired copy is
+     * revalidated with If-Modified-Since instead, a 304 only extends its lifetime.
+     */
+    private LocationForecast fetchLocationForecast(String locationKey, SpatialGrid.Cell cell, LocationForecast expired, long freshUntil) {
+
+        LocationForecast cachedLocation = (LocationForecast) forecastCache.getLocal(locationKey);
+
+        if (isFresh(cachedLocation, freshUntil)) {
+            return cachedLocation;
+        }
+
+        LocationForecast previous = cachedLocation != null ? cachedLocation : expired;
+
+        accessTracker.recordCellFetch(locationKey);
+        MetNoClient.MetNoResponse response = metNoClient.fetch(cell.latitude(), cell.longitude(), previous != null ? previous.getLastModified() : -1);
+
+        long now = clock.millis();
+        Duration ttl = resolveLocationTtl(response.headers(), now, weatherProperties.getCache());
+
+        LocationForecast locationForecast = toLocationForecast(response, previous, now + ttl.toMillis());
+
+        // Kept past its expiry so the next fetch can be a conditional one, or it can be served stale
+        forecastCache.put(locationKey, locationForecast, ttl.plus(locationRetention(weatherProperties.getCache())));
+
+        logger.info("Cached forecast for location {} for {} seconds{}", locationKey, ttl.toSeconds(),
+                response.isNotModified() ? ", not modified" : "");
+
+        return locationForecast;
+    }
+
+    static LocationForecast toLocationForecast(MetNoClient.MetNoResponse response, LocationForecast previous, long expiresAt) {
+
+        if (response.isNotModified()) {
+            long lastModified = response.headers().getLastModified() > 0 ? response.headers().getLastModified() : previous.getLastModified();
+            return previous.revalidated(expiresAt, lastModified);
+        }
+
+        return new LocationForecast(response.series(), expiresAt, response.headers().getLastModified());
     }
 
+    // Still valid at the given time
+    static boolean isFresh(LocationForecast locationForecast, long at) {
+        return locationForecast != null && locationForecast.getExpiresAt() > at;
+    }
+
+    private static LocationForecast freshOrNull(LocationForecast locationForecast, long at) {
+        return isFresh(locationForecast, at) ? locationForecast : null;
+    }
+
+    // Expired at the given time, but for no longer than the window
+    static boolean isWithinStaleWindow(LocationForecast locationForecast, long at, Duration window) {
+        return locationForecast != null && at - locationForecast.getExpiresAt() <= window.toMillis();
+    }
+
+    // Whole seconds, rounded up and at least 1, the timeseries had been expired at the given time,
+    // 0 when it was fresh. Stale exactly when not fresh, also at the instant it expires.
+    static long staleSeconds(LocationForecast locationForecast, long at) {
+        return isFresh(locationForecast, at) ? 0 : Math.max(1, Math.ceilDiv(at - locationForecast.getExpiresAt(), 1000));
+    }
+
+    // How long an expired timeseries is kept in Redis
+    static Duration locationRetention(WeatherProperties.Cache cacheProperties) {
+
+        Duration retention = cacheProperties.getLocationRevalidationWindow();
+
+        if (cacheProperties.isStaleServingEnabled()) {
+            retention = Collections.max(List.of(retention, cacheProperties.getStaleWhileRevalidate(), cacheProperties.getStaleIfError()));
+        }
+
+        return retention;
+    }
+
+    /**
+     * Freshness lifetime of a met.no response: Expires if present, otherwise the usual
+     * heuristic of 10% of the time since Last-Modified, bounded by the configured TTLs.
+     */
+    static Duration resolveLocationTtl(HttpHeaders headers, long now, WeatherProperties.Cache cacheProperties) {
+
+        long ttlMillis;
+        if (headers.getExpires() > 0) {
+            long date = headers.getDate() > 0 ? headers.getDate() : now;
+            ttlMillis = headers.getExpires() - date;
+        } else if (headers.getLastModified() > 0) {
+            ttlMillis = Math.min((now - headers.getLastModified()) / 10, cacheProperties.getLocationDefaultTtl().toMillis());
+        } else {
+            ttlMillis = cacheProperties.getLocationDefaultTtl().toMillis();
+        }
+
+        return Duration.ofMillis(Math.max(ttlMillis, cacheProperties.getLocationMinTtl().toMillis()));
+    }
+
+    /**
+     * Until when a cached event forecast stays cached, epoch millis. Exact when this node wrote the
+     * entry and tracks it, otherwise the end of its near cache copy, which this node serves until
+     * then anyway.
+     */
+    static long cachedUntil(ForecastAccessTracker accessTracker, Duration nearExpiresIn, String cacheKey) {
+        long now = System.currentTimeMillis();
+        return Math.max(accessTracker.expiresAt(cacheKey), now + nearExpiresIn.toMillis());
+    }
+
+    static ForecastServiceResponse successResponse(UUID eventId, ResolvedForecast forecast) {
+        return ForecastServiceResponse.builder()
+                .eventId(eventId)
+                .success(true)
+                .forecastData(forecast.forecast())
+                .staleSeconds(forecast.isStale() ? forecast.staleSeconds() : null)
+                .build();
+    }
+
+    static ForecastServiceResponse errorResponse(UUID eventId, Throwable e) {
+        return ForecastServiceResponse.builder()
+                .eventId(eventId)
+                .success(false)
+                .error(ErrorResponseDTO.builder()
+                        .errorCode(ERROR_CODE_INTERNAL_SERVER_ERROR)
+                        .errorDescription(ERROR_DESCRIPTION_FORECAST_FAILED + e.getMessage())
+                        .build())
+                .build();
+    }
+
+    static String locationKey(SpatialGrid.Cell cell) {
+        return LOCATION_CACHE_PREFIX + cell.latitude() + ":" + cell.longitude();
+    }
+
+    static ForecastDTO prepareFinalForecast(LocationForecast locationForecast, String startTimeStamp, String endTimeStamp, ForecastMetrics metrics) {
+
+        ForecastSeries series = locationForecast.getSeries();
+
+        ForecastWindow window = metrics.time(ForecastMetrics.Stage.FILTER, () -> filterWeatherData(series, startTimeStamp, endTimeStamp));
+
+        // Built with the location timeseries, events at the location share it
+        return metrics.time(ForecastMetrics.Stage.AGGREGATE, () -> locationForecast.getAggregateIndex().averageForecast(series, window));
+    }
+
+    /**
+     * A location's timeseries with how many seconds it had been expired when it was looked up, 0
+     * when it was fresh.
+     */
+    record ResolvedLocation(LocationForecast forecast, long staleSeconds) {
+    }
 }
@@ -1,6 +1,8 @@
 package com.spond.weather.util;
 
 import com.spond.weather.dto.ForecastDTO;
+import com.spond.weather.dto.ForecastSeries;
+import com.spond.weather.dto.ForecastWindow;
 import com.spond.weather.dto.WeatherApiResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.Logger;
@@ -8,118 +10,201 @@ import org.slf4j.LoggerFactory;
 
 import java.time.Instant;
 import java.time.LocalDateTime;
-import java.time.ZoneId;
 import java.time.ZoneOffset;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Slf4j
 public class ApplicationUtils {
 
     static Logger logger = LoggerFactory.getLogger(ApplicationUtils.class);
 
-    public static WeatherApiResponse filterWeatherData(WeatherApiResponse weatherApiResponse, String startTimeStamp, String endTimeStamp) {
-        // Filter the weather data based on the start and end timestamps of the event
-        // and return the filtered data
-        try {
+    public static ForecastWindow filterWeatherData(ForecastSeries series, String startTimeStamp, String endTimeStamp) {
+        // Select the forecast entries between the start and end timestamps of the event
+        // that are also within the next 7 days
+        Instant startTime = Instant.parse(startTimeStamp);
+        Instant endTime = Instant.parse(endTimeStamp);
 
+        // Calculate the maximum date allowed (7 days from now)
+        Instant maxAllowedDate = LocalDateTime.now().plusDays(7).toInstant(ZoneOffset.UTC);
 
-            LocalDateTime startTime = LocalDateTime.ofInstant(Instant.parse(startTimeStamp), ZoneId.ofOffset("UTC", ZoneOffset.UTC));
-            LocalDateTime endTime = LocalDateTime.ofInstant(Instant.parse(endTimeStamp), ZoneId.ofOffset("UTC", ZoneOffset.UTC));
+        // Forecast times are whole seconds, so round the bounds to the seconds they admit
+        long firstAllowed = startTime.getEpochSecond() + (startTime.getNano() > 0 ? 1 : 0);
+        long lastAllowed = endTime.getEpochSecond();
+        long maxExclusive = maxAllowedDate.getEpochSecond() + (maxAllowedDate.getNano() > 0 ? 1 : 0);
 
-            // Calculate the maximum date allowed (7 days from now)
-            LocalDateTime maxAllowedDate = LocalDateTime.now().plusDays(7);
+        long[] epochSeconds = series.getEpochSeconds();
 
-            List<WeatherApiResponse.TimeSeries> filteredData = new java.util.ArrayList<>(weatherApiResponse.getProperties().getTimeseries().stream()
-                    .filter(data -> {
-                        LocalDateTime forecastTime = LocalDateTime.ofInstant(Instant.parse(data.getTime()), ZoneId.ofOffset("UTC", ZoneOffset.UTC));
-                        // Filter conditions:
-                        // 1. Forecast time is within the provided start and end time or
-                        // 2. Forecast time is within the next 7 days from now
+        // The series is sorted by time, so the matching entries form one contiguous range
+        // whose bounds can be found by binary search
+        int from = lowerBound(epochSeconds, 0, epochSeconds.length, firstAllowed);
+        int to = lowerBound(epochSeconds, from, epochSeconds.length, Math.min(lastAllowed + 1, maxExclusive));
 
-                        return (forecastTime.isAfter(startTime) || forecastTime.isEqual(startTime)) &&
-                                (forecastTime.isBefore(endTime) || forecastTime.isEqual(endTime)) &&
-                                forecastTime.isBefore(maxAllowedDate);
-                    })
-                    .toList());
+        ForecastWindow window = to > from
+                ? ForecastWindow.range(from, to)
+                //Condition if no data is found between/or matching the start and end time
+                : ForecastWindow.closest(
+                        findClosestForecast(epochSeconds, startTime.getEpochSecond(), maxExclusive),
+                        findClosestForecast(epochSeconds, endTime.getEpochSecond(), maxExclusive));
 
-            //Condition if no data is found between/or matching the start and end time
-            if (filteredData.isEmpty()) {
+        logger.info("Filtered data size: {}", window.size());
 
-                List<WeatherApiResponse.TimeSeries> closestStartTimeForeCast = findClosestForecast(weatherApiResponse.getProperties().getTimeseries(), startTime, maxAllowedDate);
-                List<WeatherApiResponse.TimeSeries> closestEndTimeForeCast = findClosestForecast(weatherApiResponse.getProperties().getTimeseries(), endTime, maxAllowedDate);
+        return window;
+    }
 
-                filteredData.addAll(closestStartTimeForeCast);
-                filteredData.addAll(closestEndTimeForeCast);
-            }
+    public static ForecastSeries mapResponseToSeries(WeatherApiResponse weatherApiResponse) {
+
+        List<WeatherApiResponse.TimeSeries> timeSeriesList = weatherApiResponse.getProperties().getTimeseries();
 
-            logger.info("Filtered data size: {}", filteredData);
+        long[] epochSeconds = new long[timeSeriesList.size()];
+        double[] airTemperature = new double[timeSeriesList.size()];
+        double[] windSpeed = new double[timeSeriesList.size()];
+        int size = 0;
 
-            weatherApiResponse.getProperties().setTimeseries(filteredData);
+        for (WeatherApiResponse.TimeSeries timeSeries : timeSeriesList) {
 
-            return weatherApiResponse;
+            WeatherApiResponse.TemperatureDetails details = timeSeries.getData() == null || timeSeries.getData().getInstant() == null
+                    ? null : timeSeries.getData().getInstant().getDetails();
+
+            // An entry without its time or values would be averaged in as zero, skipped like the streaming parser does
+            if (timeSeries.getTime() == null || details == null || details.getAir_temperature() == null || details.getWind_speed() == null) {
+                continue;
+            }
 
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+            epochSeconds[size] = Instant.parse(timeSeries.getTime()).getEpochSecond();
+            airTemperature[size] = details.getAir_temperature();
+            windSpeed[size] = details.getWind_speed();
+            size++;
         }
 
+        return sortByTime(new ForecastSeries(Arrays.copyOf(epochSeconds, size), Arrays.copyOf(airTemperature, size), Arrays.copyOf(windSpeed, size)));
     }
 
-    public static List<ForecastDTO> mapResponseToDTO(WeatherApiResponse weatherApiResponse) {
-
-        return weatherApiResponse.getProperties()
-                .getTimeseries()
-                .stream()
-                .map(timeSeries -> {
-                    ForecastDTO forecastDTO = new ForecastDTO();
-                    forecastDTO.setAirTemperature(timeSeries.getData()
-                            .getInstant()
-                            .getDetails()
-                            .getAir_temperature());
-                    forecastDTO.setWindSpeed(timeSeries.getData()
-                            .getInstant()
-                            .getDetails()
-                            .getWind_speed());
-                    return forecastDTO;
-                })
-                .toList();
+    /**
+     * Returns the series itself when it is already in time order, which is what met.no sends,
+     * otherwise a stably sorted copy.
+     */
+    public static ForecastSeries sortByTime(ForecastSeries series) {
 
+        long[] epochSeconds = series.getEpochSeconds();
+
+        boolean sorted = true;
+        for (int i = 1; i < epochSeconds.length && sorted; i++) {
+            sorted = epochSeconds[i - 1] <= epochSeconds[i];
+        }
+        if (sorted) {
+            return series;
+        }
+
+        Integer[] order = new Integer[epochSeconds.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (first, second) -> Long.compare(epochSeconds[first], epochSeconds[second]));
+
+        long[] sortedTimes = new long[order.length];
+        double[] sortedTemperature = new double[order.length];
+        double[] sortedWindSpeed = new double[order.length];
+        for (int i = 0; i < order.length; i++) {
+            sortedTimes[i] = epochSeconds[order[i]];
+            sortedTemperature[i] = series.getAirTemperature()[order[i]];
+            sortedWindSpeed[i] = series.getWindSpeed()[order[i]];
+        }
+
+        return new ForecastSeries(sortedTimes, sortedTemperature, sortedWindSpeed);
     }
 
-    public static ForecastDTO calculateAverageForeCastForEvent(List<ForecastDTO> forecastDTOList) {
+    public static ForecastDTO calculateAverageForeCastForEvent(ForecastSeries series, ForecastWindow window) {
         // Calculate the average air temperature and wind speed round off to 1 decimal place
-        double avgAirTemperature = forecastDTOList.stream()
-                .mapToDouble(ForecastDTO::getAirTemperature)
-                .average()
-                .orElse(0.0);
+        double avgAirTemperature = average(series.getAirTemperature(), window);
+        double avgWindSpeed = average(series.getWindSpeed(), window);
+
+        return new ForecastDTO(Math.round(avgAirTemperature * 10.0) / 10.0, Math.round(avgWindSpeed * 10.0) / 10.0);
+    }
+
+    /**
+     * Mean of the selected values, 0.0 when nothing is selected. Uses the same compensated
+     * summation as {@link java.util.stream.DoubleStream#average()} so results are bit for bit
+     * identical to streaming over the selected entries, without the stream allocations.
+     */
+    private static double average(double[] values, ForecastWindow window) {
 
-        double avgWindSpeed = forecastDTOList.stream()
-                .mapToDouble(ForecastDTO::getWindSpeed)
-                .average()
-                .orElse(0.0);
+        double[] sum = new double[3];
+        long count = 0;
 
-        ForecastDTO finalForeCast = new ForecastDTO();
-        finalForeCast.setAirTemperature(Math.round(avgAirTemperature * 10.0) / 10.0);
-        finalForeCast.setWindSpeed(Math.round(avgWindSpeed * 10.0) / 10.0);
+        if (window.isRange()) {
+            for (int i = window.from(); i < window.to(); i++) {
+                addWithCompensation(sum, values[i]);
+                count++;
+            }
+        } else {
+            if (window.closestStart() >= 0) {
+                addWithCompensation(sum, values[window.closestStart()]);
+                count++;
+            }
+            if (window.closestEnd() >= 0) {
+                addWithCompensation(sum, values[window.closestEnd()]);
+                count++;
+            }
+        }
 
-        return finalForeCast;
+        if (count == 0) {
+            return 0.0;
+        }
+
+        double compensatedSum = sum[0] - sum[1];
+        if (Double.isNaN(compensatedSum) && Double.isInfinite(sum[2])) {
+            compensatedSum = sum[2];
+        }
+        return compensatedSum / count;
+    }
+
+    // Kahan summation step: sum[0] running sum, sum[1] negated compensation, sum[2] simple sum
+    private static void addWithCompensation(double[] sum, double value) {
+        double tmp = value - sum[1];
+        double velvel = sum[0] + tmp;
+        sum[1] = (velvel - sum[0]) - tmp;
+        sum[0] = velvel;
+        sum[2] += value;
+    }
+
+    public static int findClosestForecast(long[] epochSeconds, long eventTime, long maxExclusive) {
+        // Index of the first entry closest to the event time among entries before maxExclusive,
+        // -1 if every entry is too far ahead. On equal distance the earlier entry wins.
+        int limit = lowerBound(epochSeconds, 0, epochSeconds.length, maxExclusive);
+
+        if (limit == 0) {
+            return -1;
+        }
+
+        int after = lowerBound(epochSeconds, 0, limit, eventTime);
+
+        if (after == 0) {
+            return 0;
+        }
+
+        // First entry of the run of equal timestamps just before the event time
+        int before = lowerBound(epochSeconds, 0, after, epochSeconds[after - 1]);
+
+        if (after == limit) {
+            return before;
+        }
+
+        return eventTime - epochSeconds[before] <= epochSeconds[after] - eventTime ? before : after;
     }
 
-    private static List<WeatherApiResponse.TimeSeries> findClosestForecast(List<WeatherApiResponse.TimeSeries> timeSeriesList, LocalDateTime eventTime, LocalDateTime maxAllowedDate) {
-        return timeSeriesList.stream()
-                .filter(
-                        data -> {
-                            LocalDateTime forecastTime = LocalDateTime.ofInstant(Instant.parse(data.getTime()), ZoneId.ofOffset("UTC", ZoneOffset.UTC));
-                            return forecastTime.isBefore(maxAllowedDate);
-                        }
-                )
-                .sorted(Comparator.comparing(data -> {
-                    LocalDateTime forecastTime = LocalDateTime.ofInstant(Instant.parse(data.getTime()), ZoneId.ofOffset("UTC", ZoneOffset.UTC));
-                    return Math.abs(forecastTime.toEpochSecond(ZoneOffset.UTC) - eventTime.toEpochSecond(ZoneOffset.UTC));
-                }))
-                .limit(1)
-                .toList();
+    // Index of the first entry in [from, to) with a time not before the key, to if there is none
+    private static int lowerBound(long[] epochSeconds, int from, int to, long key) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (epochSeconds[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
     }
 }
@@ -0,0 +1,154 @@
+package com.spond.weather.util;
+
+import com.spond.weather.dto.ForecastDTO;
+import com.spond.weather.dto.ForecastSeries;
+import com.spond.weather.dto.ForecastWindow;
+
+/**
+ * Range aggregates over a {@link ForecastSeries}, built with the
+ * {@link com.spond.weather.dto.LocationForecast} that holds the series and shared by every event
+ * at the location. Prefix sums give the average of any range of entries and sparse tables its
+ * minimum and maximum, each in constant time.
+ * <p>
+ * met.no values have one decimal, so the prefix sums are kept as exact integer tenths. An average
+ * is then exact and rounds to the same tenth as the compensated summation of
+ * {@link ApplicationUtils#calculateAverageForeCastForEvent}, except when it lies exactly halfway
+ * between two tenths, where the floating point result of the summation decides. Those averages,
+ * and series with values that are not whole tenths, are computed by the summation itself.
+ */
+public class ForecastAggregateIndex {
+
+    public enum Metric {
+        AIR_TEMPERATURE,
+        WIND_SPEED
+    }
+
+    private final Column airTemperature;
+
+    private final Column windSpeed;
+
+    private ForecastAggregateIndex(ForecastSeries series) {
+        this.airTemperature = new Column(series.getAirTemperature());
+        this.windSpeed = new Column(series.getWindSpeed());
+    }
+
+    /**
+     * Builds the index of the series, in time linear in its size times its logarithm.
+     */
+    public static ForecastAggregateIndex of(ForecastSeries series) {
+        return new ForecastAggregateIndex(series);
+    }
+
+    /**
+     * Same result as {@link ApplicationUtils#calculateAverageForeCastForEvent} for the series this
+     * index was built from.
+     */
+    public ForecastDTO averageForecast(ForecastSeries series, ForecastWindow window) {
+
+        // One or two entries, nothing to gain
+        if (!window.isRange()) {
+            return ApplicationUtils.calculateAverageForeCastForEvent(series, window);
+        }
+
+        double averageAirTemperature = airTemperature.roundedAverage(window.from(), window.to());
+        double averageWindSpeed = windSpeed.roundedAverage(window.from(), window.to());
+
+        if (Double.isNaN(averageAirTemperature) || Double.isNaN(averageWindSpeed)) {
+            return ApplicationUtils.calculateAverageForeCastForEvent(series, window);
+        }
+
+        return new ForecastDTO(averageAirTemperature, averageWindSpeed);
+    }
+
+    /**
+     * Smallest value of the metric among entries [from, to), which must not be empty.
+     */
+    public double min(Metric metric, int from, int to) {
+        return column(metric).min(from, to);
+    }
+
+    /**
+     * Largest value of the metric among entries [from, to), which must not be empty.
+     */
+    public double max(Metric metric, int from, int to) {
+        return column(metric).max(from, to);
+    }
+
+    private Column column(Metric metric) {
+        return metric == Metric.AIR_TEMPERATURE ? airTemperature : windSpeed;
+    }
+
+    private static final class Column {
+
+        // prefixTenths[i] is the sum of the first i values in tenths, null when a value is not a whole number of tenths
+        private final long[] prefixTenths;
+
+        // min[k][i] and max[k][i] cover the 2^k entries starting at i
+        private final double[][] min;
+
+        private final double[][] max;
+
+        Column(double[] values) {
+
+            this.prefixTenths = prefixTenths(values);
+
+            int levels = values.length == 0 ? 0 : 32 - Integer.numberOfLeadingZeros(values.length);
+            this.min = new double[levels][];
+            this.max = new double[levels][];
+
+            for (int k = 0; k < levels; k++) {
+                int width = 1 << k;
+                min[k] = new double[values.length - width + 1];
+                max[k] = new double[values.length - width + 1];
+                for (int i = 0; i < min[k].length; i++) {
+                    min[k][i] = k == 0 ? values[i] : Math.min(min[k - 1][i], min[k - 1][i + width / 2]);
+                    max[k][i] = k == 0 ? values[i] : Math.max(max[k - 1][i], max[k - 1][i + width / 2]);
+                }
+            }
+        }
+
+        private static long[] prefixTenths(double[] values) {
+
+            long[] prefix = new long[values.length + 1];
+
+            for (int i = 0; i < values.length; i++) {
+                long tenths = Math.round(values[i] * 10.0);
+                if (tenths / 10.0 != values[i]) {
+                    return null;
+                }
+                prefix[i + 1] = prefix[i] + tenths;
+            }
+
+            return prefix;
+        }
+
+        // Average of [from, to) rounded to one decimal, NaN when the summation has to decide
+        double roundedAverage(int from, int to) {
+
+            if (prefixTenths == null) {
+                return Double.NaN;
+            }
+
+            long sum = prefixTenths[to] - prefixTenths[from];
+            long count = to - from;
+
+            // Exactly halfway between two tenths
+            if (Math.floorMod(2 * sum, 2 * count) == count) {
+                return Double.NaN;
+            }
+
+            // Nearest whole number of tenths to sum / count
+            return Math.floorDiv(2 * sum + count, 2 * count) / 10.0;
+        }
+
+        double min(int from, int to) {
+            int k = 31 - Integer.numberOfLeadingZeros(to - from);
+            return Math.min(min[k][from], min[k][to - (1 << k)]);
+        }
+
+        double max(int from, int to) {
+            int k = 31 - Integer.numberOfLeadingZeros(to - from);
+            return Math.max(max[k][from], max[k][to - (1 << k)]);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.spond.weather.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.spond.weather.dto.ForecastSeries;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Token level parser for the met.no locationforecast compact format. Reads the body once and keeps
+ * only time, air_temperature and wind_speed of every timeseries entry, everything else (metadata,
+ * next_1_hours, next_6_hours, other instant details) is skipped without being materialised.
+ * Entries missing one of the three are left out.
+ */
+public class MetNoStreamingParser {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    // met.no serves 80-90 entries per location
+    private static final int INITIAL_CAPACITY = 96;
+
+    // Length of "2024-08-27T14:00:00Z"
+    private static final int COMPACT_TIMESTAMP_LENGTH = 20;
+
+    public static ForecastSeries parse(InputStream body) throws IOException {
+
+        try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+
+            SeriesBuilder builder = new SeriesBuilder();
+
+            expect(parser.nextToken(), JsonToken.START_OBJECT);
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                if ("properties".equals(field)) {
+                    readProperties(parser, builder);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+
+            return builder.build();
+        }
+    }
+
+    private static void readProperties(JsonParser parser, SeriesBuilder builder) throws IOException {
+
+        expect(parser.currentToken(), JsonToken.START_OBJECT);
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            if ("timeseries".equals(field)) {
+                expect(parser.currentToken(), JsonToken.START_ARRAY);
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    readEntry(parser, builder);
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private static void readEntry(JsonParser parser, SeriesBuilder builder) throws IOException {
+
+        // NaN and Long.MIN_VALUE until the entry sets them
+        long epochSecond = Long.MIN_VALUE;
+        double airTemperature = Double.NaN;
+        double windSpeed = Double.NaN;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+
+            if ("time".equals(field) && value == JsonToken.VALUE_STRING) {
+                epochSecond = parseEpochSecond(parser);
+            } else if ("data".equals(field) && value == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String dataField = parser.currentName();
+                    parser.nextToken();
+                    if (!"instant".equals(dataField) || parser.currentToken() != JsonToken.START_OBJECT) {
+                        parser.skipChildren();
+                        continue;
+                    }
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String instantField = parser.currentName();
+                        parser.nextToken();
+                        if (!"details".equals(instantField) || parser.currentToken() != JsonToken.START_OBJECT) {
+                            parser.skipChildren();
+                            continue;
+                        }
+                        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                            String detail = parser.currentName();
+                            JsonToken number = parser.nextToken();
+                            if ("air_temperature".equals(detail) && number.isNumeric()) {
+                                airTemperature = parser.getDoubleValue();
+                            } else if ("wind_speed".equals(detail) && number.isNumeric()) {
+                                windSpeed = parser.getDoubleValue();
+                            } else {
+                                parser.skipChildren();
+                            }
+                        }
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+
+        // An entry without its time or values would be averaged in as zero, skipped like the data binding path does
+        if (epochSecond != Long.MIN_VALUE && !Double.isNaN(airTemperature) && !Double.isNaN(windSpeed)) {
+            builder.add(epochSecond, airTemperature, windSpeed);
+        }
+    }
+
+    /**
+     * Parses met.no's fixed "yyyy-MM-ddTHH:mm:ssZ" timestamps straight from the parser buffer,
+     * anything else goes through {@link Instant#parse}.
+     */
+    private static long parseEpochSecond(JsonParser parser) throws IOException {
+
+        char[] chars = parser.getTextCharacters();
+        int offset = parser.getTextOffset();
+        int length = parser.getTextLength();
+
+        if (length != COMPACT_TIMESTAMP_LENGTH
+                || chars[offset + 4] != '-' || chars[offset + 7] != '-' || chars[offset + 10] != 'T'
+                || chars[offset + 13] != ':' || chars[offset + 16] != ':' || chars[offset + 19] != 'Z') {
+            return Instant.parse(parser.getText()).getEpochSecond();
+        }
+
+        int year = digits(chars, offset, 4);
+        int month = digits(chars, offset + 5, 2);
+        int day = digits(chars, offset + 8, 2);
+        int hour = digits(chars, offset + 11, 2);
+        int minute = digits(chars, offset + 14, 2);
+        int second = digits(chars, offset + 17, 2);
+
+        if (year < 0 || month < 0 || day < 0 || hour < 0 || minute < 0 || second < 0) {
+            return Instant.parse(parser.getText()).getEpochSecond();
+        }
+
+        return LocalDate.of(year, month, day).toEpochDay() * 86_400L + hour * 3_600L + minute * 60L + second;
+    }
+
+    private static int digits(char[] chars, int offset, int count) {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            int digit = chars[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static void expect(JsonToken actual, JsonToken expected) throws IOException {
+        if (actual != expected) {
+            throw new IOException("Unexpected met.no response, expected " + expected + " but got " + actual);
+        }
+    }
+
+    private static class SeriesBuilder {
+
+        private long[] epochSeconds = new long[INITIAL_CAPACITY];
+        private double[] airTemperature = new double[INITIAL_CAPACITY];
+        private double[] windSpeed = new double[INITIAL_CAPACITY];
+        private int size;
+
+        void add(long epochSecond, double temperature, double wind) {
+            if (size == epochSeconds.length) {
+                int capacity = size * 2;
+                epochSeconds = Arrays.copyOf(epochSeconds, capacity);
+                airTemperature = Arrays.copyOf(airTemperature, capacity);
+                windSpeed = Arrays.copyOf(windSpeed, capacity);
+            }
+            epochSeconds[size] = epochSecond;
+            airTemperature[size] = temperature;
+            windSpeed[size] = wind;
+            size++;
+        }
+
+        ForecastSeries build() {
+            return ApplicationUtils.sortByTime(new ForecastSeries(
+                    Arrays.copyOf(epochSeconds, size),
+                    Arrays.copyOf(airTemperature, size),
+                    Arrays.copyOf(windSpeed, size)));
+        }
+    }
+}
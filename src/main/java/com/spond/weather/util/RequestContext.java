@@ -0,0 +1,30 @@
+package com.spond.weather.util;
+
+import org.apache.logging.log4j.ThreadContext;
+
+import java.util.Map;
+
+/**
+ * Carries the logging context of the submitting thread (the requestId set by the MDC filter) over
+ * to tasks run on worker threads, platform or virtual.
+ */
+public class RequestContext {
+
+    public static Runnable propagate(Runnable task) {
+
+        Map<String, String> context = ThreadContext.getImmutableContext();
+
+        if (context.isEmpty()) {
+            return task;
+        }
+
+        return () -> {
+            ThreadContext.putAll(context);
+            try {
+                task.run();
+            } finally {
+                ThreadContext.clearMap();
+            }
+        };
+    }
+}
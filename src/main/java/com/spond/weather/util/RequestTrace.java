@@ -0,0 +1,59 @@
+package com.spond.weather.util;
+
+import lombok.Getter;
+
+/**
+ * Per-request counters of the expensive steps, started and ended by the MDC filter. Recording
+ * outside a request (batch workers, background jobs) is a no-op.
+ */
+@Getter
+public class RequestTrace {
+
+    private static final ThreadLocal<RequestTrace> CURRENT = new ThreadLocal<>();
+
+    private int eventCacheLookups;
+    private int locationCacheLookups;
+    private int upstreamCalls;
+
+    public static RequestTrace begin() {
+        RequestTrace trace = new RequestTrace();
+        CURRENT.set(trace);
+        return trace;
+    }
+
+    public static void end() {
+        CURRENT.remove();
+    }
+
+    public static RequestTrace current() {
+        return CURRENT.get();
+    }
+
+    public static void recordEventCacheLookup() {
+        RequestTrace trace = CURRENT.get();
+        if (trace != null) {
+            trace.eventCacheLookups++;
+        }
+    }
+
+    public static void recordLocationCacheLookup() {
+        RequestTrace trace = CURRENT.get();
+        if (trace != null) {
+            trace.locationCacheLookups++;
+        }
+    }
+
+    public static void recordUpstreamCall() {
+        RequestTrace trace = CURRENT.get();
+        if (trace != null) {
+            trace.upstreamCalls++;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "eventCacheLookups=" + eventCacheLookups
+                + ", locationCacheLookups=" + locationCacheLookups
+                + ", upstreamCalls=" + upstreamCalls;
+    }
+}
@@ -0,0 +1,60 @@
+package com.spond.weather.util;
+
+import com.spond.weather.config.WeatherProperties;
+
+/**
+ * Maps coordinates to a cell of a coarse grid, so events close to each other share one met.no
+ * call and one cache entry. A cell is represented by its centre, rounded to the 4 decimals met.no
+ * accepts.
+ */
+public class SpatialGrid {
+
+    public record Cell(double latitude, double longitude) {
+    }
+
+    public static Cell snap(double latitude, double longitude, WeatherProperties.Grid grid) {
+        return switch (grid.getMode()) {
+            case NONE -> new Cell(roundCoordinate(latitude), roundCoordinate(longitude));
+            case FIXED -> new Cell(fixedCellCentre(latitude, grid.getResolutionDegrees(), 90),
+                    fixedCellCentre(longitude, grid.getResolutionDegrees(), 180));
+            case GEOHASH -> geohashCell(latitude, longitude, grid.getGeohashPrecision());
+        };
+    }
+
+    //Round off the latitude and longitude to 4 decimal places
+    public static double roundCoordinate(double coordinate) {
+        return Math.round(coordinate * 10000.0) / 10000.0;
+    }
+
+    private static double fixedCellCentre(double coordinate, double resolution, double limit) {
+        double centre = Math.floor(coordinate / resolution) * resolution + resolution / 2;
+        return roundCoordinate(Math.max(-limit, Math.min(limit, centre)));
+    }
+
+    // Bisects longitude and latitude alternately, 5 bits per geohash character, longitude first
+    private static Cell geohashCell(double latitude, double longitude, int precision) {
+
+        double minLatitude = -90, maxLatitude = 90;
+        double minLongitude = -180, maxLongitude = 180;
+
+        for (int bit = 0; bit < precision * 5; bit++) {
+            if (bit % 2 == 0) {
+                double middle = (minLongitude + maxLongitude) / 2;
+                if (longitude >= middle) {
+                    minLongitude = middle;
+                } else {
+                    maxLongitude = middle;
+                }
+            } else {
+                double middle = (minLatitude + maxLatitude) / 2;
+                if (latitude >= middle) {
+                    minLatitude = middle;
+                } else {
+                    maxLatitude = middle;
+                }
+            }
+        }
+
+        return new Cell(roundCoordinate((minLatitude + maxLatitude) / 2), roundCoordinate((minLongitude + maxLongitude) / 2));
+    }
+}
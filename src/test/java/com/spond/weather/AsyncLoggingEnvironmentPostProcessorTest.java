@@ -0,0 +1,48 @@
+package com.spond.weather;
+
+import com.spond.weather.config.AsyncLoggingEnvironmentPostProcessor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncLoggingEnvironmentPostProcessorTest {
+
+    private final AsyncLoggingEnvironmentPostProcessor postProcessor = new AsyncLoggingEnvironmentPostProcessor(Supplier::get);
+
+    @AfterEach
+    void tearDown() {
+        System.clearProperty("log4j2.asyncQueueFullPolicy");
+        System.clearProperty("log4j2.discardThreshold");
+    }
+
+    @Test
+    void testLog4jSettingsOnlyApplyToTheAsyncLoggingProfile() {
+
+        postProcessor.postProcessEnvironment(new MockEnvironment(), new SpringApplication());
+        assertNull(System.getProperty("log4j2.asyncQueueFullPolicy"));
+
+        MockEnvironment environment = new MockEnvironment();
+        environment.setActiveProfiles("async-logging");
+        postProcessor.postProcessEnvironment(environment, new SpringApplication());
+
+        assertEquals("Discard", System.getProperty("log4j2.asyncQueueFullPolicy"));
+        assertEquals("INFO", System.getProperty("log4j2.discardThreshold"));
+    }
+
+    @Test
+    void testSystemPropertiesGivenAtStartupWin() {
+
+        System.setProperty("log4j2.discardThreshold", "DEBUG");
+
+        MockEnvironment environment = new MockEnvironment();
+        environment.setActiveProfiles("async-logging");
+        postProcessor.postProcessEnvironment(environment, new SpringApplication());
+
+        assertEquals("DEBUG", System.getProperty("log4j2.discardThreshold"));
+    }
+}
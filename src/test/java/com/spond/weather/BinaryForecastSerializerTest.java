@@ -0,0 +1,95 @@
+package com.spond.weather;
+
+import com.spond.weather.cache.BinaryForecastSerializer;
+import com.spond.weather.dto.ForecastDTO;
+import com.spond.weather.dto.ForecastSeries;
+import com.spond.weather.dto.LocationForecast;
+import com.spond.weather.util.MetNoStreamingParser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryForecastSerializerTest {
+
+    private final GenericJackson2JsonRedisSerializer jsonSerializer = new GenericJackson2JsonRedisSerializer();
+
+    private LocationForecast location;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        ForecastSeries series = MetNoStreamingParser.parse(getClass().getClassLoader().getResourceAsStream("met_response.json"));
+        location = new LocationForecast(series, 1_724_770_800_000L, 1_724_763_600_000L);
+    }
+
+    @Test
+    void testRoundTripIsLosslessAndSmallerThanJson() {
+
+        BinaryForecastSerializer serializer = new BinaryForecastSerializer(0);
+        ForecastDTO forecast = new ForecastDTO(17.233333333333334, 2.95);
+
+        byte[] forecastBytes = serializer.serialize(forecast);
+        byte[] locationBytes = serializer.serialize(location);
+
+        assertEquals(forecast, serializer.deserialize(forecastBytes));
+        assertEquals(location, serializer.deserialize(locationBytes));
+        assertEquals("node:EventID:1", serializer.deserialize(serializer.serialize("node:EventID:1")));
+
+        assertTrue(forecastBytes.length * 4 < jsonSerializer.serialize(forecast).length);
+        assertTrue(locationBytes.length * 4 < jsonSerializer.serialize(location).length);
+    }
+
+    @Test
+    void testLargeValuesAreDeflated() {
+
+        BinaryForecastSerializer plain = new BinaryForecastSerializer(0);
+        BinaryForecastSerializer compressing = new BinaryForecastSerializer(64);
+
+        byte[] deflated = compressing.serialize(location);
+
+        assertTrue(deflated.length < plain.serialize(location).length);
+        assertEquals(location, compressing.deserialize(deflated));
+        // Either instance reads both forms
+        assertEquals(location, plain.deserialize(deflated));
+    }
+
+    @Test
+    void testValuesWithMoreThanOneDecimalAreKeptExactly() {
+
+        BinaryForecastSerializer serializer = new BinaryForecastSerializer(0);
+        LocationForecast precise = new LocationForecast(new ForecastSeries(new long[]{1_724_763_600L, 1_724_767_200L},
+                new double[]{0.1 + 0.2, Double.NaN}, new double[]{-3.5, 4.25}), 0, -1);
+
+        assertEquals(precise, serializer.deserialize(serializer.serialize(precise)));
+    }
+
+    @Test
+    void testEntriesWrittenAsJsonStayReadable() {
+
+        BinaryForecastSerializer serializer = new BinaryForecastSerializer(0);
+
+        assertEquals(location, serializer.deserialize(jsonSerializer.serialize(location)));
+        assertEquals(new ForecastDTO(10.0, 5.0), serializer.deserialize(jsonSerializer.serialize(new ForecastDTO(10.0, 5.0))));
+
+        // Other types go through JSON inside the binary envelope
+        Map<String, Object> other = new HashMap<>(Map.of("key", "value"));
+        assertEquals(other, serializer.deserialize(serializer.serialize(other)));
+    }
+
+    @Test
+    void testUnknownVersionIsReadAsMiss() {
+
+        BinaryForecastSerializer serializer = new BinaryForecastSerializer(0);
+
+        byte[] bytes = serializer.serialize(new ForecastDTO(10.0, 5.0));
+        bytes[0] = 2;
+
+        assertNull(serializer.deserialize(bytes));
+        assertNull(serializer.deserialize(new byte[0]));
+    }
+}
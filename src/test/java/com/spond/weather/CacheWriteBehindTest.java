@@ -0,0 +1,249 @@
+package com.spond.weather;
+
+import com.spond.weather.cache.ForecastCache;
+import com.spond.weather.config.WeatherProperties;
+import com.spond.weather.dto.ForecastDTO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class CacheWriteBehindTest {
+
+    private final InMemoryRedis redis = new InMemoryRedis();
+
+    // Holds every pipeline until released, as a slow Redis would
+    private final CountDownLatch redisAvailable = new CountDownLatch(1);
+
+    private final AtomicInteger pipelines = new AtomicInteger();
+
+    private RedisTemplate<String, Object> redisTemplate;
+
+    private WeatherProperties properties;
+
+    private ForecastCache forecastCache;
+
+    @BeforeEach
+    void setUp() {
+        redisTemplate = redis.getTemplate();
+        when(redisTemplate.executePipelined(any(SessionCallback.class))).thenAnswer(invocation -> {
+            redisAvailable.await();
+            pipelines.incrementAndGet();
+            return redis.pipeline(invocation.getArgument(0));
+        });
+
+        properties = new WeatherProperties();
+        properties.getWriteBehind().setEnabled(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        redisAvailable.countDown();
+        if (forecastCache != null) {
+            forecastCache.close();
+        }
+    }
+
+    @Test
+    void testWriteDoesNotWaitForRedisAndIsReadBackBeforeItIsWritten() throws Exception {
+
+        forecastCache = new ForecastCache(redisTemplate, properties);
+
+        forecastCache.put("EventID:1", new ForecastDTO(10.0, 5.0), Duration.ofHours(2));
+
+        // Redis has not seen it yet, this node reads it even without its near cache copy
+        forecastCache.evictLocal("EventID:1");
+        assertNull(redis.get("EventID:1"));
+        assertEquals(new ForecastDTO(10.0, 5.0), forecastCache.get("EventID:1"));
+        assertEquals(new ForecastDTO(10.0, 5.0), forecastCache.getLocal("EventID:1"));
+        assertEquals(List.of(new ForecastDTO(10.0, 5.0)), forecastCache.getAll(List.of("EventID:1")));
+        verify(redisTemplate, never()).opsForValue();
+
+        redisAvailable.countDown();
+        awaitQueueDrained();
+
+        assertEquals(new ForecastDTO(10.0, 5.0), redis.get("EventID:1"));
+        assertEquals(1, forecastCache.getWriteBehind().getWrittenCount());
+    }
+
+    @Test
+    void testBurstIsWrittenInFewPipelinesWithTheLatestValuePerKey() throws Exception {
+
+        forecastCache = new ForecastCache(redisTemplate, properties);
+
+        // The first write is stuck in the pipeline, everything after it queues up
+        forecastCache.put("EventID:0", new ForecastDTO(0, 0), Duration.ofHours(2));
+        awaitFirstPipeline();
+        for (int i = 1; i <= 100; i++) {
+            forecastCache.put("EventID:" + (i % 50 + 1), new ForecastDTO(i, i), Duration.ofHours(2));
+        }
+
+        redisAvailable.countDown();
+        awaitQueueDrained();
+
+        assertEquals(2, pipelines.get());
+        // Every key once, with the last value written to it
+        assertEquals(51, redis.writeCount());
+        assertEquals(new ForecastDTO(100, 100), redis.get("EventID:1"));
+        assertEquals(new ForecastDTO(99, 99), redis.get("EventID:50"));
+    }
+
+    @Test
+    void testFullQueueDropsWritesAndCountsThem() throws Exception {
+
+        properties.getWriteBehind().setQueueCapacity(10);
+        forecastCache = new ForecastCache(redisTemplate, properties);
+
+        forecastCache.put("EventID:0", new ForecastDTO(0, 0), Duration.ofHours(2));
+        // The worker holds the first write, the queue is empty again
+        awaitFirstPipeline();
+
+        for (int i = 1; i <= 15; i++) {
+            forecastCache.put("EventID:" + i, new ForecastDTO(i, i), Duration.ofHours(2));
+        }
+
+        assertEquals(5, forecastCache.getWriteBehind().getDroppedCount());
+        assertEquals(11, forecastCache.getWriteBehind().getQueued());
+
+        redisAvailable.countDown();
+        awaitQueueDrained();
+
+        assertEquals(11, redis.size());
+    }
+
+    @Test
+    void testConcurrentWritesToAFullQueueLeaveNothingUnqueued() throws Exception {
+
+        properties.getWriteBehind().setQueueCapacity(1);
+        forecastCache = new ForecastCache(redisTemplate, properties);
+
+        forecastCache.put("EventID:0", new ForecastDTO(0, 0), Duration.ofHours(2));
+        awaitFirstPipeline();
+        forecastCache.put("EventID:1", new ForecastDTO(1, 1), Duration.ofHours(2));
+
+        // The queue is full, every one of these is dropped however the writers interleave
+        ExecutorService writers = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                int writer = i;
+                futures.add(writers.submit(() -> {
+                    for (int j = 0; j < 10_000; j++) {
+                        forecastCache.put("EventID:" + (2 + j % 4), new ForecastDTO(writer, j), Duration.ofHours(2));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            writers.shutdownNow();
+        }
+
+        assertEquals(2, forecastCache.getWriteBehind().getQueued());
+
+        redisAvailable.countDown();
+        awaitQueueDrained();
+
+        assertEquals(2, redis.size());
+    }
+
+    @Test
+    void testFailedPipelineIsCountedAndDoesNotStopTheWorker() throws Exception {
+
+        AtomicInteger attempts = new AtomicInteger();
+        when(redisTemplate.executePipelined(any(SessionCallback.class))).thenAnswer(invocation -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new RedisConnectionFailureException("down");
+            }
+            return List.of();
+        });
+        forecastCache = new ForecastCache(redisTemplate, properties);
+
+        forecastCache.put("EventID:1", new ForecastDTO(10.0, 5.0), Duration.ofHours(2));
+        awaitQueueDrained();
+        forecastCache.put("EventID:2", new ForecastDTO(10.0, 5.0), Duration.ofHours(2));
+        awaitQueueDrained();
+
+        assertEquals(1, forecastCache.getWriteBehind().getFailedCount());
+        assertEquals(1, forecastCache.getWriteBehind().getWrittenCount());
+    }
+
+    @Test
+    void testCloseWritesWhatIsStillQueued() {
+
+        properties.getWriteBehind().setShutdownTimeout(Duration.ofMillis(100));
+        forecastCache = new ForecastCache(redisTemplate, properties);
+
+        forecastCache.put("EventID:0", new ForecastDTO(0, 0), Duration.ofHours(2));
+        forecastCache.put("EventID:1", new ForecastDTO(1, 1), Duration.ofHours(2));
+
+        redisAvailable.countDown();
+        forecastCache.close();
+
+        assertEquals(2, redis.size());
+        assertEquals(0, forecastCache.getWriteBehind().getQueued());
+    }
+
+    @Test
+    void testCloseInterruptsAStuckFlushAndTheWorkerWritesTheRest() throws Exception {
+
+        // The first pipeline hangs until interrupted, Redis answers the ones after it
+        AtomicInteger attempts = new AtomicInteger();
+        List<String> writerThreads = new CopyOnWriteArrayList<>();
+        when(redisTemplate.executePipelined(any(SessionCallback.class))).thenAnswer(invocation -> {
+            writerThreads.add(Thread.currentThread().getName());
+            if (attempts.incrementAndGet() == 1) {
+                new CountDownLatch(1).await();
+            }
+            return redis.pipeline(invocation.getArgument(0));
+        });
+        properties.getWriteBehind().setShutdownTimeout(Duration.ofMillis(100));
+        forecastCache = new ForecastCache(redisTemplate, properties);
+
+        forecastCache.put("EventID:0", new ForecastDTO(0, 0), Duration.ofHours(2));
+        awaitFirstPipeline();
+        forecastCache.put("EventID:1", new ForecastDTO(1, 1), Duration.ofHours(2));
+        forecastCache.put("EventID:2", new ForecastDTO(2, 2), Duration.ofHours(2));
+
+        forecastCache.close();
+
+        assertEquals(1, forecastCache.getWriteBehind().getFailedCount());
+        assertEquals(2, redis.size());
+        assertEquals(List.of("cache-write-behind", "cache-write-behind"), writerThreads);
+    }
+
+    private void awaitFirstPipeline() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (mockingDetails(redisTemplate).getInvocations().stream()
+                .noneMatch(invocation -> invocation.getMethod().getName().equals("executePipelined"))) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    private void awaitQueueDrained() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (forecastCache.getWriteBehind().getQueued() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(0, forecastCache.getWriteBehind().getQueued());
+    }
+}
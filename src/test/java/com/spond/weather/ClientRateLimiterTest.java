@@ -0,0 +1,189 @@
+package com.spond.weather;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spond.weather.config.RateLimitFilter;
+import com.spond.weather.config.ReactiveRateLimitFilter;
+import com.spond.weather.config.WeatherProperties;
+import com.spond.weather.ratelimit.ClientRateLimiter;
+import com.spond.weather.ratelimit.ReactiveClientRateLimiter;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ClientRateLimiterTest {
+
+    private WeatherProperties properties;
+
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        properties = new WeatherProperties();
+        properties.getRateLimit().setEnabled(true);
+        properties.getRateLimit().setCapacity(3);
+        properties.getRateLimit().setRefillPerSecond(1);
+        redisTemplate = mock(RedisTemplate.class);
+    }
+
+    @Test
+    void testBurstIsAdmittedThenThrottledPerCaller() {
+
+        ClientRateLimiter rateLimiter = new ClientRateLimiter(redisTemplate, properties);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, rateLimiter.acquire("10.0.0.1"));
+        }
+
+        long retryAfter = rateLimiter.acquire("10.0.0.1");
+        assertTrue(retryAfter > 900 && retryAfter <= 1000, "retry after " + retryAfter);
+
+        // Other callers have their own bucket
+        assertEquals(0, rateLimiter.acquire("10.0.0.2"));
+        assertEquals(1, rateLimiter.getRejectedCount());
+        verifyNoInteractions(redisTemplate);
+    }
+
+    @Test
+    void testTokensAreRefilledOverTime() throws Exception {
+
+        properties.getRateLimit().setCapacity(1);
+        properties.getRateLimit().setRefillPerSecond(20);
+        ClientRateLimiter rateLimiter = new ClientRateLimiter(redisTemplate, properties);
+
+        assertEquals(0, rateLimiter.acquire("10.0.0.1"));
+        assertTrue(rateLimiter.acquire("10.0.0.1") > 0);
+
+        Thread.sleep(60);
+
+        assertEquals(0, rateLimiter.acquire("10.0.0.1"));
+    }
+
+    @Test
+    void testQuotaOverridesTheDefaultForOneCaller() {
+
+        WeatherProperties.Quota quota = new WeatherProperties.Quota();
+        quota.setCapacity(10);
+        quota.setRefillPerSecond(1);
+        properties.getRateLimit().getQuotas().put("partner", quota);
+        ClientRateLimiter rateLimiter = new ClientRateLimiter(redisTemplate, properties);
+
+        assertEquals(10, admitted(rateLimiter, "partner", 20));
+        assertEquals(3, admitted(rateLimiter, "10.0.0.1", 20));
+    }
+
+    @Test
+    void testThrottledRequestGets429BeforeTheController() throws Exception {
+
+        properties.getRateLimit().setClientIdHeader("X-Client-Id");
+        RateLimitFilter filter = new RateLimitFilter(new ClientRateLimiter(redisTemplate, properties), new ObjectMapper());
+        FilterChain chain = mock(FilterChain.class);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(200, filter(filter, chain, "/api/v1/forecast/" + i, "app-1").getStatus());
+        }
+
+        MockHttpServletResponse throttled = filter(filter, chain, "/api/v1/forecast/3", "app-1");
+
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS.value(), throttled.getStatus());
+        assertEquals("1", throttled.getHeader("Retry-After"));
+        assertTrue(throttled.getContentAsString().contains("Too Many Requests"));
+        verify(chain, times(3)).doFilter(any(), any());
+
+        // Identified by the header, not the shared address, and only the forecast endpoints are limited
+        assertEquals(200, filter(filter, chain, "/api/v1/forecast/4", "app-2").getStatus());
+        assertEquals(200, filter(filter, chain, "/actuator/health", "app-1").getStatus());
+    }
+
+    @Test
+    void testDistributedModeRefusesLocallyUntilTheNextToken() {
+
+        properties.getRateLimit().setDistributedEnabled(true);
+        AtomicInteger redisCalls = new AtomicInteger();
+        // Redis grants the first request, then the bucket is empty for 500 ms
+        when(redisTemplate.execute(any(), any(), any(), anyList(), any(String[].class)))
+                .thenAnswer(invocation -> redisCalls.incrementAndGet() == 1 ? 0L : 500L);
+        ClientRateLimiter rateLimiter = new ClientRateLimiter(redisTemplate, properties);
+
+        assertEquals(0, rateLimiter.acquire("10.0.0.1"));
+        assertTrue(rateLimiter.acquire("10.0.0.1") > 0);
+
+        for (int i = 0; i < 10; i++) {
+            long retryAfter = rateLimiter.acquire("10.0.0.1");
+            assertTrue(retryAfter > 0 && retryAfter <= 500, "retry after " + retryAfter);
+        }
+
+        assertEquals(2, redisCalls.get());
+        assertEquals(11, rateLimiter.getRejectedCount());
+    }
+
+    @Test
+    void testDistributedModeFallsBackToLocalBucketsWithoutRedis() {
+
+        properties.getRateLimit().setDistributedEnabled(true);
+        when(redisTemplate.execute(any(), any(), any(), anyList(), any(String[].class)))
+                .thenThrow(new RedisConnectionFailureException("down"));
+        ClientRateLimiter rateLimiter = new ClientRateLimiter(redisTemplate, properties);
+
+        assertEquals(3, admitted(rateLimiter, "10.0.0.1", 5));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testReactiveFilterAnswers429() {
+
+        ReactiveClientRateLimiter rateLimiter = new ReactiveClientRateLimiter(mock(ReactiveRedisTemplate.class),
+                new ClientRateLimiter(redisTemplate, properties));
+        ReactiveRateLimitFilter filter = new ReactiveRateLimitFilter(rateLimiter, new ObjectMapper());
+        AtomicInteger passed = new AtomicInteger();
+        WebFilterChain chain = exchange -> Mono.fromRunnable(passed::incrementAndGet);
+
+        MockServerWebExchange throttled = null;
+        for (int i = 0; i < 4; i++) {
+            throttled = MockServerWebExchange.from(MockServerHttpRequest.get("/api/v1/forecast/" + i)
+                    .remoteAddress(new InetSocketAddress("10.0.0.1", 50000)));
+            filter.filter(throttled, chain).block();
+        }
+
+        assertEquals(3, passed.get());
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, throttled.getResponse().getStatusCode());
+        assertEquals("1", throttled.getResponse().getHeaders().getFirst("Retry-After"));
+        assertTrue(throttled.getResponse().getBodyAsString().block().contains("Too Many Requests"));
+    }
+
+    private static int admitted(ClientRateLimiter rateLimiter, String client, int requests) {
+        int admitted = 0;
+        for (int i = 0; i < requests; i++) {
+            if (rateLimiter.acquire(client) == 0) {
+                admitted++;
+            }
+        }
+        return admitted;
+    }
+
+    private static MockHttpServletResponse filter(RateLimitFilter filter, FilterChain chain, String path, String clientId) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+        request.setRemoteAddr("10.0.0.1");
+        request.addHeader("X-Client-Id", clientId);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+}
@@ -0,0 +1,106 @@
+package com.spond.weather;
+
+import com.spond.weather.dto.ForecastDTO;
+import com.spond.weather.dto.ForecastSeries;
+import com.spond.weather.dto.ForecastWindow;
+import com.spond.weather.dto.LocationForecast;
+import com.spond.weather.util.ForecastAggregateIndex;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static com.spond.weather.util.ApplicationUtils.calculateAverageForeCastForEvent;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ForecastAggregateIndexTest {
+
+    @Test
+    void testMinAndMaxMatchEveryRange() {
+
+        Random random = new Random(42);
+        ForecastSeries series = series(random, 90);
+        ForecastAggregateIndex index = ForecastAggregateIndex.of(series);
+
+        for (int from = 0; from < series.size(); from++) {
+            for (int to = from + 1; to <= series.size(); to++) {
+                assertEquals(Arrays.stream(series.getAirTemperature(), from, to).min().getAsDouble(),
+                        index.min(ForecastAggregateIndex.Metric.AIR_TEMPERATURE, from, to));
+                assertEquals(Arrays.stream(series.getWindSpeed(), from, to).max().getAsDouble(),
+                        index.max(ForecastAggregateIndex.Metric.WIND_SPEED, from, to));
+            }
+        }
+    }
+
+    @Test
+    void testAveragesMatchTheSummationForEveryRange() {
+
+        Random random = new Random(7);
+        ForecastSeries series = series(random, 90);
+        ForecastAggregateIndex index = ForecastAggregateIndex.of(series);
+
+        for (int from = 0; from < series.size(); from++) {
+            for (int to = from + 1; to <= series.size(); to++) {
+                ForecastWindow window = ForecastWindow.range(from, to);
+                assertEquals(calculateAverageForeCastForEvent(series, window), index.averageForecast(series, window));
+            }
+        }
+    }
+
+    @Test
+    void testHalfwayAverageIsRoundedLikeTheSummation() {
+
+        // -6.05 exactly, but the summed doubles give just below it
+        ForecastSeries series = new ForecastSeries(new long[]{0, 3600}, new double[]{-30.0, 17.9}, new double[]{0.1, 0.2});
+
+        ForecastDTO forecast = ForecastAggregateIndex.of(series).averageForecast(series, ForecastWindow.range(0, 2));
+
+        assertEquals(calculateAverageForeCastForEvent(series, ForecastWindow.range(0, 2)), forecast);
+        assertEquals(-6.1, forecast.getAirTemperature());
+    }
+
+    @Test
+    void testValuesWithMoreDecimalsAreSummed() {
+
+        ForecastSeries series = new ForecastSeries(new long[]{0, 3600, 7200}, new double[]{1.04, 2.0, 3.0}, new double[]{0.5, 0.5, 0.5});
+        ForecastWindow window = ForecastWindow.range(0, 3);
+
+        assertEquals(new ForecastDTO(2.0, 0.5), ForecastAggregateIndex.of(series).averageForecast(series, window));
+    }
+
+    @Test
+    void testIndexIsBuiltWithTheLocationForecast() throws Exception {
+
+        LocationForecast location = new LocationForecast(series(new Random(1), 10), 1000L, -1L);
+        assertNotNull(location.getAggregateIndex());
+        assertSame(location.getAggregateIndex(), location.revalidated(2000L, -1L).getAggregateIndex());
+
+        // Not cached, and rebuilt once when the series is read back
+        GenericJackson2JsonRedisSerializer serializer = new GenericJackson2JsonRedisSerializer();
+        byte[] cached = serializer.serialize(location);
+        assertFalse(new String(cached, StandardCharsets.UTF_8).contains("aggregateIndex"));
+
+        LocationForecast read = (LocationForecast) serializer.deserialize(cached);
+        ForecastWindow window = ForecastWindow.range(0, 10);
+        assertEquals(location.getAggregateIndex().averageForecast(location.getSeries(), window),
+                read.getAggregateIndex().averageForecast(read.getSeries(), window));
+    }
+
+    // Hourly met.no style one decimal values
+    private static ForecastSeries series(Random random, int size) {
+
+        long[] epochSeconds = new long[size];
+        double[] airTemperature = new double[size];
+        double[] windSpeed = new double[size];
+
+        for (int i = 0; i < size; i++) {
+            epochSeconds[i] = 3600L * i;
+            airTemperature[i] = Math.round((random.nextDouble() * 65 - 30) * 10.0) / 10.0;
+            windSpeed[i] = Math.round(random.nextDouble() * 300) / 10.0;
+        }
+
+        return new ForecastSeries(epochSeconds, airTemperature, windSpeed);
+    }
+}
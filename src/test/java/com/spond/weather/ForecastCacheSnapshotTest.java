@@ -0,0 +1,283 @@
+package com.spond.weather;
+
+import com.spond.weather.cache.ForecastCache;
+import com.spond.weather.config.WeatherProperties;
+import com.spond.weather.dto.CacheStatsDTO;
+import com.spond.weather.dto.ForecastDTO;
+import com.spond.weather.service.ForecastCacheSnapshot;
+import com.spond.weather.service.WeatherForecastService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.DefaultApplicationArguments;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.web.client.RestTemplate;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ForecastCacheSnapshotTest {
+
+    private final String start = Instant.now().plus(1, ChronoUnit.DAYS).truncatedTo(ChronoUnit.HOURS).toString();
+
+    private final String end = Instant.now().plus(1, ChronoUnit.DAYS).truncatedTo(ChronoUnit.HOURS).plus(2, ChronoUnit.HOURS).toString();
+
+    // Five events at each of two locations
+    private final List<UUID> eventIds = List.of(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(),
+            UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID());
+
+    @TempDir
+    private Path directory;
+
+    private MetNoStubServer metNo;
+
+    private ExecutorService executor;
+
+    private WeatherProperties properties;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        metNo = new MetNoStubServer();
+        executor = Executors.newSingleThreadExecutor();
+
+        properties = new WeatherProperties();
+        properties.getMet().setBaseUrl(metNo.baseUrl());
+        properties.getSnapshot().setEnabled(true);
+        properties.getSnapshot().setPath(directory.resolve("forecast-cache.snapshot").toString());
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        metNo.close();
+    }
+
+    @Test
+    void testRestartedNodeWithAnEmptyRedisServesFromTheSnapshot() throws Exception {
+
+        Node before = new Node();
+        requestAll(before);
+        assertEquals(2, metNo.requestCount());
+        assertEquals(12, before.snapshot.save());
+
+        // New process, and Redis was flushed as well
+        Node after = new Node();
+        after.snapshot.run(new DefaultApplicationArguments());
+        after.snapshot.stop();
+        assertEquals(12, after.redis.size());
+
+        // Stopped again before serving anything, its last snapshot still has every entry
+        Node again = new Node();
+        again.snapshot.run(new DefaultApplicationArguments());
+        again.snapshot.stop();
+        assertEquals(12, again.redis.size());
+
+        requestAll(again);
+
+        CacheStatsDTO stats = again.forecastCache.stats();
+        assertEquals(2, metNo.requestCount());
+        assertEquals(10, stats.getLookups());
+        assertEquals(1.0, stats.getNearCacheHitRate());
+        assertEquals(0, stats.getMisses());
+    }
+
+    @Test
+    void testExpiredEntriesAreNotRestored() throws Exception {
+
+        properties.getCache().setEventTtl(Duration.ofMillis(300));
+        Node before = new Node();
+        requestAll(before);
+        assertEquals(12, before.snapshot.save());
+
+        Thread.sleep(400);
+
+        // Only the location timeseries are left, the events are computed again without met.no
+        Node after = new Node();
+        assertEquals(2, after.snapshot.load());
+        requestAll(after);
+
+        // Every event misses, then finds its location in the near cache
+        CacheStatsDTO stats = after.forecastCache.stats();
+        assertEquals(2, metNo.requestCount());
+        assertEquals(10, stats.getMisses());
+        assertEquals(10, stats.getNearCacheHits());
+    }
+
+    @Test
+    void testValuesAlreadyInRedisAreKept() throws Exception {
+
+        Node before = new Node();
+        requestAll(before);
+        before.snapshot.save();
+
+        // Another node has written a newer forecast since the snapshot
+        Node after = new Node();
+        after.redis.put("EventID:" + eventIds.get(0), new ForecastDTO(-5.0, 12.0), Duration.ofMinutes(1));
+
+        assertEquals(11, after.snapshot.load());
+        assertEquals(Optional.of(new ForecastDTO(-5.0, 12.0)),
+                after.service.getWeatherForecast(eventIds.get(0), 60.10, 9.58, start, end));
+    }
+
+    @Test
+    void testHotEventsAreSavedWithRefreshDisabled() throws Exception {
+
+        properties.getRefresh().setEnabled(false);
+        Node node = new Node();
+        requestAll(node);
+
+        assertEquals(12, node.snapshot.save());
+    }
+
+    @Test
+    void testNothingToSaveKeepsThePreviousSnapshot() throws Exception {
+
+        Node before = new Node();
+        requestAll(before);
+        before.snapshot.save();
+
+        // Neither traffic nor a snapshot it loaded itself, as after a start against a missing file
+        Node idle = new Node();
+        assertEquals(0, idle.snapshot.save());
+
+        assertEquals(12, new Node().snapshot.load());
+    }
+
+    @Test
+    void testUnreadableSnapshotStartsCold() throws Exception {
+
+        Files.write(Path.of(properties.getSnapshot().getPath()), new byte[]{0x57, 0x46, 0x43});
+
+        Node node = new Node();
+
+        assertEquals(0, node.snapshot.load());
+        assertTrue(node.redis.isEmpty());
+    }
+
+    @Test
+    void testRestartedApplicationRestoresTheSnapshotBeforeItIsReady() throws Exception {
+
+        // Slow Redis writes, so entries are still queued behind the write-behind when the context closes
+        InMemoryRedis firstRedis = new InMemoryRedis();
+        when(firstRedis.getTemplate().executePipelined(any(SessionCallback.class))).thenAnswer(invocation -> {
+            if (Thread.currentThread().getName().equals("cache-write-behind")) {
+                Thread.sleep(300);
+            }
+            return firstRedis.pipeline(invocation.getArgument(0));
+        });
+
+        try (ConfigurableApplicationContext first = startApplication(firstRedis, new AtomicInteger())) {
+            WeatherForecastService service = first.getBean(WeatherForecastService.class);
+            for (int i = 0; i < eventIds.size(); i++) {
+                assertTrue(service.getWeatherForecast(eventIds.get(i), i < 5 ? 60.10 : 59.91, i < 5 ? 9.58 : 10.75, start, end).isPresent());
+            }
+        }
+        // The queue was flushed before the last snapshot read Redis
+        assertEquals(12, firstRedis.size());
+
+        // New process, and Redis was flushed as well
+        InMemoryRedis secondRedis = new InMemoryRedis();
+        AtomicInteger restoredWhenReady = new AtomicInteger(-1);
+
+        try (ConfigurableApplicationContext second = startApplication(secondRedis, restoredWhenReady)) {
+            assertEquals(12, restoredWhenReady.get());
+
+            WeatherForecastService service = second.getBean(WeatherForecastService.class);
+            for (int i = 0; i < eventIds.size(); i++) {
+                assertTrue(service.getWeatherForecast(eventIds.get(i), i < 5 ? 60.10 : 59.91, i < 5 ? 9.58 : 10.75, start, end).isPresent());
+            }
+        }
+        assertEquals(2, metNo.requestCount());
+    }
+
+    // The application on the given Redis, recording how many entries Redis holds once it reports ready
+    private ConfigurableApplicationContext startApplication(InMemoryRedis redis, AtomicInteger entriesWhenReady) {
+        return new SpringApplicationBuilder(WeatherForecastServiceApplication.class, InMemoryRedisConfig.class)
+                .web(WebApplicationType.NONE)
+                .initializers(context -> context.getBeanFactory().registerSingleton("inMemoryRedis", redis))
+                .listeners((ApplicationListener<ApplicationEvent>) event -> {
+                    if (event instanceof AvailabilityChangeEvent<?> change && change.getState() == ReadinessState.ACCEPTING_TRAFFIC) {
+                        entriesWhenReady.set(redis.size());
+                    }
+                })
+                .run("--spring.main.allow-bean-definition-overriding=true",
+                        "--spring.data.redis.repositories.enabled=false",
+                        "--weather.met.base-url=" + metNo.baseUrl(),
+                        "--weather.refresh.enabled=false",
+                        "--weather.write-behind.enabled=true",
+                        "--weather.snapshot.enabled=true",
+                        "--weather.snapshot.path=" + properties.getSnapshot().getPath());
+    }
+
+    private void requestAll(Node node) {
+        for (int i = 0; i < eventIds.size(); i++) {
+            assertTrue(i < 5
+                    ? node.service.getWeatherForecast(eventIds.get(i), 60.10, 9.58, start, end).isPresent()
+                    : node.service.getWeatherForecast(eventIds.get(i), 59.91, 10.75, start, end).isPresent());
+        }
+    }
+
+    /**
+     * Replaces the Redis beans of the application with an {@link InMemoryRedis} registered in the context.
+     */
+    @TestConfiguration
+    static class InMemoryRedisConfig {
+
+        @Bean
+        RedisTemplate<String, Object> redisTemplate(InMemoryRedis inMemoryRedis) {
+            return inMemoryRedis.getTemplate();
+        }
+
+        @Bean
+        RedisMessageListenerContainer nearCacheInvalidationContainer() {
+            return mock(RedisMessageListenerContainer.class);
+        }
+    }
+
+    /**
+     * One service instance with its own in-memory Redis.
+     */
+    private class Node {
+
+        private final InMemoryRedis redis;
+
+        private final ForecastCache forecastCache;
+
+        private final WeatherForecastService service;
+
+        private final ForecastCacheSnapshot snapshot;
+
+        Node() {
+            ForecastServiceFixture fixture = new ForecastServiceFixture(properties, new RestTemplate(), executor);
+            redis = fixture.redis;
+            forecastCache = fixture.forecastCache;
+            service = fixture.service;
+            snapshot = new ForecastCacheSnapshot(forecastCache, fixture.accessTracker, properties);
+        }
+    }
+}
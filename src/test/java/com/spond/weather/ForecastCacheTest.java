@@ -0,0 +1,82 @@
+package com.spond.weather;
+
+import com.spond.weather.cache.ForecastCache;
+import com.spond.weather.config.WeatherProperties;
+import com.spond.weather.dto.CacheStatsDTO;
+import com.spond.weather.dto.ForecastDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ForecastCacheTest {
+
+    private final GenericJackson2JsonRedisSerializer serializer = new GenericJackson2JsonRedisSerializer();
+
+    private final InMemoryRedis redis = new InMemoryRedis();
+
+    private ForecastCache forecastCache;
+
+    @BeforeEach
+    void setUp() {
+        doReturn(serializer).when(redis.getTemplate()).getValueSerializer();
+        forecastCache = new ForecastCache(redis.getTemplate(), new WeatherProperties());
+    }
+
+    @Test
+    void testRepeatReadsAreServedFromNearCache() {
+
+        redis.put("EventID:1", new ForecastDTO(10.0, 5.0), Duration.ofHours(2));
+
+        assertEquals(new ForecastDTO(10.0, 5.0), forecastCache.get("EventID:1"));
+        assertEquals(new ForecastDTO(10.0, 5.0), forecastCache.get("EventID:1"));
+        assertNull(forecastCache.get("EventID:2"));
+
+        // The value and its expiry in one round trip, for each key that missed the near cache
+        verify(redis.getTemplate(), times(2)).executePipelined(any(SessionCallback.class));
+
+        CacheStatsDTO stats = forecastCache.stats();
+        assertEquals(3, stats.getLookups());
+        assertEquals(1, stats.getNearCacheHits());
+        assertEquals(1, stats.getRedisHits());
+        assertEquals(1, stats.getMisses());
+        assertEquals(0.5, stats.getRedisHitRate());
+    }
+
+    @Test
+    void testNearCacheCopyExpiresWithTheRedisEntry() {
+
+        redis.put("EventID:1", new ForecastDTO(10.0, 5.0), Duration.ofSeconds(2));
+        redis.put("EventID:2", new ForecastDTO(10.0, 5.0), Duration.ofSeconds(3));
+        redis.put("EventID:3", new ForecastDTO(10.0, 5.0), Duration.ofHours(2));
+
+        forecastCache.get("EventID:1");
+        forecastCache.getAll(List.of("EventID:2", "EventID:3"));
+
+        // Not the minute of the near cache, no node serves the entry after Redis dropped it
+        assertTrue(forecastCache.nearExpiresIn("EventID:1").compareTo(Duration.ofSeconds(2)) <= 0);
+        assertTrue(forecastCache.nearExpiresIn("EventID:2").compareTo(Duration.ofSeconds(3)) <= 0);
+        assertTrue(forecastCache.nearExpiresIn("EventID:3").compareTo(Duration.ofSeconds(3)) > 0);
+    }
+
+    @Test
+    void testInvalidationFromOtherNodeDropsNearCacheEntry() {
+
+        forecastCache.put("EventID:1", new ForecastDTO(10.0, 5.0), Duration.ofHours(2));
+        assertNotNull(forecastCache.get("EventID:1"));
+
+        // The other node overwrites the entry in Redis and tells everyone to drop their copy
+        redis.put("EventID:1", new ForecastDTO(11.0, 4.0), Duration.ofHours(2));
+        forecastCache.onMessage(new DefaultMessage(new byte[0], serializer.serialize("other-node|EventID:1")), null);
+
+        assertEquals(new ForecastDTO(11.0, 4.0), forecastCache.get("EventID:1"));
+    }
+}
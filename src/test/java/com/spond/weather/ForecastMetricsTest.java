@@ -0,0 +1,97 @@
+package com.spond.weather;
+
+import com.spond.weather.config.WeatherProperties;
+import com.spond.weather.service.WeatherForecastService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ForecastMetricsTest {
+
+    private final String start = Instant.now().plus(1, ChronoUnit.DAYS).truncatedTo(ChronoUnit.HOURS).toString();
+
+    private final String end = Instant.now().plus(1, ChronoUnit.DAYS).truncatedTo(ChronoUnit.HOURS).plus(2, ChronoUnit.HOURS).toString();
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private MetNoStubServer metNo;
+
+    private ExecutorService executor;
+
+    private WeatherForecastService weatherService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        metNo = new MetNoStubServer();
+
+        WeatherProperties properties = new WeatherProperties();
+        properties.getMet().setBaseUrl(metNo.baseUrl());
+        executor = Executors.newSingleThreadExecutor();
+
+        weatherService = new ForecastServiceFixture(properties, new RestTemplate(), executor, new InMemoryRedis(), registry).service;
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        metNo.close();
+    }
+
+    @Test
+    void testCacheOutcomesAndStagesAreRecorded() {
+
+        UUID eventId = UUID.randomUUID();
+
+        weatherService.getWeatherForecast(eventId, 59.9139, 10.7522, start, end);
+        // Same location, another event
+        weatherService.getWeatherForecast(UUID.randomUUID(), 59.9139, 10.7522, start, end);
+        weatherService.getWeatherForecast(eventId, 59.9139, 10.7522, start, end);
+
+        assertEquals(1, cacheRequests("event", "hit"));
+        assertEquals(2, cacheRequests("event", "miss"));
+        assertEquals(1, cacheRequests("location", "hit"));
+        assertEquals(1, cacheRequests("location", "miss"));
+
+        // Every lookup is timed, parsing once per met.no body, filtering once per computed forecast
+        assertEquals(5, stageCount("cache_lookup"));
+        assertEquals(1, stageCount("parse"));
+        assertEquals(2, stageCount("filter"));
+        assertEquals(2, stageCount("aggregate"));
+
+        assertEquals(1, registry.get("weather.met.requests").tag("status", "200").timer().count());
+        assertEquals(1, registry.get("weather.met.payload.size").summary().count());
+        assertTrue(registry.get("weather.met.payload.size").summary().totalAmount() > 10_000);
+        assertEquals(0, registry.get("weather.met.in.flight").gauge().value());
+    }
+
+    @Test
+    void testUpstreamErrorsAreCountedByStatus() {
+
+        metNo.setErrorStatus(503);
+
+        assertThrows(RuntimeException.class, () -> weatherService.getWeatherForecast(UUID.randomUUID(), 59.9139, 10.7522, start, end));
+
+        assertEquals(1, registry.get("weather.met.requests").tag("status", "503").timer().count());
+        assertEquals(1, cacheRequests("location", "miss"));
+        assertEquals(0, registry.get("weather.met.payload.size").summary().count());
+        assertEquals(0, registry.get("weather.met.in.flight").gauge().value());
+    }
+
+    private double cacheRequests(String cache, String result) {
+        return registry.get("weather.cache.requests").tag("cache", cache).tag("result", result).counter().count();
+    }
+
+    private long stageCount(String stage) {
+        return registry.get("weather.forecast.stage").tag("stage", stage).timer().count();
+    }
+}
@@ -0,0 +1,135 @@
+package com.spond.weather;
+
+import com.spond.weather.config.WeatherProperties;
+import com.spond.weather.service.ForecastAccessTracker;
+import com.spond.weather.service.ForecastRefreshScheduler;
+import com.spond.weather.service.WeatherForecastService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ForecastRefreshSchedulerTest {
+
+    private final String start = Instant.now().plus(1, ChronoUnit.DAYS).truncatedTo(ChronoUnit.HOURS).toString();
+
+    private final String end = Instant.now().plus(1, ChronoUnit.DAYS).truncatedTo(ChronoUnit.HOURS).plus(2, ChronoUnit.HOURS).toString();
+
+    private MetNoStubServer metNo;
+
+    private ExecutorService executor;
+
+    private WeatherProperties properties;
+
+    private ForecastAccessTracker accessTracker;
+
+    private WeatherForecastService weatherService;
+
+    private ForecastRefreshScheduler refreshScheduler;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        metNo = new MetNoStubServer();
+
+        properties = new WeatherProperties();
+        properties.getMet().setBaseUrl(metNo.baseUrl());
+        executor = Executors.newFixedThreadPool(8);
+        ForecastServiceFixture fixture = new ForecastServiceFixture(properties, new RestTemplate(), executor);
+        accessTracker = fixture.accessTracker;
+        weatherService = fixture.service;
+        refreshScheduler = new ForecastRefreshScheduler(weatherService, fixture.forecastCache, accessTracker, properties, executor);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        metNo.close();
+    }
+
+    @Test
+    void testHotEventIsRefreshedBeforeExpiry() {
+
+        // Expires within the refresh-ahead window of 5 minutes
+        metNo.setFreshness(Duration.ofMinutes(2));
+
+        UUID hotEvent = UUID.randomUUID();
+        for (int i = 0; i < 3; i++) {
+            weatherService.getWeatherForecast(hotEvent, 60.10, 9.58, start, end);
+        }
+        weatherService.getWeatherForecast(UUID.randomUUID(), 59.91, 10.75, start, end);
+
+        assertEquals(1, refreshScheduler.refreshHotKeys());
+
+        // Only the hot location is revalidated, and it is unchanged on met.no
+        assertEquals(3, metNo.requestCount());
+        assertEquals(2, metNo.bodyTransferCount());
+        assertTrue(accessTracker.hotEvents(1).get(0).getExpiresAt() > System.currentTimeMillis() + Duration.ofHours(1).toMillis());
+    }
+
+    @Test
+    void testFreshHotEventIsNotRefreshed() {
+
+        metNo.setFreshness(Duration.ofMinutes(30));
+
+        UUID hotEvent = UUID.randomUUID();
+        for (int i = 0; i < 3; i++) {
+            weatherService.getWeatherForecast(hotEvent, 60.10, 9.58, start, end);
+        }
+
+        assertEquals(0, refreshScheduler.refreshHotKeys());
+        assertEquals(1, metNo.requestCount());
+    }
+
+    @Test
+    void testRefreshRespectsConcurrencyAndRateLimit() {
+
+        metNo.setFreshness(Duration.ofMinutes(2));
+        properties.getRefresh().setMaxConcurrent(2);
+        properties.getRefresh().setMaxPerSecond(20);
+
+        for (int location = 0; location < 12; location++) {
+            UUID hotEvent = UUID.randomUUID();
+            for (int i = 0; i < 3; i++) {
+                weatherService.getWeatherForecast(hotEvent, 60.0 + location, 9.58, start, end);
+            }
+        }
+
+        metNo.setLatency(Duration.ofMillis(100));
+        long started = System.nanoTime();
+
+        assertEquals(12, refreshScheduler.refreshHotKeys());
+
+        assertEquals(24, metNo.requestCount());
+        assertTrue(metNo.maxConcurrentRequests() <= 2);
+        // 12 upstream calls at 20 per second cannot start faster than 11 intervals of 50ms
+        assertTrue(System.nanoTime() - started >= TimeUnit.MILLISECONDS.toNanos(550));
+    }
+
+    @Test
+    void testAccessCountsDecay() {
+
+        UUID event = UUID.randomUUID();
+        for (int i = 0; i < 4; i++) {
+            weatherService.getWeatherForecast(event, 60.10, 9.58, start, end);
+        }
+
+        accessTracker.decay();
+        assertEquals(1, accessTracker.hotEvents(2).size());
+
+        accessTracker.decay();
+        assertEquals(0, accessTracker.hotEvents(2).size());
+
+        accessTracker.decay();
+        assertEquals(0, accessTracker.trackedCount());
+    }
+}
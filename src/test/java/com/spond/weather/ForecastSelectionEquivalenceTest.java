@@ -0,0 +1,170 @@
+package com.spond.weather;
+
+import com.spond.weather.dto.ForecastDTO;
+import com.spond.weather.dto.ForecastSeries;
+import com.spond.weather.dto.ForecastWindow;
+import com.spond.weather.dto.WeatherApiResponse;
+import com.spond.weather.util.ForecastAggregateIndex;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static com.spond.weather.util.ApplicationUtils.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Property based check that the binary search selection over the columnar series gives exactly the
+ * forecast the original list based implementation gave, for randomly generated series and events,
+ * averaged directly and through the aggregate index.
+ */
+class ForecastSelectionEquivalenceTest {
+
+    private static final int CASES = 5_000;
+
+    @Test
+    void testSelectionMatchesListBasedImplementation() {
+
+        Random random = new Random(20240827L);
+        Instant base = Instant.now().truncatedTo(ChronoUnit.HOURS).minus(2, ChronoUnit.DAYS);
+
+        for (int i = 0; i < CASES; i++) {
+            long seed = random.nextLong();
+            Random caseRandom = new Random(seed);
+
+            List<WeatherApiResponse.TimeSeries> timeseries = randomTimeseries(caseRandom, base);
+            Instant eventStart = randomEventStart(caseRandom, base);
+            Instant eventEnd = eventStart.plusSeconds(randomDuration(caseRandom));
+
+            ForecastDTO expected = LegacyForecastProcessing.forecast(timeseries, eventStart.toString(), eventEnd.toString());
+
+            ForecastSeries series = mapResponseToSeries(response(timeseries));
+            ForecastWindow window = filterWeatherData(series, eventStart.toString(), eventEnd.toString());
+            ForecastDTO actual = calculateAverageForeCastForEvent(series, window);
+
+            assertEquals(expected, actual, "seed " + seed + ", event " + eventStart + " - " + eventEnd);
+            assertEquals(expected, ForecastAggregateIndex.of(series).averageForecast(series, window),
+                    "index, seed " + seed + ", event " + eventStart + " - " + eventEnd);
+        }
+    }
+
+    private static Instant randomEventStart(Random random, Instant base) {
+        return switch (random.nextInt(3)) {
+            // Half hour aligned starts land exactly between hourly entries
+            case 0 -> base.plusSeconds(1800L * random.nextInt(12 * 48));
+            case 1 -> base.plusSeconds(random.nextInt(12 * 24 * 3600));
+            default -> base.plusSeconds(random.nextInt(12 * 24 * 3600)).plusNanos(random.nextInt(1_000_000_000));
+        };
+    }
+
+    private static long randomDuration(Random random) {
+        return switch (random.nextInt(10)) {
+            // End before start, the selection still has to fall back to the closest entries
+            case 0 -> -random.nextInt(3600);
+            case 1, 2, 3, 4 -> 1800L * random.nextInt(3);
+            default -> random.nextInt(30 * 3600);
+        };
+    }
+
+    private static List<WeatherApiResponse.TimeSeries> randomTimeseries(Random random, Instant base) {
+
+        List<WeatherApiResponse.TimeSeries> timeseries = new ArrayList<>();
+        Instant time = base.plusSeconds(3600L * random.nextInt(48));
+        int size = random.nextInt(120);
+
+        for (int i = 0; i < size; i++) {
+            // met.no steps are hourly then 6-hourly, occasionally repeat a timestamp
+            int step = random.nextInt(20) == 0 ? 0 : (random.nextBoolean() ? 1 : 6);
+            time = time.plusSeconds(3600L * step);
+            timeseries.add(timeSeries(time.toString(), value(random, -30, 35), value(random, 0, 30)));
+        }
+        return timeseries;
+    }
+
+    private static double value(Random random, int min, int max) {
+        // Mostly met.no style one decimal values, sometimes arbitrary doubles
+        double value = min + random.nextDouble() * (max - min);
+        return random.nextInt(5) == 0 ? value : Math.round(value * 10.0) / 10.0;
+    }
+
+    private static WeatherApiResponse.TimeSeries timeSeries(String time, double airTemperature, double windSpeed) {
+        WeatherApiResponse.TemperatureDetails details = new WeatherApiResponse.TemperatureDetails();
+        details.setAir_temperature(airTemperature);
+        details.setWind_speed(windSpeed);
+        WeatherApiResponse.InstantDetails instant = new WeatherApiResponse.InstantDetails();
+        instant.setDetails(details);
+        WeatherApiResponse.Data data = new WeatherApiResponse.Data();
+        data.setInstant(instant);
+        WeatherApiResponse.TimeSeries timeSeries = new WeatherApiResponse.TimeSeries();
+        timeSeries.setTime(time);
+        timeSeries.setData(data);
+        return timeSeries;
+    }
+
+    private static WeatherApiResponse response(List<WeatherApiResponse.TimeSeries> timeseries) {
+        WeatherApiResponse.Properties properties = new WeatherApiResponse.Properties();
+        properties.setTimeseries(new ArrayList<>(timeseries));
+        WeatherApiResponse response = new WeatherApiResponse();
+        response.setProperties(properties);
+        return response;
+    }
+
+    /**
+     * The original filter, closest lookup and averaging over List&lt;TimeSeries&gt;, kept as the
+     * reference the columnar implementation is checked against.
+     */
+    private static class LegacyForecastProcessing {
+
+        static ForecastDTO forecast(List<WeatherApiResponse.TimeSeries> timeseries, String startTimeStamp, String endTimeStamp) {
+
+            LocalDateTime startTime = LocalDateTime.ofInstant(Instant.parse(startTimeStamp), ZoneId.ofOffset("UTC", ZoneOffset.UTC));
+            LocalDateTime endTime = LocalDateTime.ofInstant(Instant.parse(endTimeStamp), ZoneId.ofOffset("UTC", ZoneOffset.UTC));
+
+            LocalDateTime maxAllowedDate = LocalDateTime.now().plusDays(7);
+
+            List<WeatherApiResponse.TimeSeries> filteredData = new ArrayList<>(timeseries.stream()
+                    .filter(data -> {
+                        LocalDateTime forecastTime = LocalDateTime.ofInstant(Instant.parse(data.getTime()), ZoneId.ofOffset("UTC", ZoneOffset.UTC));
+                        return (forecastTime.isAfter(startTime) || forecastTime.isEqual(startTime)) &&
+                                (forecastTime.isBefore(endTime) || forecastTime.isEqual(endTime)) &&
+                                forecastTime.isBefore(maxAllowedDate);
+                    })
+                    .toList());
+
+            if (filteredData.isEmpty()) {
+                filteredData.addAll(findClosestForecast(timeseries, startTime, maxAllowedDate));
+                filteredData.addAll(findClosestForecast(timeseries, endTime, maxAllowedDate));
+            }
+
+            double avgAirTemperature = filteredData.stream()
+                    .mapToDouble(data -> data.getData().getInstant().getDetails().getAir_temperature())
+                    .average()
+                    .orElse(0.0);
+
+            double avgWindSpeed = filteredData.stream()
+                    .mapToDouble(data -> data.getData().getInstant().getDetails().getWind_speed())
+                    .average()
+                    .orElse(0.0);
+
+            return new ForecastDTO(Math.round(avgAirTemperature * 10.0) / 10.0, Math.round(avgWindSpeed * 10.0) / 10.0);
+        }
+
+        private static List<WeatherApiResponse.TimeSeries> findClosestForecast(List<WeatherApiResponse.TimeSeries> timeSeriesList, LocalDateTime eventTime, LocalDateTime maxAllowedDate) {
+            return timeSeriesList.stream()
+                    .filter(data -> LocalDateTime.ofInstant(Instant.parse(data.getTime()), ZoneId.ofOffset("UTC", ZoneOffset.UTC)).isBefore(maxAllowedDate))
+                    .sorted(Comparator.comparing(data -> {
+                        LocalDateTime forecastTime = LocalDateTime.ofInstant(Instant.parse(data.getTime()), ZoneId.ofOffset("UTC", ZoneOffset.UTC));
+                        return Math.abs(forecastTime.toEpochSecond(ZoneOffset.UTC) - eventTime.toEpochSecond(ZoneOffset.UTC));
+                    }))
+                    .limit(1)
+                    .toList();
+        }
+    }
+}
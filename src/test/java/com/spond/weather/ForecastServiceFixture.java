@@ -0,0 +1,65 @@
+package com.spond.weather;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spond.weather.cache.ForecastCache;
+import com.spond.weather.config.WeatherProperties;
+import com.spond.weather.metrics.ForecastMetrics;
+import com.spond.weather.resilience.MetNoGuard;
+import com.spond.weather.service.ForecastAccessTracker;
+import com.spond.weather.service.InFlightRequestRegistry;
+import com.spond.weather.service.MetNoClient;
+import com.spond.weather.service.WeatherForecastService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Clock;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * The blocking forecast service wired by hand the way the application context wires it, on an
+ * {@link InMemoryRedis}. Built from the properties as they are when it is created: the near cache
+ * and the met.no guard read theirs only once.
+ */
+class ForecastServiceFixture {
+
+    final InMemoryRedis redis;
+
+    final WeatherProperties properties;
+
+    final ForecastMetrics metrics;
+
+    final MetNoGuard guard;
+
+    final MetNoClient metNoClient;
+
+    final ForecastCache forecastCache;
+
+    final InFlightRequestRegistry registry;
+
+    final ForecastAccessTracker accessTracker;
+
+    final WeatherForecastService service;
+
+    ForecastServiceFixture(WeatherProperties properties, RestTemplate restTemplate, ExecutorService executor) {
+        this(properties, restTemplate, executor, new InMemoryRedis(), new SimpleMeterRegistry());
+    }
+
+    ForecastServiceFixture(WeatherProperties properties, RestTemplate restTemplate, ExecutorService executor,
+                           InMemoryRedis redis, MeterRegistry meterRegistry) {
+        this(properties, restTemplate, executor, redis, meterRegistry, Clock.systemUTC());
+    }
+
+    ForecastServiceFixture(WeatherProperties properties, RestTemplate restTemplate, ExecutorService executor,
+                           InMemoryRedis redis, MeterRegistry meterRegistry, Clock clock) {
+        this.redis = redis;
+        this.properties = properties;
+        this.metrics = new ForecastMetrics(meterRegistry);
+        this.guard = new MetNoGuard(properties);
+        this.metNoClient = new MetNoClient(restTemplate, new ObjectMapper(), properties, metrics, guard);
+        this.forecastCache = new ForecastCache(redis.getTemplate(), properties);
+        this.registry = new InFlightRequestRegistry(redis.getTemplate(), properties);
+        this.accessTracker = new ForecastAccessTracker(properties);
+        this.service = new WeatherForecastService(metNoClient, forecastCache, properties, registry, executor, accessTracker, metrics, clock);
+    }
+}
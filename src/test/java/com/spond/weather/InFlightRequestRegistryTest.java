@@ -0,0 +1,162 @@
+package com.spond.weather;
+
+import com.spond.weather.config.WeatherProperties;
+import com.spond.weather.dto.ForecastDTO;
+import com.spond.weather.service.InFlightRequestRegistry;
+import com.spond.weather.service.WeatherForecastService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.web.client.ResponseExtractor;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class InFlightRequestRegistryTest {
+
+    private static final int CALLERS = 64;
+
+    private final AtomicInteger upstreamCalls = new AtomicInteger();
+
+    private final CountDownLatch releaseUpstream = new CountDownLatch(1);
+
+    private ExecutorService executor;
+
+    private WeatherForecastService weatherService;
+
+    private InFlightRequestRegistry registry;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        executor = Executors.newFixedThreadPool(CALLERS);
+
+        byte[] body = getClass().getClassLoader().getResourceAsStream("met_response.json").readAllBytes();
+
+        RestTemplate restTemplate = mock(RestTemplate.class);
+        when(restTemplate.execute(anyString(), eq(HttpMethod.GET), isNull(), any())).thenAnswer(invocation -> {
+            upstreamCalls.incrementAndGet();
+            // Hold the leader until every caller has missed the cache
+            releaseUpstream.await(10, TimeUnit.SECONDS);
+            return invocation.<ResponseExtractor<?>>getArgument(3).extractData(new MockClientHttpResponse(body, HttpStatus.OK));
+        });
+
+        ForecastServiceFixture fixture = new ForecastServiceFixture(new WeatherProperties(), restTemplate, executor);
+        registry = fixture.registry;
+        weatherService = fixture.service;
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testConcurrentMissesForSameEventFetchOnce() throws Exception {
+
+        UUID eventId = UUID.randomUUID();
+
+        List<ForecastDTO> results = runConcurrently(() -> eventId);
+
+        assertEquals(1, upstreamCalls.get());
+        assertEquals(CALLERS, results.size());
+        results.forEach(result -> assertEquals(results.get(0), result));
+        assertEquals(0, registry.inFlightCount());
+    }
+
+    @Test
+    void testConcurrentMissesForSameLocationFetchOnce() throws Exception {
+
+        List<ForecastDTO> results = runConcurrently(UUID::randomUUID);
+
+        assertEquals(1, upstreamCalls.get());
+        assertEquals(CALLERS, results.size());
+    }
+
+    @Test
+    void testFailureIsPropagatedToAllWaiters() throws Exception {
+
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch releaseLeader = new CountDownLatch(1);
+
+        Future<String> leader = executor.submit(() -> registry.<String>execute("key", () -> {
+            leaderStarted.countDown();
+            awaitQuietly(releaseLeader);
+            throw new IllegalStateException("upstream failed");
+        }));
+        leaderStarted.await();
+
+        Future<String> follower = executor.submit(() -> registry.execute("key", () -> "loaded by follower"));
+        Thread.sleep(200);
+        releaseLeader.countDown();
+
+        ExecutionException leaderError = assertThrows(ExecutionException.class, leader::get);
+        assertInstanceOf(IllegalStateException.class, leaderError.getCause());
+        assertThrows(ExecutionException.class, follower::get);
+    }
+
+    @Test
+    void testErrorIsPropagatedToAllWaiters() throws Exception {
+
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch releaseLeader = new CountDownLatch(1);
+
+        Future<String> leader = executor.submit(() -> registry.<String>execute("key", () -> {
+            leaderStarted.countDown();
+            awaitQuietly(releaseLeader);
+            throw new StackOverflowError();
+        }));
+        leaderStarted.await();
+
+        Future<String> follower = executor.submit(() -> registry.execute("key", () -> "loaded by follower"));
+        Thread.sleep(200);
+        releaseLeader.countDown();
+
+        assertInstanceOf(StackOverflowError.class, assertThrows(ExecutionException.class, leader::get).getCause());
+        ExecutionException followerError = assertThrows(ExecutionException.class, () -> follower.get(10, TimeUnit.SECONDS));
+        assertInstanceOf(StackOverflowError.class, followerError.getCause());
+        assertEquals(0, registry.inFlightCount());
+    }
+
+    private List<ForecastDTO> runConcurrently(Callable<UUID> eventIds) throws Exception {
+
+        CyclicBarrier startLine = new CyclicBarrier(CALLERS);
+        List<Future<ForecastDTO>> futures = new ArrayList<>();
+
+        for (int i = 0; i < CALLERS; i++) {
+            UUID eventId = eventIds.call();
+            futures.add(executor.submit(() -> {
+                startLine.await();
+                return weatherService.getWeatherForecast(eventId, 60.10, 9.58, "2024-08-27T14:00:00Z", "2024-08-27T16:00:00Z").orElseThrow();
+            }));
+        }
+
+        // Let the leader finish once the rest have had time to pile up behind it
+        Thread.sleep(200);
+        releaseUpstream.countDown();
+
+        List<ForecastDTO> results = new ArrayList<>();
+        for (Future<ForecastDTO> future : futures) {
+            results.add(future.get(10, TimeUnit.SECONDS));
+        }
+        return results;
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
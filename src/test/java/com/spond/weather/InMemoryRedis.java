@@ -0,0 +1,208 @@
+package com.spond.weather;
+
+import org.mockito.MockSettings;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveValueOperations;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ValueOperations;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Redis stand-in for tests that run the cache without a server: mocked templates backed by a map,
+ * with expiry. Covers the commands the service sends, directly and pipelined, and counts writes.
+ */
+class InMemoryRedis {
+
+    private final Map<String, Object> values = new ConcurrentHashMap<>();
+
+    // Epoch millis per key, absent for keys without expiry
+    private final Map<String, Long> expiries = new ConcurrentHashMap<>();
+
+    private final AtomicInteger writes = new AtomicInteger();
+
+    // Commands queued in a pipeline answer null, their results come back from executePipelined
+    private final ThreadLocal<List<Object>> pipelineResults = new ThreadLocal<>();
+
+    private final MockSettings mockSettings;
+
+    private final RedisTemplate<String, Object> template;
+
+    private final RedisOperations<String, Object> pipelineOperations;
+
+    InMemoryRedis() {
+        this(withSettings());
+    }
+
+    private InMemoryRedis(MockSettings mockSettings) {
+        this.mockSettings = mockSettings;
+        this.template = template();
+        this.pipelineOperations = pipelineOperations();
+    }
+
+    /**
+     * Mocks that do not record their invocations, for load tests. They cannot be verified.
+     */
+    static InMemoryRedis stubOnly() {
+        return new InMemoryRedis(withSettings().stubOnly());
+    }
+
+    RedisTemplate<String, Object> getTemplate() {
+        return template;
+    }
+
+    /**
+     * A reactive template over the same data.
+     */
+    @SuppressWarnings("unchecked")
+    ReactiveRedisTemplate<String, Object> reactiveTemplate() {
+
+        ReactiveRedisTemplate<String, Object> reactiveTemplate = mock(ReactiveRedisTemplate.class, mockSettings);
+        ReactiveValueOperations<String, Object> valueOperations = mock(ReactiveValueOperations.class, mockSettings);
+        when(reactiveTemplate.opsForValue()).thenReturn(valueOperations);
+        when(reactiveTemplate.convertAndSend(anyString(), any())).thenReturn(Mono.just(0L));
+        when(reactiveTemplate.getExpire(anyString())).thenAnswer(invocation -> Mono.defer(() -> {
+            long remaining = remainingMillis(invocation.getArgument(0));
+            return remaining == -2 ? Mono.empty() : Mono.just(remaining == -1 ? Duration.ZERO : Duration.ofMillis(remaining));
+        }));
+        when(valueOperations.get(anyString())).thenAnswer(invocation ->
+                Mono.fromSupplier(() -> get(invocation.getArgument(0))));
+        when(valueOperations.set(anyString(), any(), any(Duration.class))).thenAnswer(invocation ->
+                Mono.fromSupplier(() -> {
+                    put(invocation.getArgument(0), invocation.getArgument(1), invocation.getArgument(2));
+                    return true;
+                }));
+
+        return reactiveTemplate;
+    }
+
+    Object get(String key) {
+        Long expiresAt = expiries.get(key);
+        if (expiresAt != null && expiresAt <= System.currentTimeMillis()) {
+            values.remove(key);
+            expiries.remove(key);
+            return null;
+        }
+        return values.get(key);
+    }
+
+    void put(String key, Object value, Duration ttl) {
+        writes.incrementAndGet();
+        values.put(key, value);
+        expiries.put(key, System.currentTimeMillis() + ttl.toMillis());
+    }
+
+    boolean containsKey(String key) {
+        return get(key) != null;
+    }
+
+    int size() {
+        return (int) values.keySet().stream().filter(this::containsKey).count();
+    }
+
+    boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Number of values written by SET or a successful SET NX.
+     */
+    int writeCount() {
+        return writes.get();
+    }
+
+    /**
+     * Runs the callback against the pipelined operations and returns the result of each command,
+     * what {@link RedisTemplate#executePipelined(SessionCallback)} does. For tests that replace
+     * the pipeline answer, to delay or fail it, and still want the commands applied.
+     */
+    List<Object> pipeline(SessionCallback<?> callback) {
+        List<Object> results = new ArrayList<>();
+        pipelineResults.set(results);
+        try {
+            callback.execute(pipelineOperations);
+        } finally {
+            pipelineResults.remove();
+        }
+        return results;
+    }
+
+    // Milliseconds the key has left, -2 when it does not exist and -1 when it never expires
+    long remainingMillis(String key) {
+        if (!containsKey(key)) {
+            return -2;
+        }
+        Long expiresAt = expiries.get(key);
+        return expiresAt == null ? -1 : Math.max(expiresAt - System.currentTimeMillis(), 0);
+    }
+
+    private boolean putIfAbsent(String key, Object value, Duration ttl) {
+        if (containsKey(key)) {
+            return false;
+        }
+        put(key, value, ttl);
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private RedisTemplate<String, Object> template() {
+
+        RedisTemplate<String, Object> redisTemplate = mock(RedisTemplate.class, mockSettings);
+        ValueOperations<String, Object> valueOperations = mock(ValueOperations.class, mockSettings);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get(anyString())).thenAnswer(invocation -> get(invocation.getArgument(0)));
+        when(valueOperations.multiGet(anyList())).thenAnswer(invocation ->
+                invocation.<List<String>>getArgument(0).stream().map(this::get).toList());
+        doAnswer(invocation -> {
+            put(invocation.getArgument(0), invocation.getArgument(1), duration(invocation.getArgument(2), invocation.getArgument(3)));
+            return null;
+        }).when(valueOperations).set(anyString(), any(), anyLong(), any(TimeUnit.class));
+        when(valueOperations.setIfAbsent(anyString(), any(), anyLong(), any(TimeUnit.class))).thenAnswer(invocation ->
+                putIfAbsent(invocation.getArgument(0), invocation.getArgument(1), duration(invocation.getArgument(2), invocation.getArgument(3))));
+        when(redisTemplate.hasKey(anyString())).thenAnswer(invocation -> containsKey(invocation.getArgument(0)));
+        when(redisTemplate.executePipelined(any(SessionCallback.class))).thenAnswer(invocation -> pipeline(invocation.getArgument(0)));
+
+        return redisTemplate;
+    }
+
+    @SuppressWarnings("unchecked")
+    private RedisOperations<String, Object> pipelineOperations() {
+
+        RedisOperations<String, Object> operations = mock(RedisOperations.class, mockSettings);
+        ValueOperations<String, Object> valueOperations = mock(ValueOperations.class, mockSettings);
+        when(operations.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get(anyString())).thenAnswer(invocation -> queued(get(invocation.getArgument(0))));
+        doAnswer(invocation -> {
+            put(invocation.getArgument(0), invocation.getArgument(1), duration(invocation.getArgument(2), invocation.getArgument(3)));
+            return queued(true);
+        }).when(valueOperations).set(anyString(), any(), anyLong(), any(TimeUnit.class));
+        when(valueOperations.setIfAbsent(anyString(), any(), anyLong(), any(TimeUnit.class))).thenAnswer(invocation ->
+                queued(putIfAbsent(invocation.getArgument(0), invocation.getArgument(1), duration(invocation.getArgument(2), invocation.getArgument(3)))));
+        when(operations.getExpire(anyString(), eq(TimeUnit.MILLISECONDS))).thenAnswer(invocation ->
+                queued(remainingMillis(invocation.getArgument(0))));
+        when(operations.convertAndSend(anyString(), any())).thenAnswer(invocation -> queued(0L));
+
+        return operations;
+    }
+
+    private <T> T queued(Object result) {
+        pipelineResults.get().add(result);
+        return null;
+    }
+
+    private static Duration duration(long amount, TimeUnit unit) {
+        return Duration.ofMillis(unit.toMillis(amount));
+    }
+}
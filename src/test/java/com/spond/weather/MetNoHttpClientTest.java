@@ -0,0 +1,116 @@
+package com.spond.weather;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spond.weather.config.AppConfig;
+import com.spond.weather.config.WeatherProperties;
+import com.spond.weather.dto.ForecastDTO;
+import com.spond.weather.metrics.ForecastMetrics;
+import com.spond.weather.resilience.MetNoGuard;
+import com.spond.weather.service.MetNoClient;
+import com.spond.weather.service.WeatherForecastService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetNoHttpClientTest {
+
+    private final String start = Instant.now().plus(1, ChronoUnit.DAYS).truncatedTo(ChronoUnit.HOURS).toString();
+
+    private final String end = Instant.now().plus(1, ChronoUnit.DAYS).truncatedTo(ChronoUnit.HOURS).plus(2, ChronoUnit.HOURS).toString();
+
+    private MetNoStubServer metNo;
+
+    private CloseableHttpClient httpClient;
+
+    private ExecutorService executor;
+
+    private WeatherProperties properties;
+
+    private RestTemplate restTemplate;
+
+    private MetNoClient metNoClient;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        metNo = new MetNoStubServer();
+
+        properties = new WeatherProperties();
+        properties.getMet().setBaseUrl(metNo.baseUrl());
+        AppConfig appConfig = new AppConfig();
+        httpClient = appConfig.metNoHttpClient(appConfig.metNoConnectionManager(properties), properties);
+        restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+        metNoClient = new MetNoClient(restTemplate, new ObjectMapper(), properties, new ForecastMetrics(new SimpleMeterRegistry()), new MetNoGuard(properties));
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        executor.shutdownNow();
+        httpClient.close();
+        metNo.close();
+    }
+
+    @Test
+    void testPooledClientReusesConnectionAndRequestsGzip() {
+
+        for (int i = 0; i < 20; i++) {
+            assertTrue(metNoClient.fetch(60.10, 9.58).series().size() > 0);
+        }
+
+        assertEquals(20, metNo.requestCount());
+        assertEquals(1, metNo.connectionCount());
+        assertEquals(20, metNo.gzipTransferCount());
+    }
+
+    @Test
+    void testExpiredLocationIsRevalidatedWithoutDownloadingBody() {
+
+        // Every response expires immediately, so each new event revalidates its location
+        metNo.setFreshness(Duration.ZERO);
+        properties.getCache().setLocationMinTtl(Duration.ZERO);
+        WeatherForecastService weatherService = weatherService();
+
+        ForecastDTO first = weatherService.getWeatherForecast(UUID.randomUUID(), 60.10, 9.58, start, end).orElseThrow();
+        ForecastDTO revalidated = weatherService.getWeatherForecast(UUID.randomUUID(), 60.10, 9.58, start, end).orElseThrow();
+
+        assertEquals(first, revalidated);
+        assertEquals(2, metNo.requestCount());
+        assertEquals(1, metNo.bodyTransferCount());
+
+        // A newer forecast on met.no is downloaded again
+        metNo.setLastModified(Instant.now());
+        weatherService.getWeatherForecast(UUID.randomUUID(), 60.10, 9.58, start, end);
+
+        assertEquals(3, metNo.requestCount());
+        assertEquals(2, metNo.bodyTransferCount());
+    }
+
+    @Test
+    void testFreshLocationIsNotRevalidated() {
+
+        metNo.setFreshness(Duration.ofMinutes(30));
+        WeatherForecastService weatherService = weatherService();
+
+        weatherService.getWeatherForecast(UUID.randomUUID(), 60.10, 9.58, start, end);
+        weatherService.getWeatherForecast(UUID.randomUUID(), 60.10, 9.58, start, end);
+
+        assertEquals(1, metNo.requestCount());
+    }
+
+    private WeatherForecastService weatherService() {
+        return new ForecastServiceFixture(properties, restTemplate, executor).service;
+    }
+}
@@ -0,0 +1,261 @@
+package com.spond.weather;
+
+import com.spond.weather.config.AppConfig;
+import com.spond.weather.config.WeatherProperties;
+import com.spond.weather.dto.ResolvedForecast;
+import com.spond.weather.metrics.ForecastMetrics;
+import com.spond.weather.resilience.MetNoGuard;
+import com.spond.weather.resilience.MetNoUnavailableException;
+import com.spond.weather.service.MetNoClient;
+import com.spond.weather.service.ReactiveMetNoClient;
+import com.spond.weather.service.WeatherForecastService;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetNoResilienceTest {
+
+    private final String start = Instant.now().plus(1, ChronoUnit.DAYS).truncatedTo(ChronoUnit.HOURS).toString();
+
+    private final String end = Instant.now().plus(1, ChronoUnit.DAYS).truncatedTo(ChronoUnit.HOURS).plus(2, ChronoUnit.HOURS).toString();
+
+    private MetNoStubServer metNo;
+
+    private CloseableHttpClient httpClient;
+
+    private ExecutorService executor;
+
+    private WeatherProperties properties;
+
+    private MetNoGuard guard;
+
+    private MetNoClient metNoClient;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        metNo = new MetNoStubServer();
+
+        properties = new WeatherProperties();
+        properties.getMet().setBaseUrl(metNo.baseUrl());
+
+        // Opens after four calls with at least half of them failing
+        properties.getResilience().setSlidingWindowSize(4);
+        properties.getResilience().setMinimumCalls(4);
+        properties.getResilience().setOpenDuration(Duration.ofMinutes(1));
+
+        executor = Executors.newFixedThreadPool(16);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        executor.shutdownNow();
+        if (httpClient != null) {
+            httpClient.close();
+        }
+        metNo.close();
+    }
+
+    @Test
+    void testOpenBreakerStopsCallingMetNoAndServesStaleForecast() {
+
+        // Every response expires immediately, later requests for the location find it expired
+        metNo.setFreshness(Duration.ZERO);
+        properties.getCache().setLocationMinTtl(Duration.ZERO);
+        properties.getCache().setStaleServingEnabled(true);
+        properties.getCache().setStaleWhileRevalidate(Duration.ZERO);
+        WeatherForecastService weatherService = weatherService();
+
+        weatherService.getWeatherForecast(UUID.randomUUID(), 60.10, 9.58, start, end);
+
+        // One success and three failures in the window of four
+        metNo.setErrorStatus(503);
+        for (int i = 0; i < 3; i++) {
+            double latitude = 61 + i * 0.1;
+            assertThrows(RuntimeException.class, () -> weatherService.getWeatherForecast(UUID.randomUUID(), latitude, 9.58, start, end));
+        }
+
+        assertEquals(CircuitBreaker.State.OPEN, guard.getState());
+        assertEquals(4, metNo.requestCount());
+
+        // Rejected without calling met.no, the expired timeseries is served instead
+        ResolvedForecast stale = weatherService.resolveWeatherForecast(UUID.randomUUID(), 60.10, 9.58, start, end).orElseThrow();
+        assertTrue(stale.isStale());
+
+        // Nothing to fall back on, the request fails at once
+        RuntimeException e = assertThrows(RuntimeException.class,
+                () -> weatherService.getWeatherForecast(UUID.randomUUID(), 62.0, 9.58, start, end));
+        assertTrue(e.getMessage().contains("circuit breaker"), e.getMessage());
+
+        assertEquals(4, metNo.requestCount());
+    }
+
+    @Test
+    void testBreakerClosesAfterMetNoRecovers() throws Exception {
+
+        properties.getResilience().setOpenDuration(Duration.ofMillis(200));
+        properties.getResilience().setHalfOpenCalls(1);
+        WeatherForecastService weatherService = weatherService();
+
+        metNo.setErrorStatus(500);
+        for (int i = 0; i < 4; i++) {
+            double latitude = 61 + i * 0.1;
+            assertThrows(RuntimeException.class, () -> weatherService.getWeatherForecast(UUID.randomUUID(), latitude, 9.58, start, end));
+        }
+        assertEquals(CircuitBreaker.State.OPEN, guard.getState());
+
+        metNo.setErrorStatus(0);
+        Thread.sleep(300);
+
+        // The trial call succeeds and closes the breaker
+        assertTrue(weatherService.getWeatherForecast(UUID.randomUUID(), 60.10, 9.58, start, end).isPresent());
+        assertEquals(CircuitBreaker.State.CLOSED, guard.getState());
+    }
+
+    @Test
+    void testClientErrorsAndTimeoutsAreTreatedDifferently() {
+
+        properties.getMet().setReadTimeout(Duration.ofMillis(100));
+        WeatherForecastService weatherService = weatherService();
+
+        // A 4xx is about the request, not met.no's health
+        metNo.setErrorStatus(404);
+        for (int i = 0; i < 6; i++) {
+            double latitude = 61 + i * 0.1;
+            assertThrows(RuntimeException.class, () -> weatherService.getWeatherForecast(UUID.randomUUID(), latitude, 9.58, start, end));
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, guard.getState());
+
+        // Timeouts are
+        metNo.setErrorStatus(0);
+        metNo.setLatency(Duration.ofMillis(500));
+        for (int i = 0; i < 4; i++) {
+            double latitude = 63 + i * 0.1;
+            assertThrows(RuntimeException.class, () -> weatherService.getWeatherForecast(UUID.randomUUID(), latitude, 9.58, start, end));
+        }
+        assertEquals(CircuitBreaker.State.OPEN, guard.getState());
+    }
+
+    @Test
+    void testBulkheadCapsConcurrentCalls() throws Exception {
+
+        properties.getResilience().setMaxConcurrentCalls(3);
+        metNo.setLatency(Duration.ofMillis(300));
+        WeatherForecastService weatherService = weatherService();
+
+        int rejected = countFailures(runConcurrently(weatherService, 12));
+
+        assertTrue(metNo.maxConcurrentRequests() <= 3, "max concurrent " + metNo.maxConcurrentRequests());
+        assertEquals(12, metNo.requestCount() + rejected);
+        assertTrue(rejected > 0);
+        // Rejections are not met.no failures
+        assertEquals(CircuitBreaker.State.CLOSED, guard.getState());
+    }
+
+    @Test
+    void testLimitBacksOffWhenMetNoSlowsDownAndRecovers() throws Exception {
+
+        properties.getResilience().setInitialLimit(10);
+        properties.getResilience().setMinLimit(2);
+        properties.getResilience().setLatencyThreshold(Duration.ofMillis(100));
+        properties.getResilience().setBackoffRatio(0.5);
+        WeatherForecastService weatherService = weatherService();
+
+        metNo.setLatency(Duration.ofMillis(200));
+        for (int i = 0; i < 3; i++) {
+            weatherService.getWeatherForecast(UUID.randomUUID(), 61 + i * 0.1, 9.58, start, end);
+        }
+
+        // 10, 5, 2.5, then held at the minimum
+        assertEquals(2, guard.getLimit().getLimit());
+
+        int requestsBefore = metNo.requestCount();
+        int rejected = countFailures(runConcurrently(weatherService, 8));
+
+        assertTrue(metNo.maxConcurrentRequests() <= 2, "max concurrent " + metNo.maxConcurrentRequests());
+        assertEquals(8, metNo.requestCount() - requestsBefore + rejected);
+
+        // Fast calls using the limit raise it by one at a time
+        metNo.setLatency(Duration.ZERO);
+        weatherService.getWeatherForecast(UUID.randomUUID(), 70.0, 9.58, start, end);
+        assertEquals(3, guard.getLimit().getLimit());
+        assertEquals(0, guard.getLimit().getInFlight());
+    }
+
+    @Test
+    void testReactiveClientIsGuardedToo() {
+
+        properties.getResilience().setMinimumCalls(2);
+        properties.getResilience().setSlidingWindowSize(2);
+        weatherService();
+        ReactiveMetNoClient reactiveClient = new ReactiveMetNoClient(WebClient.create(), metNoClient, new ForecastMetrics(new SimpleMeterRegistry()));
+
+        metNo.setErrorStatus(503);
+        assertThrows(RuntimeException.class, () -> reactiveClient.fetch(60.10, 9.58, -1).block());
+        assertThrows(RuntimeException.class, () -> reactiveClient.fetch(60.10, 9.58, -1).block());
+        assertEquals(CircuitBreaker.State.OPEN, guard.getState());
+
+        // Rejected on subscribe, as an error signal
+        assertThrows(MetNoUnavailableException.class, () -> reactiveClient.fetch(60.10, 9.58, -1).block());
+        assertEquals(2, metNo.requestCount());
+        assertEquals(0, guard.getLimit().getInFlight());
+    }
+
+    // Every request is for a distinct location, so every request is an upstream call or a rejection
+    private List<Future<?>> runConcurrently(WeatherForecastService weatherService, int count) {
+
+        List<Future<?>> futures = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            double latitude = 50 + i * 0.1;
+            futures.add(executor.submit(() -> weatherService.getWeatherForecast(UUID.randomUUID(), latitude, 9.58, start, end)));
+        }
+
+        return futures;
+    }
+
+    private static int countFailures(List<Future<?>> futures) throws Exception {
+
+        int failures = 0;
+
+        for (Future<?> future : futures) {
+            try {
+                future.get(10, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                failures++;
+            }
+        }
+
+        return failures;
+    }
+
+    private WeatherForecastService weatherService() {
+        AppConfig appConfig = new AppConfig();
+        httpClient = appConfig.metNoHttpClient(appConfig.metNoConnectionManager(properties), properties);
+
+        ForecastServiceFixture fixture = new ForecastServiceFixture(properties,
+                new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient)), executor);
+        guard = fixture.guard;
+        metNoClient = fixture.metNoClient;
+        return fixture.service;
+    }
+}
@@ -0,0 +1,82 @@
+package com.spond.weather;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spond.weather.dto.ForecastSeries;
+import com.spond.weather.dto.WeatherApiResponse;
+import com.spond.weather.util.MetNoStreamingParser;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+import static com.spond.weather.util.ApplicationUtils.mapResponseToSeries;
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetNoStreamingParserTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void testStreamingParserMatchesDataBinding() throws IOException {
+
+        ForecastSeries streamed = MetNoStreamingParser.parse(getClass().getClassLoader().getResourceAsStream("met_response.json"));
+        ForecastSeries bound = mapResponseToSeries(objectMapper.readValue(getClass().getClassLoader().getResourceAsStream("met_response.json"), WeatherApiResponse.class));
+
+        assertTrue(streamed.size() > 0);
+        assertArrayEquals(bound.getEpochSeconds(), streamed.getEpochSeconds());
+        assertArrayEquals(bound.getAirTemperature(), streamed.getAirTemperature());
+        assertArrayEquals(bound.getWindSpeed(), streamed.getWindSpeed());
+
+        assertEquals(Instant.parse("2024-08-27T14:00:00Z").getEpochSecond(), streamed.getEpochSeconds()[0]);
+        assertEquals(17.8, streamed.getAirTemperature()[0]);
+        assertEquals(5.5, streamed.getWindSpeed()[0]);
+    }
+
+    @Test
+    void testUnknownFieldsAndFieldOrderAreTolerated() throws IOException {
+
+        String json = """
+                {"properties":{"timeseries":[
+                  {"data":{"next_1_hours":{"details":{"precipitation_amount":0.2}},
+                           "instant":{"details":{"wind_speed":3.1,"cloud_area_fraction":[1,2],"air_temperature":-2.5}}},
+                   "time":"2024-08-27T14:00:00.000+02:00"}
+                ],"extra":{"nested":[{}]}},"type":"Feature"}
+                """;
+
+        ForecastSeries series = MetNoStreamingParser.parse(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(1, series.size());
+        assertEquals(Instant.parse("2024-08-27T12:00:00Z").getEpochSecond(), series.getEpochSeconds()[0]);
+        assertEquals(-2.5, series.getAirTemperature()[0]);
+        assertEquals(3.1, series.getWindSpeed()[0]);
+    }
+
+    @Test
+    void testEntriesWithoutTimeOrValuesAreSkipped() throws IOException {
+
+        String json = """
+                {"properties":{"timeseries":[
+                  {"time":"2024-08-27T14:00:00Z","data":{"instant":{"details":{"air_temperature":17.8,"wind_speed":5.5}}}},
+                  {"data":{"instant":{"details":{"air_temperature":30.0,"wind_speed":9.0}}}},
+                  {"time":"2024-08-27T15:00:00Z","data":{"instant":{"details":{"wind_speed":9.0}}}},
+                  {"time":"2024-08-27T16:00:00Z","data":{"instant":{"details":{"air_temperature":null,"wind_speed":9.0}}}},
+                  {"time":"2024-08-27T17:00:00Z"},
+                  {"time":"2024-08-27T18:00:00Z","data":{"instant":{"details":{"air_temperature":16.1,"wind_speed":4.2}}}}
+                ]}}
+                """;
+
+        ForecastSeries streamed = MetNoStreamingParser.parse(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+        ForecastSeries bound = mapResponseToSeries(objectMapper.readValue(json, WeatherApiResponse.class));
+
+        assertArrayEquals(new long[]{Instant.parse("2024-08-27T14:00:00Z").getEpochSecond(), Instant.parse("2024-08-27T18:00:00Z").getEpochSecond()},
+                streamed.getEpochSeconds());
+        assertArrayEquals(new double[]{17.8, 16.1}, streamed.getAirTemperature());
+        assertArrayEquals(new double[]{5.5, 4.2}, streamed.getWindSpeed());
+
+        assertArrayEquals(bound.getEpochSeconds(), streamed.getEpochSeconds());
+        assertArrayEquals(bound.getAirTemperature(), streamed.getAirTemperature());
+        assertArrayEquals(bound.getWindSpeed(), streamed.getWindSpeed());
+    }
+}
@@ -0,0 +1,176 @@
+package com.spond.weather;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Local stand-in for api.met.no serving met_response.json, with configurable latency and an
+ * optional error status. Like met.no it sends Last-Modified, answers If-Modified-Since with 304 and
+ * compresses when asked to. It counts requests, TCP connections and full body transfers.
+ */
+class MetNoStubServer implements AutoCloseable {
+
+    private final HttpServer server;
+
+    private final byte[] body;
+
+    private final byte[] gzipBody;
+
+    private final AtomicInteger requests = new AtomicInteger();
+
+    private final AtomicInteger bodyTransfers = new AtomicInteger();
+
+    private final AtomicInteger gzipTransfers = new AtomicInteger();
+
+    private final Set<String> connections = ConcurrentHashMap.newKeySet();
+
+    private final Set<String> queries = ConcurrentHashMap.newKeySet();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    private volatile Duration latency = Duration.ZERO;
+
+    private volatile Instant lastModified = Instant.now().minus(1, ChronoUnit.HOURS).truncatedTo(ChronoUnit.SECONDS);
+
+    // Sent as Expires relative to Date when set, otherwise clients fall back to Last-Modified
+    private volatile Duration freshness;
+
+    // Answered to every request instead of the forecast when set
+    private volatile int errorStatus;
+
+    MetNoStubServer() throws IOException {
+        body = getClass().getClassLoader().getResourceAsStream("met_response.json").readAllBytes();
+        gzipBody = gzip(body);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 4096);
+        server.createContext("/weatherapi/locationforecast/2.0/compact", this::handle);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+    }
+
+    String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    void setLatency(Duration latency) {
+        this.latency = latency;
+    }
+
+    void setLastModified(Instant lastModified) {
+        this.lastModified = lastModified.truncatedTo(ChronoUnit.SECONDS);
+    }
+
+    void setFreshness(Duration freshness) {
+        this.freshness = freshness;
+    }
+
+    void setErrorStatus(int errorStatus) {
+        this.errorStatus = errorStatus;
+    }
+
+    int requestCount() {
+        return requests.get();
+    }
+
+    int bodyTransferCount() {
+        return bodyTransfers.get();
+    }
+
+    int gzipTransferCount() {
+        return gzipTransfers.get();
+    }
+
+    int connectionCount() {
+        return connections.size();
+    }
+
+    // Distinct query strings requested, lat and lon
+    Set<String> queries() {
+        return queries;
+    }
+
+    // Highest number of requests handled at the same time
+    int maxConcurrentRequests() {
+        return maxInFlight.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        connections.add(exchange.getRemoteAddress().toString());
+        queries.add(exchange.getRequestURI().getQuery());
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        try {
+            Thread.sleep(latency.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            inFlight.decrementAndGet();
+        }
+
+        if (errorStatus > 0) {
+            exchange.sendResponseHeaders(errorStatus, -1);
+            exchange.close();
+            return;
+        }
+
+        ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+        exchange.getResponseHeaders().set("Date", DateTimeFormatter.RFC_1123_DATE_TIME.format(now));
+        exchange.getResponseHeaders().set("Last-Modified", DateTimeFormatter.RFC_1123_DATE_TIME.format(lastModified.atZone(ZoneOffset.UTC)));
+        if (freshness != null) {
+            exchange.getResponseHeaders().set("Expires", DateTimeFormatter.RFC_1123_DATE_TIME.format(now.plus(freshness)));
+        }
+
+        String ifModifiedSince = exchange.getRequestHeaders().getFirst("If-Modified-Since");
+        if (ifModifiedSince != null
+                && !lastModified.isAfter(ZonedDateTime.parse(ifModifiedSince, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant())) {
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        byte[] payload = body;
+        if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            payload = gzipBody;
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            gzipTransfers.incrementAndGet();
+        }
+
+        bodyTransfers.incrementAndGet();
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, payload.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(payload);
+        }
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(data);
+        }
+        return compressed.toByteArray();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
@@ -0,0 +1,192 @@
+package com.spond.weather;
+
+import com.spond.weather.cache.ForecastCache;
+import com.spond.weather.cache.ReactiveForecastCache;
+import com.spond.weather.config.WeatherProperties;
+import com.spond.weather.controller.ReactiveWeatherForecastController;
+import com.spond.weather.controller.WeatherForecastController;
+import com.spond.weather.dto.BatchForecastResponse;
+import com.spond.weather.dto.ForecastRequestDTO;
+import com.spond.weather.dto.ForecastServiceResponse;
+import com.spond.weather.metrics.ForecastMetrics;
+import com.spond.weather.service.ForecastAccessTracker;
+import com.spond.weather.service.InFlightRequestRegistry;
+import com.spond.weather.service.ReactiveMetNoClient;
+import com.spond.weather.service.ReactiveWeatherForecastService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReactiveWeatherForecastTest {
+
+    private final String start = Instant.now().plus(1, ChronoUnit.DAYS).truncatedTo(ChronoUnit.HOURS).toString();
+
+    private final String end = Instant.now().plus(1, ChronoUnit.DAYS).truncatedTo(ChronoUnit.HOURS).plus(2, ChronoUnit.HOURS).toString();
+
+    private MetNoStubServer metNo;
+
+    private ExecutorService executor;
+
+    private WeatherForecastController servletController;
+
+    private ReactiveWeatherForecastController reactiveController;
+
+    private WeatherProperties properties;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        metNo = new MetNoStubServer();
+
+        properties = new WeatherProperties();
+        properties.getMet().setBaseUrl(metNo.baseUrl());
+        // Each stack gets its own Redis so both compute the forecast from scratch
+        executor = Executors.newSingleThreadExecutor();
+        ForecastServiceFixture servlet = new ForecastServiceFixture(properties, new RestTemplate(), executor);
+        ForecastMetrics metrics = servlet.metrics;
+        servletController = new WeatherForecastController(servlet.service, properties, metrics);
+
+        InMemoryRedis reactiveRedis = new InMemoryRedis();
+        ReactiveWeatherForecastService reactiveService = new ReactiveWeatherForecastService(
+                new ReactiveMetNoClient(WebClient.create(), servlet.metNoClient, metrics),
+                new ReactiveForecastCache(reactiveRedis.reactiveTemplate(), new ForecastCache(reactiveRedis.getTemplate(), properties)),
+                properties, new InFlightRequestRegistry(reactiveRedis.getTemplate(), properties), new ForecastAccessTracker(properties), metrics, Clock.systemUTC());
+        reactiveController = new ReactiveWeatherForecastController(reactiveService, properties, metrics);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        metNo.close();
+    }
+
+    @Test
+    void testReactiveResponsesMatchServletResponses() {
+
+        UUID eventId = UUID.randomUUID();
+
+        assertSameResponse(servletController.getWeather(eventId, 60.10, 9.58, start, end),
+                reactiveController.getWeather(eventId, 60.10, 9.58, start, end).block());
+        // Validation errors
+        assertEquals(servletController.getWeather(eventId, 91.0, 9.58, start, end),
+                reactiveController.getWeather(eventId, 91.0, 9.58, start, end).block());
+
+        List<ForecastRequestDTO> batch = List.of(
+                request(UUID.randomUUID(), 60.10, 9.58),
+                request(UUID.randomUUID(), 59.91, 10.75),
+                request(null, 59.91, 10.75));
+
+        ResponseEntity<?> servletBatch = servletController.getWeatherBatch(batch);
+        ResponseEntity<?> reactiveBatch = reactiveController.getWeatherBatch(batch).block();
+
+        assertEquals(servletBatch.getStatusCode(), reactiveBatch.getStatusCode());
+        assertEquals(((BatchForecastResponse) servletBatch.getBody()).getResults(),
+                ((BatchForecastResponse) reactiveBatch.getBody()).getResults());
+    }
+
+    @Test
+    void testConcurrentRequestsShareOneUpstreamCall() {
+
+        metNo.setLatency(Duration.ofMillis(500));
+        UUID eventId = UUID.randomUUID();
+
+        List<ResponseEntity<ForecastServiceResponse>> responses = Flux.range(0, 1000)
+                .flatMap(i -> reactiveController.getWeather(eventId, 60.10, 9.58, start, end), 1000)
+                .collectList()
+                .block();
+
+        assertEquals(1000, responses.size());
+        assertTrue(responses.stream().allMatch(response -> response.getStatusCode().is2xxSuccessful()));
+        assertEquals(1, metNo.requestCount());
+    }
+
+    @Test
+    void testExpiredLocationIsRevalidatedWithoutDownloadingBody() {
+
+        metNo.setFreshness(Duration.ZERO);
+        properties.getCache().setLocationMinTtl(Duration.ZERO);
+
+        ResponseEntity<ForecastServiceResponse> first = reactiveController.getWeather(UUID.randomUUID(), 60.10, 9.58, start, end).block();
+        ResponseEntity<ForecastServiceResponse> revalidated = reactiveController.getWeather(UUID.randomUUID(), 60.10, 9.58, start, end).block();
+
+        assertSameResponse(first, revalidated);
+        assertEquals(2, metNo.requestCount());
+        assertEquals(1, metNo.bodyTransferCount());
+    }
+
+    @Test
+    void testExpiredLocationIsServedStaleWhenMetNoFails() {
+
+        metNo.setFreshness(Duration.ZERO);
+        properties.getCache().setLocationMinTtl(Duration.ZERO);
+        properties.getCache().setStaleServingEnabled(true);
+        properties.getCache().setStaleWhileRevalidate(Duration.ZERO);
+
+        ResponseEntity<ForecastServiceResponse> first = reactiveController.getWeather(UUID.randomUUID(), 60.10, 9.58, start, end).block();
+        metNo.setErrorStatus(503);
+        ResponseEntity<ForecastServiceResponse> stale = reactiveController.getWeather(UUID.randomUUID(), 60.10, 9.58, start, end).block();
+
+        assertNull(first.getBody().getStaleSeconds());
+        assertTrue(stale.getStatusCode().is2xxSuccessful());
+        assertEquals(first.getBody().getForecastData(), stale.getBody().getForecastData());
+        assertTrue(stale.getBody().getStaleSeconds() >= 1);
+
+        // Clients must not keep a forecast computed from expired data
+        assertNotNull(first.getHeaders().getETag());
+        assertEquals("no-store", stale.getHeaders().getCacheControl());
+        assertNull(stale.getHeaders().getETag());
+    }
+
+    @Test
+    void testMatchingIfNoneMatchIsAnsweredWith304() {
+
+        WebTestClient client = WebTestClient.bindToController(reactiveController).build();
+        String uri = "/api/v1/forecast/" + UUID.randomUUID() + "?latitude=60.10&longitude=9.58&startTimeStamp=" + start + "&endTimeStamp=" + end;
+
+        String etag = client.get().uri(uri).exchange()
+                .expectStatus().isOk()
+                .expectHeader().value(HttpHeaders.CACHE_CONTROL, cacheControl -> assertTrue(cacheControl.startsWith("max-age="), cacheControl))
+                .expectHeader().exists(HttpHeaders.EXPIRES)
+                .returnResult(ForecastServiceResponse.class).getResponseHeaders().getETag();
+
+        client.get().uri(uri).header(HttpHeaders.IF_NONE_MATCH, etag).exchange()
+                .expectStatus().isNotModified()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, etag)
+                .expectBody().isEmpty();
+
+        assertEquals(1, metNo.requestCount());
+    }
+
+    // Same status, body and ETag, the caching lifetime may differ by the time between the two responses
+    private static void assertSameResponse(ResponseEntity<?> expected, ResponseEntity<?> actual) {
+        assertEquals(expected.getStatusCode(), actual.getStatusCode());
+        assertEquals(expected.getBody(), actual.getBody());
+        assertEquals(expected.getHeaders().getETag(), actual.getHeaders().getETag());
+    }
+
+    private static ForecastRequestDTO request(UUID eventId, double latitude, double longitude) {
+        ForecastRequestDTO request = new ForecastRequestDTO();
+        request.setEventId(eventId);
+        request.setLatitude(latitude);
+        request.setLongitude(longitude);
+        request.setStartTimeStamp(Instant.now().plus(1, ChronoUnit.DAYS).truncatedTo(ChronoUnit.HOURS).toString());
+        request.setEndTimeStamp(Instant.now().plus(1, ChronoUnit.DAYS).truncatedTo(ChronoUnit.HOURS).plus(2, ChronoUnit.HOURS).toString());
+        return request;
+    }
+}
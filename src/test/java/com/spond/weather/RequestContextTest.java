@@ -0,0 +1,40 @@
+package com.spond.weather;
+
+import com.spond.weather.util.RequestContext;
+import org.apache.logging.log4j.ThreadContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class RequestContextTest {
+
+    @AfterEach
+    void tearDown() {
+        ThreadContext.clearAll();
+    }
+
+    @Test
+    void testRequestIdIsVisibleOnVirtualWorkerThread() throws Exception {
+
+        AtomicReference<String> seenRequestId = new AtomicReference<>();
+        AtomicReference<String> leftoverRequestId = new AtomicReference<>();
+
+        try (ExecutorService executor = Executors.newSingleThreadExecutor(Thread.ofVirtual().factory())) {
+            ThreadContext.put("requestId", "request-1");
+
+            CompletableFuture.runAsync(RequestContext.propagate(() -> seenRequestId.set(ThreadContext.get("requestId"))), executor).get();
+            executor.submit(() -> leftoverRequestId.set(ThreadContext.get("requestId"))).get();
+        }
+
+        assertEquals("request-1", seenRequestId.get());
+        // The worker must not keep the request id once the task is done
+        assertNull(leftoverRequestId.get());
+    }
+}
@@ -0,0 +1,120 @@
+package com.spond.weather;
+
+import com.spond.weather.cache.ForecastCache;
+import com.spond.weather.config.WeatherProperties;
+import com.spond.weather.controller.CacheStatsEndpoint;
+import com.spond.weather.dto.CellStatsDTO;
+import com.spond.weather.service.ForecastAccessTracker;
+import com.spond.weather.service.WeatherForecastService;
+import com.spond.weather.util.SpatialGrid;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpatialGridTest {
+
+    @Test
+    void testFixedGridSnapsToCellCentre() {
+
+        WeatherProperties.Grid grid = new WeatherProperties().getGrid();
+
+        // Two points in the same park share a cell, the next cell north does not
+        SpatialGrid.Cell cell = SpatialGrid.snap(59.9275, 10.7311, grid);
+        assertEquals(cell, SpatialGrid.snap(59.9291, 10.7342, grid));
+        assertEquals(new SpatialGrid.Cell(59.93, 10.73), cell);
+        assertNotEquals(cell, SpatialGrid.snap(59.9412, 10.7311, grid));
+
+        // Never outside the valid range
+        assertEquals(new SpatialGrid.Cell(90.0, 180.0), SpatialGrid.snap(90.0, 180.0, grid));
+        assertEquals(new SpatialGrid.Cell(-89.99, -179.99), SpatialGrid.snap(-90.0, -180.0, grid));
+    }
+
+    @Test
+    void testGeohashCellContainsCoordinates() {
+
+        WeatherProperties.Grid grid = new WeatherProperties().getGrid();
+        grid.setMode(WeatherProperties.GridMode.GEOHASH);
+        grid.setGeohashPrecision(6);
+
+        // 30 bits, 15 per axis
+        double latitudeSpan = 180 / Math.pow(2, 15);
+        double longitudeSpan = 360 / Math.pow(2, 15);
+
+        SpatialGrid.Cell cell = SpatialGrid.snap(57.64911, 10.40744, grid);
+
+        assertTrue(Math.abs(cell.latitude() - 57.64911) <= latitudeSpan / 2 + 0.0001);
+        assertTrue(Math.abs(cell.longitude() - 10.40744) <= longitudeSpan / 2 + 0.0001);
+        assertEquals(cell, SpatialGrid.snap(57.6490, 10.4075, grid));
+    }
+
+    @Test
+    void testNoneKeepsFourDecimals() {
+
+        WeatherProperties.Grid grid = new WeatherProperties().getGrid();
+        grid.setMode(WeatherProperties.GridMode.NONE);
+
+        assertEquals(new SpatialGrid.Cell(59.9139, 10.7522), SpatialGrid.snap(59.91391234, 10.75224321, grid));
+    }
+
+    @Test
+    void testEventsInOneCellShareOneFetchForTheCellCentre() throws Exception {
+
+        String start = Instant.now().plus(1, ChronoUnit.DAYS).truncatedTo(ChronoUnit.HOURS).toString();
+        String end = Instant.now().plus(1, ChronoUnit.DAYS).truncatedTo(ChronoUnit.HOURS).plus(2, ChronoUnit.HOURS).toString();
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try (MetNoStubServer metNo = new MetNoStubServer()) {
+
+            WeatherProperties properties = new WeatherProperties();
+            properties.getMet().setBaseUrl(metNo.baseUrl());
+            ForecastServiceFixture fixture = new ForecastServiceFixture(properties, new RestTemplate(), executor);
+            WeatherForecastService weatherService = fixture.service;
+            ForecastAccessTracker accessTracker = fixture.accessTracker;
+
+            weatherService.getWeatherForecast(UUID.randomUUID(), 59.9275, 10.7311, start, end);
+            weatherService.getWeatherForecast(UUID.randomUUID(), 59.9291, 10.7342, start, end);
+            weatherService.getWeatherForecast(UUID.randomUUID(), 59.9283, 10.7390, start, end);
+
+            assertEquals(1, metNo.requestCount());
+            assertEquals(Set.of("lat=59.93&lon=10.73"), metNo.queries());
+
+            List<CellStatsDTO> cells = accessTracker.cellStats(10);
+            assertEquals(1, cells.size());
+            assertEquals("Location:59.93:10.73", cells.get(0).getCell());
+            assertEquals(3, cells.get(0).getRequests());
+            assertEquals(1, cells.get(0).getUpstreamFetches());
+            assertEquals(2.0 / 3, cells.get(0).getHitRate(), 1e-9);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testCacheStatsEndpointCapsTheCellsReported() {
+
+        WeatherProperties properties = new WeatherProperties();
+        properties.getGrid().setMaxReportedCells(2);
+        ForecastAccessTracker accessTracker = new ForecastAccessTracker(properties);
+        CacheStatsEndpoint endpoint = new CacheStatsEndpoint(new ForecastCache(new InMemoryRedis().getTemplate(), properties),
+                accessTracker, properties);
+
+        for (int i = 0; i < 5; i++) {
+            accessTracker.recordCellRequest("Location:59.9" + i + ":10.73");
+        }
+
+        assertEquals(2, endpoint.cacheStats(1_000_000).getCells().size());
+        assertEquals(1, endpoint.cacheStats(1).getCells().size());
+        assertEquals(0, endpoint.cacheStats(-1).getCells().size());
+        assertEquals(2, endpoint.cacheStats(null).getCells().size());
+    }
+}
@@ -0,0 +1,216 @@
+package com.spond.weather;
+
+import com.spond.weather.config.AppConfig;
+import com.spond.weather.config.WeatherProperties;
+import com.spond.weather.dto.ForecastRequestDTO;
+import com.spond.weather.dto.ForecastServiceResponse;
+import com.spond.weather.dto.ResolvedForecast;
+import com.spond.weather.service.WeatherForecastService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StaleForecastServingTest {
+
+    private final InMemoryRedis redis = new InMemoryRedis();
+
+    // Freshness is decided on this clock, only the tests move it
+    private final TestClock clock = new TestClock();
+
+    private final String start = Instant.now().plus(1, ChronoUnit.DAYS).truncatedTo(ChronoUnit.HOURS).toString();
+
+    private final String end = Instant.now().plus(1, ChronoUnit.DAYS).truncatedTo(ChronoUnit.HOURS).plus(2, ChronoUnit.HOURS).toString();
+
+    private MetNoStubServer metNo;
+
+    private CloseableHttpClient httpClient;
+
+    private ExecutorService executor;
+
+    private WeatherProperties properties;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        metNo = new MetNoStubServer();
+
+        // Every response expires immediately, the next request finds an expired timeseries
+        metNo.setFreshness(Duration.ZERO);
+
+        properties = new WeatherProperties();
+        properties.getMet().setBaseUrl(metNo.baseUrl());
+        properties.getCache().setLocationMinTtl(Duration.ZERO);
+        properties.getCache().setStaleServingEnabled(true);
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        executor.shutdownNow();
+        if (httpClient != null) {
+            httpClient.close();
+        }
+        metNo.close();
+    }
+
+    @Test
+    void testExpiredForecastIsServedWhileRefreshedInBackground() throws Exception {
+
+        WeatherForecastService weatherService = weatherService();
+        assertFalse(weatherService.resolveWeatherForecast(UUID.randomUUID(), 60.10, 9.58, start, end).orElseThrow().isStale());
+
+        clock.advance(Duration.ofMillis(1500));
+        metNo.setLatency(Duration.ofSeconds(1));
+        UUID eventId = UUID.randomUUID();
+        long started = System.nanoTime();
+
+        ResolvedForecast stale = weatherService.resolveWeatherForecast(eventId, 60.10, 9.58, start, end).orElseThrow();
+
+        assertEquals(2, stale.staleSeconds());
+        assertTrue(System.nanoTime() - started < TimeUnit.MILLISECONDS.toNanos(500));
+        // Not cached, the next request for the event uses the refreshed timeseries
+        assertFalse(redis.containsKey("EventID:" + eventId));
+
+        // A burst of readers on the stale entry triggers a single refresh
+        for (int i = 0; i < 10; i++) {
+            weatherService.resolveWeatherForecast(UUID.randomUUID(), 60.10, 9.58, start, end);
+        }
+
+        awaitRequestCount(2);
+        Thread.sleep(200);
+        assertEquals(2, metNo.requestCount());
+    }
+
+    @Test
+    void testForecastIsStaleFromTheInstantItExpires() throws Exception {
+
+        WeatherForecastService weatherService = weatherService();
+        weatherService.getWeatherForecast(UUID.randomUUID(), 60.10, 9.58, start, end);
+
+        // The clock has not moved, the timeseries expires right now
+        metNo.setLatency(Duration.ofSeconds(1));
+        UUID eventId = UUID.randomUUID();
+
+        ResolvedForecast stale = weatherService.resolveWeatherForecast(eventId, 60.10, 9.58, start, end).orElseThrow();
+
+        assertEquals(1, stale.staleSeconds());
+        assertFalse(redis.containsKey("EventID:" + eventId));
+        awaitRequestCount(2);
+    }
+
+    @Test
+    void testExpiredForecastIsServedWhenMetNoTimesOut() {
+
+        properties.getCache().setStaleWhileRevalidate(Duration.ZERO);
+        properties.getMet().setReadTimeout(Duration.ofMillis(200));
+        WeatherForecastService weatherService = weatherService();
+        weatherService.getWeatherForecast(UUID.randomUUID(), 60.10, 9.58, start, end);
+
+        clock.advance(Duration.ofSeconds(5));
+        metNo.setLatency(Duration.ofSeconds(1));
+
+        ResolvedForecast stale = weatherService.resolveWeatherForecast(UUID.randomUUID(), 60.10, 9.58, start, end).orElseThrow();
+
+        assertEquals(5, stale.staleSeconds());
+        assertEquals(2, metNo.requestCount());
+    }
+
+    @Test
+    void testBatchReportsStalenessWhenMetNoFails() {
+
+        properties.getCache().setStaleWhileRevalidate(Duration.ZERO);
+        WeatherForecastService weatherService = weatherService();
+        weatherService.getWeatherForecast(UUID.randomUUID(), 60.10, 9.58, start, end);
+
+        clock.advance(Duration.ofSeconds(5));
+        metNo.setErrorStatus(503);
+
+        List<ForecastServiceResponse> results = weatherService.getWeatherForecasts(List.of(
+                new ForecastRequestDTO(UUID.randomUUID(), 60.10, 9.58, start, end),
+                new ForecastRequestDTO(UUID.randomUUID(), 60.10, 9.58, start, end)));
+
+        assertTrue(results.stream().allMatch(ForecastServiceResponse::isSuccess));
+        assertTrue(results.stream().allMatch(result -> result.getStaleSeconds() == 5));
+    }
+
+    @Test
+    void testFailureIsReportedOutsideTheStaleWindow() {
+
+        properties.getCache().setStaleWhileRevalidate(Duration.ZERO);
+        properties.getCache().setStaleIfError(Duration.ZERO);
+        WeatherForecastService weatherService = weatherService();
+        weatherService.getWeatherForecast(UUID.randomUUID(), 60.10, 9.58, start, end);
+
+        clock.advance(Duration.ofMillis(10));
+        metNo.setErrorStatus(503);
+
+        assertThrows(RuntimeException.class,
+                () -> weatherService.getWeatherForecast(UUID.randomUUID(), 60.10, 9.58, start, end));
+
+        // Disabled, expired data is never served
+        properties.getCache().setStaleServingEnabled(false);
+        properties.getCache().setStaleIfError(Duration.ofHours(1));
+
+        assertThrows(RuntimeException.class,
+                () -> weatherService.getWeatherForecast(UUID.randomUUID(), 60.10, 9.58, start, end));
+    }
+
+    private void awaitRequestCount(int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (metNo.requestCount() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+    }
+
+    private WeatherForecastService weatherService() {
+        AppConfig appConfig = new AppConfig();
+        httpClient = appConfig.metNoHttpClient(appConfig.metNoConnectionManager(properties), properties);
+        RestTemplate restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+
+        return new ForecastServiceFixture(properties, restTemplate, executor, redis, new SimpleMeterRegistry(), clock).service;
+    }
+
+    /**
+     * A clock that stands still until advanced.
+     */
+    private static class TestClock extends Clock {
+
+        private volatile Instant now = Instant.now();
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
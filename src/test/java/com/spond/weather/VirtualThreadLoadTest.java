@@ -0,0 +1,111 @@
+package com.spond.weather;
+
+import com.spond.weather.config.WeatherProperties;
+import com.spond.weather.service.WeatherForecastService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.logging.log4j.ThreadContext;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Saturation throughput of the blocking request path on platform threads, capped like Tomcat's
+ * default worker pool, versus one virtual thread per request, with met.no replaced by a local stub
+ * that answers after a fixed delay. Run with -Pload-test.
+ */
+@Tag("load")
+class VirtualThreadLoadTest {
+
+    private static final int REQUESTS = 3_000;
+
+    // server.tomcat.threads.max default
+    private static final int PLATFORM_THREADS = 200;
+
+    // Long enough that the platform pool, not CPU spent parsing, is the bottleneck
+    private static final Duration UPSTREAM_LATENCY = Duration.ofSeconds(1);
+
+    @Test
+    void testVirtualThreadsSaturateLaterThanPlatformThreads() throws Exception {
+
+        try (MetNoStubServer stub = new MetNoStubServer()) {
+            stub.setLatency(UPSTREAM_LATENCY);
+
+            double platformThroughput;
+            try (ExecutorService platform = Executors.newFixedThreadPool(PLATFORM_THREADS)) {
+                platformThroughput = measureThroughput(stub, platform);
+            }
+
+            double virtualThroughput;
+            try (ExecutorService virtual = Executors.newVirtualThreadPerTaskExecutor()) {
+                virtualThroughput = measureThroughput(stub, virtual);
+            }
+
+            System.out.printf("Upstream latency %d ms, %d requests: platform(%d threads) %.0f req/s, virtual %.0f req/s%n",
+                    UPSTREAM_LATENCY.toMillis(), REQUESTS, PLATFORM_THREADS, platformThroughput, virtualThroughput);
+
+            assertTrue(virtualThroughput > platformThroughput,
+                    "virtual " + virtualThroughput + " req/s vs platform " + platformThroughput + " req/s");
+        }
+    }
+
+    private double measureThroughput(MetNoStubServer stub, ExecutorService executor) throws Exception {
+
+        WeatherForecastService weatherService = weatherService(stub);
+        AtomicInteger location = new AtomicInteger();
+
+        // Warm up the JIT and the HTTP stack before measuring
+        runRequests(weatherService, executor, PLATFORM_THREADS, location);
+
+        long started = System.nanoTime();
+        runRequests(weatherService, executor, REQUESTS, location);
+        double seconds = (System.nanoTime() - started) / 1e9;
+
+        return REQUESTS / seconds;
+    }
+
+    private static void runRequests(WeatherForecastService weatherService, ExecutorService executor, int count, AtomicInteger location) throws Exception {
+
+        List<Future<?>> futures = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            // Every request is a miss at a distinct location, so every request calls upstream
+            int cell = location.incrementAndGet();
+            futures.add(executor.submit(() -> {
+                ThreadContext.put("requestId", UUID.randomUUID().toString());
+                try {
+                    weatherService.getWeatherForecast(UUID.randomUUID(), 40 + cell * 0.001, 10.0,
+                            "2024-08-27T14:00:00Z", "2024-08-27T16:00:00Z");
+                } finally {
+                    ThreadContext.clearAll();
+                }
+            }));
+        }
+
+        for (Future<?> future : futures) {
+            future.get(5, TimeUnit.MINUTES);
+        }
+    }
+
+    private static WeatherForecastService weatherService(MetNoStubServer stub) {
+
+        WeatherProperties properties = new WeatherProperties();
+        properties.getMet().setBaseUrl(stub.baseUrl());
+        // Locations 0.001 degrees apart must stay distinct, each request a miss
+        properties.getGrid().setMode(WeatherProperties.GridMode.NONE);
+        // Every request must reach the stub, the comparison is about threads, not admission control
+        properties.getResilience().setEnabled(false);
+
+        return new ForecastServiceFixture(properties, new RestTemplate(), Executors.newVirtualThreadPerTaskExecutor(),
+                InMemoryRedis.stubOnly(), new SimpleMeterRegistry()).service;
+    }
+}
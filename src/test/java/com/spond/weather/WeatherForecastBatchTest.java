@@ -0,0 +1,92 @@
+package com.spond.weather;
+
+import com.spond.weather.config.WeatherProperties;
+import com.spond.weather.dto.ForecastDTO;
+import com.spond.weather.dto.ForecastRequestDTO;
+import com.spond.weather.dto.ForecastServiceResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.ResponseExtractor;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class WeatherForecastBatchTest {
+
+    private RestTemplate restTemplate;
+
+    private ExecutorService executor;
+
+    private ForecastServiceFixture fixture;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        byte[] body = getClass().getClassLoader().getResourceAsStream("met_response.json").readAllBytes();
+        restTemplate = mock(RestTemplate.class);
+        when(restTemplate.execute(anyString(), eq(HttpMethod.GET), isNull(), any())).thenAnswer(invocation -> {
+            if (invocation.<String>getArgument(0).contains("lat=10.0")) {
+                throw new ResourceAccessException("met.no timed out");
+            }
+            return invocation.<ResponseExtractor<?>>getArgument(3).extractData(new MockClientHttpResponse(body, HttpStatus.OK));
+        });
+
+        executor = Executors.newFixedThreadPool(4);
+        fixture = new ForecastServiceFixture(new WeatherProperties(), restTemplate, executor);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testBatchDeduplicatesLocationsAndReportsErrorsPerEvent() {
+
+        UUID cachedEvent = UUID.randomUUID();
+        List<ForecastRequestDTO> requests = new ArrayList<>();
+        requests.add(request(cachedEvent, 60.10, 9.58));
+        for (int i = 0; i < 5; i++) {
+            requests.add(request(UUID.randomUUID(), 60.10, 9.58));
+            requests.add(request(UUID.randomUUID(), 59.911, 10.757));
+        }
+        requests.add(request(UUID.randomUUID(), 10.0, 10.0));
+
+        fixture.redis.put("EventID:" + cachedEvent, new ForecastDTO(1.0, 2.0), Duration.ofHours(2));
+
+        List<ForecastServiceResponse> results = fixture.service.getWeatherForecasts(requests);
+
+        assertEquals(requests.size(), results.size());
+        for (int i = 0; i < requests.size(); i++) {
+            assertEquals(requests.get(i).getEventId(), results.get(i).getEventId());
+        }
+        assertEquals(new ForecastDTO(1.0, 2.0), results.get(0).getForecastData());
+        assertEquals(new ForecastDTO(17.8, 5.5), results.get(1).getForecastData());
+        assertTrue(results.subList(0, requests.size() - 1).stream().allMatch(ForecastServiceResponse::isSuccess));
+        assertFalse(results.get(requests.size() - 1).isSuccess());
+        assertNotNull(results.get(requests.size() - 1).getError());
+
+        // One upstream call per distinct location. Pipelined reads: one for the whole batch and one
+        // for each distinct location entry, then one pipelined write
+        verify(restTemplate, times(3)).execute(anyString(), eq(HttpMethod.GET), isNull(), any());
+        verify(fixture.redis.getTemplate(), times(5)).executePipelined(any(SessionCallback.class));
+    }
+
+    private static ForecastRequestDTO request(UUID eventId, double latitude, double longitude) {
+        return new ForecastRequestDTO(eventId, latitude, longitude, "2024-08-26T14:00:00Z", "2024-08-26T16:00:00Z");
+    }
+}
@@ -0,0 +1,142 @@
+package com.spond.weather;
+
+import com.spond.weather.config.WeatherProperties;
+import com.spond.weather.controller.WeatherForecastController;
+import com.spond.weather.dto.ForecastServiceResponse;
+import com.spond.weather.service.WeatherForecastService;
+import com.spond.weather.util.RequestTrace;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.client.ResponseExtractor;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+class WeatherForecastControllerTest {
+
+    private final String start = Instant.now().plus(1, ChronoUnit.DAYS).truncatedTo(ChronoUnit.HOURS).toString();
+
+    private final String end = Instant.now().plus(1, ChronoUnit.DAYS).truncatedTo(ChronoUnit.HOURS).plus(2, ChronoUnit.HOURS).toString();
+
+    private ExecutorService executor;
+
+    private WeatherForecastService weatherService;
+
+    private WeatherForecastController controller;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        byte[] body = getClass().getClassLoader().getResourceAsStream("met_response.json").readAllBytes();
+        RestTemplate restTemplate = mock(RestTemplate.class);
+        when(restTemplate.execute(anyString(), eq(HttpMethod.GET), isNull(), any())).thenAnswer(invocation ->
+                invocation.<ResponseExtractor<?>>getArgument(3).extractData(new MockClientHttpResponse(body, HttpStatus.OK)));
+
+        WeatherProperties properties = new WeatherProperties();
+        // Keep every lookup on the Redis path so the trace counts real round trips
+        properties.getNearCache().setEnabled(false);
+        executor = Executors.newSingleThreadExecutor();
+        ForecastServiceFixture fixture = new ForecastServiceFixture(properties, restTemplate, executor);
+        weatherService = spy(fixture.service);
+        controller = new WeatherForecastController(weatherService, properties, fixture.metrics);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        RequestTrace.end();
+    }
+
+    @Test
+    void testColdRequestLooksUpCacheOnceAndCallsUpstreamOnce() {
+
+        RequestTrace trace = RequestTrace.begin();
+
+        ResponseEntity<?> response = controller.getWeather(UUID.randomUUID(), 60.10, 9.58, start, end);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertTrue(((ForecastServiceResponse) response.getBody()).isSuccess());
+        assertEquals(1, trace.getEventCacheLookups());
+        assertEquals(1, trace.getLocationCacheLookups());
+        assertEquals(1, trace.getUpstreamCalls());
+        verify(weatherService, times(1)).resolveWeatherForecast(any(), anyDouble(), anyDouble(), anyString(), anyString());
+    }
+
+    @Test
+    void testWarmRequestLooksUpCacheOnceWithoutUpstreamCall() {
+
+        UUID eventId = UUID.randomUUID();
+        controller.getWeather(eventId, 60.10, 9.58, start, end);
+
+        RequestTrace trace = RequestTrace.begin();
+
+        ResponseEntity<?> response = controller.getWeather(eventId, 60.10, 9.58, start, end);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(1, trace.getEventCacheLookups());
+        assertEquals(0, trace.getLocationCacheLookups());
+        assertEquals(0, trace.getUpstreamCalls());
+        verify(weatherService, times(2)).resolveWeatherForecast(any(), anyDouble(), anyDouble(), anyString(), anyString());
+    }
+
+    @Test
+    void testFreshForecastIsCacheableUntilItsCacheEntryExpires() {
+
+        UUID eventId = UUID.randomUUID();
+
+        ResponseEntity<?> computed = controller.getWeather(eventId, 60.10, 9.58, start, end);
+        ResponseEntity<?> cached = controller.getWeather(eventId, 60.10, 9.58, start, end);
+
+        // The event TTL is two hours
+        long maxAge = Long.parseLong(cached.getHeaders().getCacheControl().replaceAll("max-age=(\\d+), public", "$1"));
+        assertTrue(maxAge > 7100 && maxAge <= 7200, "max-age " + maxAge);
+        assertTrue(cached.getHeaders().getExpires() > System.currentTimeMillis() + 7_100_000);
+
+        assertNotNull(computed.getHeaders().getETag());
+        assertEquals(computed.getHeaders().getETag(), cached.getHeaders().getETag());
+    }
+
+    @Test
+    void testMatchingIfNoneMatchIsAnsweredWith304WithoutBody() throws Exception {
+
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+        String uri = "/api/v1/forecast/" + UUID.randomUUID();
+
+        MvcResult first = mockMvc.perform(get(uri).param("latitude", "60.10").param("longitude", "9.58")
+                        .param("startTimeStamp", start).param("endTimeStamp", end))
+                .andExpect(status().isOk())
+                .andReturn();
+        String etag = first.getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get(uri).param("latitude", "60.10").param("longitude", "9.58")
+                        .param("startTimeStamp", start).param("endTimeStamp", end)
+                        .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(content().string(""));
+
+        // A different version does not match
+        mockMvc.perform(get(uri).param("latitude", "60.10").param("longitude", "9.58")
+                        .param("startTimeStamp", start).param("endTimeStamp", end)
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"0\""))
+                .andExpect(status().isOk());
+    }
+}
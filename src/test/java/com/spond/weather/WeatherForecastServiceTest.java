@@ -1,9 +1,10 @@
 package com.spond.weather;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spond.weather.config.WeatherProperties;
 import com.spond.weather.dto.ForecastDTO;
 import com.spond.weather.dto.WeatherApiResponse;
 import com.spond.weather.service.WeatherForecastService;
+import com.spond.weather.util.SpatialGrid;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -12,10 +13,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.client.MockClientHttpResponse;
 import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
 
+import org.springframework.web.client.ResponseExtractor;
 import org.springframework.web.client.RestTemplate;
 import org.testcontainers.containers.GenericContainer;
 import org.testcontainers.junit.jupiter.Container;
@@ -35,8 +39,6 @@ import static org.mockito.Mockito.verify;
 @Testcontainers
 class WeatherForecastServiceTest {
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
-
     @Container
     private static final GenericContainer<?> redisContainer = new GenericContainer<>("redis:7.0.0")
             .withExposedPorts(6379);
@@ -51,6 +53,9 @@ class WeatherForecastServiceTest {
     @Autowired
     private WeatherForecastService weatherService;
 
+    @Autowired
+    private WeatherProperties weatherProperties;
+
     @DynamicPropertySource
     static void redisProperties(DynamicPropertyRegistry registry) {
         registry.add("spring.data.redis.host", redisContainer::getHost);
@@ -67,6 +72,15 @@ class WeatherForecastServiceTest {
         redisContainer.stop();
     }
 
+    private void mockMetResponse() throws IOException {
+
+        byte[] body = getClass().getClassLoader().getResourceAsStream("met_response.json").readAllBytes();
+
+        Mockito.when(restTemplate.execute(Mockito.anyString(), eq(HttpMethod.GET), Mockito.isNull(), Mockito.any()))
+                .thenAnswer(invocation -> invocation.<ResponseExtractor<?>>getArgument(3)
+                        .extractData(new MockClientHttpResponse(body, HttpStatus.OK)));
+    }
+
     private UUID eventId;
     private double latitude;
     private double longitude;
@@ -112,13 +126,8 @@ class WeatherForecastServiceTest {
         end = "2024-08-26T16:00:00Z";
         String cacheKey = "EventID:" + eventId;
 
-        // Create a WeatherApiResponse object from file met_response.json in src/test/resources
-        WeatherApiResponse mockResponse = objectMapper.readValue(getClass().getClassLoader().getResourceAsStream("met_response.json"), WeatherApiResponse.class);
-
-        ResponseEntity<WeatherApiResponse> responseEntity = ResponseEntity.ok(mockResponse);
-
-        Mockito.when(restTemplate.getForEntity(Mockito.anyString(), eq(WeatherApiResponse.class)))
-                .thenReturn(responseEntity);
+        // Serve the met.no response from file met_response.json in src/test/resources
+        mockMetResponse();
 
         Optional<ForecastDTO> result = weatherService.getWeatherForecast(eventId, latitude, longitude, start, end);
 
@@ -127,7 +136,7 @@ class WeatherForecastServiceTest {
         assertEquals(5.5, result.get().getWindSpeed());
 
         // Verify that RestTemplate was called once
-        verify(restTemplate, times(1)).getForEntity(Mockito.anyString(), eq(WeatherApiResponse.class));
+        verify(restTemplate, times(1)).execute(Mockito.anyString(), eq(HttpMethod.GET), Mockito.isNull(), Mockito.any());
 
         // Verify that the data is now in cache
         ForecastDTO cachedForecast = (ForecastDTO) redisTemplate.opsForValue().get(cacheKey);
@@ -157,13 +166,8 @@ class WeatherForecastServiceTest {
 
         String cacheKey = "EventID:" + eventId;
 
-        // Create a WeatherApiResponse object from file met_response.json in src/test/resources
-        WeatherApiResponse mockResponse = objectMapper.readValue(getClass().getClassLoader().getResourceAsStream("met_response.json"), WeatherApiResponse.class);
-
-        ResponseEntity<WeatherApiResponse> responseEntity = ResponseEntity.ok(mockResponse);
-
-        Mockito.when(restTemplate.getForEntity(Mockito.anyString(), eq(WeatherApiResponse.class)))
-                .thenReturn(responseEntity);
+        // Serve the met.no response from file met_response.json in src/test/resources
+        mockMetResponse();
 
         Optional<ForecastDTO> result = weatherService.getWeatherForecast(eventId, latitude, longitude, start, end);
 
@@ -172,7 +176,7 @@ class WeatherForecastServiceTest {
         assertEquals(2.0, result.get().getWindSpeed());
 
         // Verify that RestTemplate was called once
-        verify(restTemplate, times(1)).getForEntity(Mockito.anyString(), eq(WeatherApiResponse.class));
+        verify(restTemplate, times(1)).execute(Mockito.anyString(), eq(HttpMethod.GET), Mockito.isNull(), Mockito.any());
 
         // Verify that the data is now in cache
         ForecastDTO cachedForecast = (ForecastDTO) redisTemplate.opsForValue().get(cacheKey);
@@ -189,4 +193,28 @@ class WeatherForecastServiceTest {
         verify(restTemplate, Mockito.never())
                 .getForObject(any(String.class), eq(WeatherApiResponse.class));
     }
+
+    @Test
+    void testLocationForecastSharedBetweenEvents() throws IOException {
+
+        // Not in the grid cell of the other tests, which share this context's Redis and near cache
+        latitude = 63.4305;
+        longitude = 10.3951;
+        start = "2024-08-27T14:00:00Z";
+        end = "2024-08-27T16:00:00Z";
+
+        mockMetResponse();
+
+        Optional<ForecastDTO> first = weatherService.getWeatherForecast(UUID.randomUUID(), latitude, longitude, start, end);
+        Optional<ForecastDTO> second = weatherService.getWeatherForecast(UUID.randomUUID(), latitude, longitude, start, end);
+
+        assertTrue(first.isPresent());
+        assertTrue(second.isPresent());
+        assertEquals(first.get(), second.get());
+
+        // Second event at the same location is computed from the cached timeseries
+        verify(restTemplate, times(1)).execute(Mockito.anyString(), eq(HttpMethod.GET), Mockito.isNull(), Mockito.any());
+        SpatialGrid.Cell cell = SpatialGrid.snap(latitude, longitude, weatherProperties.getGrid());
+        assertNotNull(redisTemplate.opsForValue().get("Location:" + cell.latitude() + ":" + cell.longitude()));
+    }
 }
@@ -0,0 +1,54 @@
+package com.spond.weather;
+
+import com.spond.weather.config.WeatherRuntimeHints;
+import com.spond.weather.dto.ForecastDTO;
+import com.spond.weather.dto.LocationForecast;
+import com.spond.weather.dto.WeatherApiResponse;
+import org.apache.logging.log4j.core.appender.AbstractAppender;
+import org.apache.logging.log4j.core.appender.FileAppender;
+import org.apache.logging.log4j.core.filter.BurstFilter;
+import org.apache.logging.log4j.core.layout.PatternLayout;
+import org.apache.logging.log4j.core.pattern.MdcPatternConverter;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WeatherRuntimeHintsTest {
+
+    private final RuntimeHints hints = new RuntimeHints();
+
+    WeatherRuntimeHintsTest() {
+        new WeatherRuntimeHints().registerHints(hints, getClass().getClassLoader());
+    }
+
+    @Test
+    void testDtosCanBeBoundByJackson() {
+
+        assertTrue(RuntimeHintsPredicates.reflection().onMethod(ForecastDTO.class, "getAirTemperature").test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onMethod(LocationForecast.class, "setSeries").test(hints));
+        // Reached through the properties of the met.no response
+        assertTrue(RuntimeHintsPredicates.reflection().onMethod(WeatherApiResponse.TemperatureDetails.class, "setAir_temperature").test(hints));
+    }
+
+    @Test
+    void testLog4jConfigurationCanBeBuilt() {
+
+        assertTrue(RuntimeHintsPredicates.resource().forResource("log4j2.xml").test(hints));
+        assertTrue(RuntimeHintsPredicates.resource().forResource("log4j2-async.xml").test(hints));
+
+        assertTrue(RuntimeHintsPredicates.reflection().onType(PatternLayout.class)
+                .withMemberCategory(MemberCategory.INVOKE_DECLARED_METHODS).test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onType(MdcPatternConverter.class)
+                .withMemberCategory(MemberCategory.INVOKE_DECLARED_METHODS).test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onType(BurstFilter.Builder.class)
+                .withMemberCategory(MemberCategory.DECLARED_FIELDS).test(hints));
+        // Builder fields declared by superclasses, such as the appender name
+        assertTrue(RuntimeHintsPredicates.reflection().onType(FileAppender.Builder.class)
+                .withMemberCategory(MemberCategory.DECLARED_FIELDS).test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onType(AbstractAppender.Builder.class)
+                .withMemberCategory(MemberCategory.DECLARED_FIELDS).test(hints));
+    }
+}